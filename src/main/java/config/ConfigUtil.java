@@ -25,4 +25,23 @@ public class ConfigUtil {
     public static String getProperty(String key) {
         return properties.getProperty(key);
     }
+
+    // Метод для получения значения свойства по ключу со значением по умолчанию
+    public static String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    // Метод для получения числового свойства; при отсутствии или ошибке формата возвращает значение по умолчанию
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            System.out.println("Некорректное числовое значение свойства " + key + ": " + value);
+            return defaultValue;
+        }
+    }
 }
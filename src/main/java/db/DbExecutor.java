@@ -0,0 +1,106 @@
+package db;
+
+import metrics.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель блокирующих JDBC-задач вне потоков контейнера.
+ * <p>
+ * Если JVM поддерживает виртуальные потоки (Java 21+), каждая задача выполняется в виртуальном потоке,
+ * иначе - в фиксированном пуле потоков. Количество одновременно выполняемых задач ограничено размером
+ * пула соединений, чтобы задачи ждали на семафоре, а не занимали соединения сверх лимита.
+ * </p>
+ */
+public class DbExecutor implements MetricsSource {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final boolean virtualThreads;
+
+    /**
+     * @param maxConcurrency максимальное количество одновременно выполняемых задач
+     */
+    public DbExecutor(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : newPlatformExecutor(maxConcurrency);
+    }
+
+    /**
+     * Выполняет задачу асинхронно с крайним сроком ({@link Deadline}) и областью согласованности чтения
+     * ({@link ReadConsistency}) текущего запроса.
+     *
+     * @param task задача, выполняющая обращение к базе данных
+     * @param <T>  тип результата
+     * @return future, завершающийся результатом задачи или ее исключением
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Callable<T> propagated = ReadConsistency.propagate(Deadline.propagate(task));
+        executor.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                future.complete(propagated.call());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Останавливает исполнитель. Уже запущенные задачи дорабатывают.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Возвращает количество выполняемых задач и режим работы исполнителя.
+     *
+     * @return метрики исполнителя
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("virtualThreads", virtualThreads);
+        metrics.put("maxConcurrency", maxConcurrency);
+        metrics.put("running", maxConcurrency - permits.availablePermits());
+        return metrics;
+    }
+
+    /**
+     * Создает исполнитель на виртуальных потоках, если он доступен в текущей JVM.
+     * Вызов через рефлексию позволяет собирать проект под Java 17.
+     *
+     * @return исполнитель на виртуальных потоках или null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int size) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "db-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
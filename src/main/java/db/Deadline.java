@@ -0,0 +1,134 @@
+package db;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Крайний срок выполнения текущего запроса.
+ * <p>
+ * Устанавливается фильтром {@link filter.DeadlineFilter} и проверяется на уровне доступа к данным:
+ * если бюджет уже исчерпан, обращение к базе данных не начинается, иначе остаток бюджета ограничивает
+ * ожидание соединения в пуле и становится таймаутом запроса (Statement.setQueryTimeout).
+ * </p>
+ */
+public final class Deadline {
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Устанавливает крайний срок для текущего потока.
+     *
+     * @param timeoutMs бюджет времени от текущего момента
+     */
+    public static void start(long timeoutMs) {
+        CURRENT.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    /**
+     * Снимает крайний срок текущего потока.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return остаток бюджета в миллисекундах или Long.MAX_VALUE, если крайний срок не установлен
+     */
+    public static long remainingMs() {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * Проверяет, что бюджет запроса еще не исчерпан.
+     *
+     * @return остаток бюджета в миллисекундах или Long.MAX_VALUE, если крайний срок не установлен
+     * @throws SQLTimeoutException если крайний срок уже наступил
+     */
+    public static long checkRemaining() throws SQLTimeoutException {
+        long remaining = remainingMs();
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("Превышено время выполнения запроса", "57014");
+        }
+        return remaining;
+    }
+
+    /**
+     * Ограничивает время выполнения SQL-запроса остатком бюджета.
+     *
+     * @param statement запрос
+     * @throws SQLException если бюджет исчерпан или таймаут не удалось установить
+     */
+    public static void applyTo(Statement statement) throws SQLException {
+        long remaining = checkRemaining();
+        if (remaining != Long.MAX_VALUE) {
+            // Таймаут JDBC задается в секундах, округляем вверх
+            statement.setQueryTimeout((int) Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000));
+        }
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы она выполнялась с заданным бюджетом вместо крайнего срока текущего потока.
+     * Используется, когда поток выполняет работу за несколько запросов с разными сроками.
+     *
+     * @param timeoutMs бюджет времени от момента вызова задачи или Long.MAX_VALUE без ограничения
+     * @param task      задача
+     * @param <T>       тип результата
+     * @return задача с заданным бюджетом
+     */
+    public static <T> Callable<T> within(long timeoutMs, Callable<T> task) {
+        return () -> {
+            Long previous = CURRENT.get();
+            if (timeoutMs == Long.MAX_VALUE) {
+                CURRENT.remove();
+            } else {
+                start(timeoutMs);
+            }
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы она выполнялась с крайним сроком текущего потока.
+     * Используется для передачи крайнего срока в фоновые потоки.
+     *
+     * @param task задача
+     * @param <T>  тип результата
+     * @return задача с тем же крайним сроком
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return task;
+        }
+        return () -> {
+            Long previous = CURRENT.get();
+            CURRENT.set(deadline);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+}
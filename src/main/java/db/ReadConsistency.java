@@ -0,0 +1,104 @@
+package db;
+
+import java.util.concurrent.Callable;
+import java.util.function.LongConsumer;
+
+/**
+ * Состояние согласованности чтения для текущего запроса.
+ * <p>
+ * После записи клиент некоторое время читает с основного сервера, чтобы увидеть собственные изменения,
+ * даже если реплика еще не успела их получить. Момент, до которого действует это правило,
+ * передается между запросами клиента (см. {@link filter.ReadYourWritesFilter}).
+ * </p>
+ */
+public final class ReadConsistency {
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ReadConsistency() {
+    }
+
+    /**
+     * Открывает область запроса.
+     *
+     * @param primaryUntil момент (epoch ms), до которого чтение должно идти с основного сервера
+     * @param onWrite      вызывается при первой записи в запросе с новым моментом окончания окна
+     */
+    public static void open(long primaryUntil, LongConsumer onWrite) {
+        CURRENT.set(new Scope(primaryUntil, onWrite));
+    }
+
+    /**
+     * Закрывает область текущего запроса.
+     */
+    public static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return true, если текущий запрос должен читать с основного сервера
+     */
+    public static boolean isPrimaryRequired() {
+        Scope scope = CURRENT.get();
+        return scope != null && System.currentTimeMillis() < scope.primaryUntil;
+    }
+
+    /**
+     * Отмечает запись в текущем запросе и продлевает окно чтения с основного сервера.
+     *
+     * @param windowMs длительность окна после записи
+     */
+    static void markWrite(long windowMs) {
+        Scope scope = CURRENT.get();
+        if (scope == null || windowMs <= 0) {
+            return;
+        }
+        // Область может быть общей с фоновыми задачами запроса, см. propagate
+        synchronized (scope) {
+            scope.primaryUntil = System.currentTimeMillis() + windowMs;
+            if (!scope.notified) {
+                scope.notified = true;
+                scope.onWrite.accept(scope.primaryUntil);
+            }
+        }
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы она выполнялась в области текущего запроса.
+     * Используется для передачи области в фоновые потоки: задача читает с основного сервера в окне
+     * после записи, а ее собственная запись продлевает окно запроса.
+     *
+     * @param task задача
+     * @param <T>  тип результата
+     * @return задача с той же областью
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Scope previous = CURRENT.get();
+            CURRENT.set(scope);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    private static final class Scope {
+        private final LongConsumer onWrite;
+        private volatile long primaryUntil;
+        private boolean notified;
+
+        private Scope(long primaryUntil, LongConsumer onWrite) {
+            this.primaryUntil = primaryUntil;
+            this.onWrite = onWrite;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Транзакция, привязанная к текущему потоку (HTTP-запросу).
+ * <p>
+ * Соединение берется лениво при первом обращении к {@link TransactionalUtilDB} и используется всеми
+ * вызовами репозиториев до завершения транзакции. Репозитории получают прокси соединения, в котором
+ * close(), commit() и setAutoCommit() ничего не делают, а rollback() помечает транзакцию для отката,
+ * поэтому фиксация выполняется один раз при завершении запроса.
+ * </p>
+ * <p>
+ * Источники с разными ключами базы данных (например, шарды) получают отдельные соединения;
+ * при завершении они фиксируются по очереди, поэтому запись в несколько баз не атомарна.
+ * </p>
+ */
+public final class TransactionContext {
+    private static final ThreadLocal<TransactionContext> CURRENT = new ThreadLocal<>();
+
+    // Соединения транзакции по ключу базы данных и выданные репозиториям прокси
+    private final Map<String, Connection> connections = new LinkedHashMap<>();
+    private final Map<String, Connection> boundProxies = new LinkedHashMap<>();
+    private boolean rollbackOnly;
+
+    private TransactionContext() {
+    }
+
+    /**
+     * Открывает транзакцию для текущего потока.
+     *
+     * @throws IllegalStateException если транзакция уже открыта
+     */
+    public static void begin() {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("Транзакция уже открыта в текущем потоке");
+        }
+        CURRENT.set(new TransactionContext());
+    }
+
+    /**
+     * @return true, если в текущем потоке открыта транзакция
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Фиксирует транзакцию текущего потока и возвращает соединение в пул.
+     *
+     * @throws SQLException если фиксация не удалась или транзакция помечена для отката
+     */
+    public static void commit() throws SQLException {
+        end(true);
+    }
+
+    /**
+     * Откатывает транзакцию текущего потока и возвращает соединение в пул.
+     *
+     * @throws SQLException если откат не удался
+     */
+    public static void rollback() throws SQLException {
+        end(false);
+    }
+
+    /**
+     * Возвращает соединение транзакции текущего потока, при необходимости получая его из источника.
+     *
+     * @param source      источник соединений
+     * @param databaseKey ключ базы данных; источники с одинаковым ключом используют одно соединение
+     * @return соединение транзакции или null, если транзакция не открыта
+     * @throws SQLException если не удалось получить соединение
+     */
+    static Connection currentConnection(UtilDB source, String databaseKey) throws SQLException {
+        TransactionContext tx = CURRENT.get();
+        if (tx == null) {
+            return null;
+        }
+        Connection boundProxy = tx.boundProxies.get(databaseKey);
+        if (boundProxy == null) {
+            Connection connection = source.createConnection();
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException ex) {
+                connection.close();
+                throw ex;
+            }
+            tx.connections.put(databaseKey, connection);
+            boundProxy = tx.createBoundProxy(connection);
+            tx.boundProxies.put(databaseKey, boundProxy);
+        }
+        return boundProxy;
+    }
+
+    private static void end(boolean commit) throws SQLException {
+        TransactionContext tx = CURRENT.get();
+        CURRENT.remove();
+        if (tx == null) {
+            return;
+        }
+        SQLException failure = null;
+        boolean rollback = !commit || tx.rollbackOnly;
+        for (Connection connection : tx.connections.values()) {
+            try {
+                if (rollback) {
+                    connection.rollback();
+                } else {
+                    connection.commit();
+                }
+            } catch (SQLException ex) {
+                // После первой неудачной фиксации остальные соединения откатываются
+                rollback = true;
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            } finally {
+                connection.close();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (commit && tx.rollbackOnly && !tx.connections.isEmpty()) {
+            throw new SQLException("Транзакция помечена для отката");
+        }
+    }
+
+    /**
+     * Создает прокси соединения, через который репозитории работают внутри транзакции.
+     */
+    private Connection createBoundProxy(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                TransactionContext.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "commit":
+                        case "setAutoCommit":
+                            return null;
+                        case "rollback":
+                            if (args == null) {
+                                rollbackOnly = true;
+                                return null;
+                            }
+                            break;
+                        case "getAutoCommit":
+                            return false;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Реализация UtilDB, учитывающая транзакцию текущего запроса.
+ * Если в потоке открыта {@link TransactionContext}, все вызовы получают одно и то же соединение транзакции,
+ * иначе соединение берется из исходного UtilDB.
+ * Источники разных баз данных (шардов) создаются с разными ключами, чтобы транзакция держала по соединению на базу.
+ */
+public class TransactionalUtilDB implements UtilDB {
+    private static final String DEFAULT_DATABASE = "default";
+    private final UtilDB delegate;
+    private final String databaseKey;
+
+    /**
+     * @param delegate источник соединений, например пул
+     */
+    public TransactionalUtilDB(UtilDB delegate) {
+        this(delegate, DEFAULT_DATABASE);
+    }
+
+    /**
+     * @param delegate    источник соединений, например пул шарда
+     * @param databaseKey ключ базы данных, к которой относится источник
+     */
+    public TransactionalUtilDB(UtilDB delegate, String databaseKey) {
+        this.delegate = delegate;
+        this.databaseKey = databaseKey;
+    }
+
+    /**
+     * Возвращает соединение текущей транзакции или новое соединение, если транзакция не открыта.
+     *
+     * @return соединение с базой данных
+     * @throws SQLException если произошла ошибка при получении соединения
+     */
+    @Override
+    public Connection createConnection() throws SQLException {
+        Connection connection = TransactionContext.currentConnection(delegate, databaseKey);
+        return connection != null ? connection : delegate.createConnection();
+    }
+
+    /**
+     * Возвращает соединение текущей транзакции, чтобы запрос видел собственные изменения,
+     * или соединение для чтения из исходного UtilDB, если транзакция не открыта.
+     *
+     * @return соединение с базой данных
+     * @throws SQLException если произошла ошибка при получении соединения
+     */
+    @Override
+    public Connection createReadConnection() throws SQLException {
+        Connection connection = TransactionContext.currentConnection(delegate, databaseKey);
+        return connection != null ? connection : delegate.createReadConnection();
+    }
+
+    /**
+     * Закрывает исходный источник соединений.
+     */
+    @Override
+    public void closeConnection() {
+        delegate.closeConnection();
+    }
+}
@@ -9,7 +9,8 @@ import java.sql.SQLException;
 public interface UtilDB {
 
     /**
-     * Создает и возвращает новое соединение с базой данных.
+     * Возвращает соединение с базой данных.
+     * Вызывающий код обязан закрыть соединение; реализация может вернуть его в пул вместо разрыва.
      *
      * @return объект Connection, представляющий соединение с базой данных
      * @throws SQLException если произошла ошибка при создании соединения
@@ -17,7 +18,18 @@ public interface UtilDB {
     Connection createConnection() throws SQLException;
 
     /**
-     * Закрывает текущее соединение с базой данных.
+     * Возвращает соединение только для чтения.
+     * Реализация может направить чтение на реплику; по умолчанию используется {@link #createConnection()}.
+     *
+     * @return объект Connection для выполнения запросов на чтение
+     * @throws SQLException если произошла ошибка при создании соединения
+     */
+    default Connection createReadConnection() throws SQLException {
+        return createConnection();
+    }
+
+    /**
+     * Закрывает все соединения с базой данных и освобождает связанные ресурсы.
      */
     void closeConnection();
 }
@@ -1,17 +1,36 @@
 package db;
 
 import config.ConfigUtil;
+import db.pool.ConnectionPool;
+import db.pool.PoolConfig;
+import metrics.MetricsSource;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Реализация интерфейса UtilDB для управления соединением с базой данных.
- * Используется шаблон Singleton для обеспечения единственного экземпляра класса.
+ * Реализация интерфейса UtilDB для управления соединениями с базой данных.
+ * <p>
+ * Соединения выдаются из ограниченных пулов {@link ConnectionPool}: запись идет на основной сервер,
+ * чтение - по кругу на реплики из свойства replica_urls в режиме только для чтения.
+ * Если реплики не настроены, недоступны или клиент недавно выполнял запись (см. {@link ReadConsistency}),
+ * чтение идет на основной сервер.
+ * Используется шаблон Singleton для обеспечения единственного набора пулов на узел;
+ * ресурсы с собственным бюджетом соединений получают отдельный экземпляр через {@link #getInstance(String)}.
+ * </p>
  */
-public class UtilDBimpl implements UtilDB {
-    private static volatile UtilDBimpl _instance;
+public class UtilDBimpl implements UtilDB, MetricsSource {
+    private static final Map<String, UtilDBimpl> INSTANCES = new LinkedHashMap<>();
+    private static final String DEFAULT_RESOURCE = "default";
 
     // Загрузка драйвера PostgreSQL в статическом блоке
     static {
@@ -22,16 +41,30 @@ public class UtilDBimpl implements UtilDB {
         }
     }
 
-    private Connection connection;
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong replicaFailures = new AtomicLong();
+    private final long readYourWritesWindowMs = ConfigUtil.getIntProperty("read_your_writes_window_ms", 2000);
 
     // Приватный конструктор для предотвращения создания экземпляра вне класса
-    private UtilDBimpl() {
-        try {
-            this.connection = createConnection();
-        } catch (SQLException e) {
-            // Логирование ошибки
-            System.out.println("Ошибка при создании соединения с базой данных: " + e.getMessage());
-        }
+    private UtilDBimpl(PoolConfig poolConfig) {
+        this(ConfigUtil.getProperty("data_base_url"), splitUrls(ConfigUtil.getProperty("replica_urls", "")), poolConfig);
+    }
+
+    private UtilDBimpl(String url, List<String> replicaUrls, PoolConfig poolConfig) {
+        this(createPool(url, poolConfig), replicaUrls.stream().map(replicaUrl -> createPool(replicaUrl, poolConfig)).toList());
+    }
+
+    /**
+     * @param primary  пул соединений основного сервера
+     * @param replicas пулы соединений реплик
+     */
+    UtilDBimpl(ConnectionPool primary, List<ConnectionPool> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
     }
 
     /**
@@ -40,47 +73,166 @@ public class UtilDBimpl implements UtilDB {
      *
      * @return единственный экземпляр UtilDBimpl
      */
-    public static synchronized UtilDB getInstance() {
-        if (_instance != null) {
-            return _instance;
-        }
+    public static synchronized UtilDBimpl getInstance() {
+        return INSTANCES.computeIfAbsent(DEFAULT_RESOURCE, key -> new UtilDBimpl(PoolConfig.fromProperties()));
+    }
+
+    /**
+     * Получение экземпляра UtilDBimpl с отдельными пулами для ресурса.
+     * Размеры пулов задаются свойствами pool_{resource}_*, поэтому всплеск нагрузки на один ресурс
+     * не занимает соединения другого.
+     *
+     * @param resource имя ресурса, например products
+     * @return экземпляр UtilDBimpl ресурса
+     */
+    public static synchronized UtilDBimpl getInstance(String resource) {
+        return INSTANCES.computeIfAbsent(resource, key -> new UtilDBimpl(PoolConfig.fromProperties(key)));
+    }
+
+    /**
+     * Получение экземпляра UtilDBimpl ресурса на шарде с заданным адресом (без реплик).
+     * Каждый ресурс получает на шарде собственный пул, как и без шардирования.
+     * Настройки пула задаются свойствами pool_shard_{resource}_* и pool_shard_*.
+     *
+     * @param index    номер шарда
+     * @param url      адрес базы данных шарда
+     * @param resource имя ресурса, например products
+     * @return экземпляр UtilDBimpl ресурса на шарде
+     */
+    public static synchronized UtilDBimpl getShardInstance(int index, String url, String resource) {
+        return INSTANCES.computeIfAbsent("shard-" + index + "-" + resource,
+                key -> new UtilDBimpl(url, List.of(), PoolConfig.fromShardProperties(resource)));
+    }
+
+    /**
+     * Разбивает список адресов, перечисленных через запятую.
+     *
+     * @param urls адреса через запятую
+     * @return непустые адреса
+     */
+    public static List<String> splitUrls(String urls) {
+        return Arrays.stream(urls.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Закрывает пулы всех созданных экземпляров.
+     */
+    public static synchronized void closeAll() {
+        INSTANCES.values().forEach(UtilDBimpl::closeConnection);
+        INSTANCES.clear();
+    }
 
-        _instance = new UtilDBimpl();
-        return _instance;
+    /**
+     * Создает пул соединений к серверу с заданным адресом.
+     *
+     * @param url    адрес базы данных
+     * @param config настройки пула
+     * @return пул соединений
+     */
+    private static ConnectionPool createPool(String url, PoolConfig config) {
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user", ConfigUtil.getProperty("user_db"));
+        connectionProperties.setProperty("password", ConfigUtil.getProperty("password_db", ""));
+        // Количество выполнений запроса, после которого драйвер готовит его на сервере;
+        // запросы переиспользуются из кэша пула, поэтому имеет смысл готовить их сразу
+        connectionProperties.setProperty("prepareThreshold", ConfigUtil.getProperty("statement_prepare_threshold", "1"));
+        // Пакеты INSERT (addBatch/executeBatch) драйвер переписывает в многострочные INSERT ... VALUES (...), (...)
+        connectionProperties.setProperty("reWriteBatchedInserts", ConfigUtil.getProperty("jdbc_rewrite_batched_inserts", "true"));
+        return new ConnectionPool(() -> DriverManager.getConnection(url, connectionProperties), config);
     }
 
     /**
-     * Закрытие соединения с базой данных.
+     * Закрытие всех пулов соединений с базой данных.
      */
     @Override
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                System.out.println("Ошибка при закрытии соединения: " + e.getMessage());
-            }
-        }
+        primary.closeConnection();
+        replicas.forEach(ConnectionPool::closeConnection);
     }
 
     /**
-     * Создание нового соединения с базой данных.
-     * Если соединение уже существует и открыто, возвращается существующее соединение.
+     * Выдача соединения с основным сервером для записи.
+     * Закрытие полученного соединения возвращает его в пул, а не разрывает сессию с БД.
+     * Окно чтения с основного сервера после записи открывается только при настроенных репликах.
      *
-     * @return текущее соединение с базой данных
-     * @throws SQLException если произошла ошибка при создании соединения
+     * @return соединение с базой данных
+     * @throws SQLException если произошла ошибка при получении соединения
      */
     @Override
     public Connection createConnection() throws SQLException {
-        // Проверяем, существует ли соединение и не закрыто ли оно
-        boolean canOpenConnection = this.connection == null || this.connection.isClosed();
-        if (canOpenConnection) {
-            String url = ConfigUtil.getProperty("data_base_url");
-            String user = ConfigUtil.getProperty("user_db");
-            String password = ConfigUtil.getProperty("password_db");
-            this.connection = DriverManager.getConnection(url, user, password);
+        // Без реплик все чтения и так идут на основной сервер: окно и cookie клиенту не нужны
+        if (!replicas.isEmpty()) {
+            ReadConsistency.markWrite(readYourWritesWindowMs);
         }
-        return this.connection;
+        return primary.createConnection();
     }
 
+    /**
+     * Выдача соединения только для чтения.
+     * Реплики выбираются по кругу; недоступная реплика пропускается.
+     *
+     * @return соединение с базой данных в режиме только для чтения
+     * @throws SQLException если не удалось получить соединение ни с одним сервером
+     */
+    @Override
+    public Connection createReadConnection() throws SQLException {
+        if (!replicas.isEmpty() && !ReadConsistency.isPrimaryRequired()) {
+            int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                ConnectionPool replica = replicas.get((start + i) % replicas.size());
+                try {
+                    Connection connection = asReadOnly(replica.createConnection());
+                    replicaReads.incrementAndGet();
+                    return connection;
+                } catch (SQLException ex) {
+                    replicaFailures.incrementAndGet();
+                    System.out.println("Реплика недоступна: " + ex.getMessage());
+                }
+            }
+        }
+        Connection connection = asReadOnly(primary.createConnection());
+        primaryReads.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Переводит соединение в режим только для чтения. Режим сбрасывается пулом при возврате соединения.
+     */
+    private static Connection asReadOnly(Connection connection) throws SQLException {
+        try {
+            connection.setReadOnly(true);
+            return connection;
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return пул соединений основного сервера
+     */
+    public ConnectionPool getPool() {
+        return primary;
+    }
+
+    /**
+     * Возвращает метрики пулов и распределение чтения между серверами.
+     *
+     * @return метрики пулов соединений
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("primary", primary.getMetrics());
+        for (int i = 0; i < replicas.size(); i++) {
+            metrics.put("replica-" + i, replicas.get(i).getMetrics());
+        }
+        metrics.put("primaryReads", primaryReads.get());
+        metrics.put("replicaReads", replicaReads.get());
+        metrics.put("replicaFailures", replicaFailures.get());
+        return metrics;
+    }
 }
@@ -0,0 +1,188 @@
+package db.id;
+
+import db.UtilDB;
+import metrics.MetricsSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выдача идентификаторов блоками из последовательности БД (pooled-lo).
+ * <p>
+ * Последовательность создается с шагом {@code INCREMENT BY blockSize}; каждый вызов nextval резервирует
+ * за узлом диапазон [value, value + blockSize). Идентификаторы из диапазона выдаются в памяти атомарным
+ * счетчиком без блокировок, к базе данных обращается только поток, исчерпавший блок.
+ * Идентификатор известен до вставки, поэтому вставки можно объединять в пакеты без RETURN_GENERATED_KEYS.
+ * </p>
+ * <p>
+ * Для шардов выдаваемое значение преобразуется как {@code value * stride + offset}, чтобы шард
+ * определялся по идентификатору.
+ * </p>
+ */
+public class BlockIdAllocator implements IdAllocator, MetricsSource {
+    private final UtilDB source;
+    private final String sequence;
+    private final int blockSize;
+    private final int stride;
+    private final int offset;
+
+    private volatile Block current = new Block(0, 0);
+    private volatile boolean validated;
+    private final AtomicLong blocksFetched = new AtomicLong();
+
+    /**
+     * @param source    источник соединений для обращения к последовательности
+     * @param sequence  имя последовательности, например product_id_seq
+     * @param blockSize размер блока; должен быть не больше шага последовательности
+     */
+    public BlockIdAllocator(UtilDB source, String sequence, int blockSize) {
+        this(source, sequence, blockSize, 1, 0);
+    }
+
+    /**
+     * @param source    источник соединений для обращения к последовательности
+     * @param sequence  имя последовательности
+     * @param blockSize размер блока; должен быть не больше шага последовательности
+     * @param stride    множитель значения последовательности (количество шардов)
+     * @param offset    добавка к значению последовательности (номер шарда)
+     */
+    public BlockIdAllocator(UtilDB source, String sequence, int blockSize, int stride, int offset) {
+        this.source = source;
+        this.sequence = sequence;
+        this.blockSize = Math.max(1, blockSize);
+        this.stride = stride;
+        this.offset = offset;
+    }
+
+    /**
+     * Выдает следующий идентификатор.
+     *
+     * @return идентификатор
+     * @throws SQLException если не удалось зарезервировать новый блок
+     */
+    @Override
+    public long nextId() throws SQLException {
+        while (true) {
+            Block block = current;
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                return value * stride + offset;
+            }
+            refill(block);
+        }
+    }
+
+    /**
+     * Резервирует новый блок, если другой поток не сделал этого раньше.
+     */
+    private synchronized void refill(Block exhausted) throws SQLException {
+        if (current != exhausted) {
+            return;
+        }
+        try (Connection conn = source.createConnection()) {
+            if (!validated) {
+                validateIncrement(conn);
+                validated = true;
+            }
+            try (PreparedStatement stm = conn.prepareStatement("SELECT nextval(?::regclass)")) {
+                stm.setString(1, sequence);
+                ResultSet resultSet = stm.executeQuery();
+                resultSet.next();
+                long low = resultSet.getLong(1);
+                current = new Block(low, low + blockSize);
+                blocksFetched.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что шаг последовательности не меньше размера блока, иначе блоки разных узлов пересекутся.
+     */
+    private void validateIncrement(Connection conn) throws SQLException {
+        try (PreparedStatement stm = conn.prepareStatement(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?")) {
+            stm.setString(1, sequence);
+            ResultSet resultSet = stm.executeQuery();
+            if (!resultSet.next()) {
+                throw new SQLException("Sequence " + sequence + " does not exist", "42P01");
+            }
+            long increment = resultSet.getLong(1);
+            if (increment < blockSize) {
+                throw new SQLException("Sequence " + sequence + " increment " + increment
+                        + " is smaller than id block size " + blockSize, "22023");
+            }
+        }
+    }
+
+    /**
+     * Устанавливает шаг последовательности равным заданному, если он отличается.
+     * При уменьшении шага последовательность сдвигается за последний выданный блок, чтобы следующие значения
+     * не совпали с идентификаторами из него. Все узлы должны использовать один размер блока.
+     *
+     * @param source    источник соединений с базой данных последовательности
+     * @param sequence  имя последовательности
+     * @param increment требуемый шаг: размер блока или 1, если идентификаторы генерирует БД
+     * @return true, если шаг был изменен
+     * @throws SQLException если последовательность не существует или не удалось ее изменить
+     */
+    public static boolean alignIncrement(UtilDB source, String sequence, int increment) throws SQLException {
+        try (Connection conn = source.createConnection()) {
+            long current;
+            long lastValue;
+            boolean called;
+            try (PreparedStatement stm = conn.prepareStatement("SELECT increment_by, last_value FROM pg_sequences"
+                    + " WHERE schemaname = current_schema() AND sequencename = ?")) {
+                stm.setString(1, sequence);
+                ResultSet resultSet = stm.executeQuery();
+                if (!resultSet.next()) {
+                    throw new SQLException("Sequence " + sequence + " does not exist", "42P01");
+                }
+                current = resultSet.getLong(1);
+                lastValue = resultSet.getLong(2);
+                called = !resultSet.wasNull();
+            }
+            if (current == increment) {
+                return false;
+            }
+            try (PreparedStatement stm = conn.prepareStatement("ALTER SEQUENCE " + sequence + " INCREMENT BY " + increment)) {
+                stm.execute();
+            }
+            if (called && current > increment) {
+                try (PreparedStatement stm = conn.prepareStatement("SELECT setval(?::regclass, ?)")) {
+                    stm.setString(1, sequence);
+                    stm.setLong(2, lastValue + current - 1);
+                    stm.executeQuery();
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Block block = current;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("blockSize", blockSize);
+        metrics.put("blocksFetched", blocksFetched.get());
+        metrics.put("remainingInBlock", Math.max(0, block.end - block.next.get()));
+        return metrics;
+    }
+
+    /**
+     * Зарезервированный диапазон значений [next, end).
+     */
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long next, long end) {
+            this.next = new AtomicLong(next);
+            this.end = end;
+        }
+    }
+}
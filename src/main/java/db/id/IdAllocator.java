@@ -0,0 +1,18 @@
+package db.id;
+
+import java.sql.SQLException;
+
+/**
+ * Источник идентификаторов новых записей, известных до вставки в базу данных.
+ */
+@FunctionalInterface
+public interface IdAllocator {
+
+    /**
+     * Выдает следующий идентификатор.
+     *
+     * @return идентификатор
+     * @throws SQLException если не удалось получить идентификатор
+     */
+    long nextId() throws SQLException;
+}
@@ -0,0 +1,16 @@
+package db.migration;
+
+/**
+ * Вид базы данных, к которой применяются миграции.
+ * Скрипт с маркером {@code -- database: shard} (или {@code single}) применяется только к базам этого вида.
+ */
+public enum DatabaseKind {
+    /**
+     * Единственная база приложения без шардирования.
+     */
+    SINGLE,
+    /**
+     * База одного из шардов: продукты рецепта могут лежать на других шардах.
+     */
+    SHARD
+}
@@ -0,0 +1,114 @@
+package db.migration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Версионированный SQL-скрипт миграции вида V{версия}__{описание}.sql.
+ * <p>
+ * Скрипт выполняется в одной транзакции вместе с записью в schema_migrations. Маркеры задаются
+ * строками-комментариями в начале скрипта:
+ * <ul>
+ *     <li>{@code -- no-transaction} - скрипт выполняется вне транзакции по одной команде: это нужно для
+ *     CREATE INDEX CONCURRENTLY, которую PostgreSQL не выполняет внутри транзакции;</li>
+ *     <li>{@code -- database: shard} или {@code -- database: single} - скрипт применяется только к базам
+ *     этого вида (см. {@link DatabaseKind}), для остальных баз он пропускается и в историю не записывается.</li>
+ * </ul>
+ * </p>
+ *
+ * @param target вид базы данных, к которой применяется скрипт, или null для всех баз
+ */
+record Migration(int version, String description, String checksum, boolean transactional, DatabaseKind target,
+                 List<String> statements) {
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String NO_TRANSACTION_MARKER = "-- no-transaction";
+    private static final String DATABASE_MARKER = "-- database:";
+
+    /**
+     * Разбирает скрипт миграции.
+     *
+     * @param fileName имя файла скрипта
+     * @param content  содержимое скрипта
+     * @return миграция
+     * @throws IllegalArgumentException если имя файла не соответствует шаблону
+     */
+    static Migration parse(String fileName, String content) {
+        Matcher matcher = FILE_NAME.matcher(fileName);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid migration file name: " + fileName);
+        }
+        String normalized = content.replace("\r\n", "\n");
+        boolean transactional = true;
+        DatabaseKind target = null;
+        // Маркеры читаются из строк-комментариев до первой команды
+        for (String line : normalized.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!trimmed.startsWith("--")) {
+                break;
+            }
+            if (trimmed.equals(NO_TRANSACTION_MARKER)) {
+                transactional = false;
+            } else if (trimmed.startsWith(DATABASE_MARKER)) {
+                target = DatabaseKind.valueOf(trimmed.substring(DATABASE_MARKER.length()).trim().toUpperCase());
+            }
+        }
+        return new Migration(
+                Integer.parseInt(matcher.group(1)),
+                matcher.group(2).replace('_', ' '),
+                sha256(normalized),
+                transactional,
+                target,
+                splitStatements(normalized));
+    }
+
+    /**
+     * @param kind вид базы данных
+     * @return применяется ли скрипт к базе этого вида
+     */
+    boolean appliesTo(DatabaseKind kind) {
+        return target == null || target == kind;
+    }
+
+    /**
+     * Разбивает скрипт на команды по точке с запятой в конце строки; строки-комментарии пропускаются.
+     * Скрипты миграций не должны содержать тел функций с точкой с запятой внутри.
+     */
+    private static List<String> splitStatements(String content) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : content.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String statement = current.toString().trim();
+                statements.add(statement.substring(0, statement.length() - 1).trim());
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package db.migration;
+
+import db.UtilDB;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Применяет версионированные SQL-миграции из ресурсов db/migration при запуске приложения.
+ * <p>
+ * Список скриптов в порядке применения хранится в db/migration/index.txt. Примененные версии и контрольные
+ * суммы записываются в таблицу schema_migrations; измененный после применения скрипт останавливает запуск.
+ * Узлы, стартующие одновременно, сериализуются через pg_advisory_lock, поэтому миграции выполняет один узел.
+ * </p>
+ */
+public class MigrationRunner {
+    private static final String LOCATION = "db/migration/";
+    // Произвольный ключ advisory lock, общий для всех узлов приложения
+    private static final long LOCK_KEY = 0x6173746F6E4DL;
+    // Имя индекса в команде CREATE [UNIQUE] INDEX CONCURRENTLY IF NOT EXISTS
+    private static final Pattern CONCURRENT_INDEX = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+IF\\s+NOT\\s+EXISTS\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+
+    private final UtilDB db;
+    private final DatabaseKind kind;
+    private final List<Migration> migrations;
+
+    /**
+     * @param db   источник соединений с базой данных, к которой применяются миграции
+     * @param kind вид базы данных; скрипты, предназначенные для баз другого вида, пропускаются
+     */
+    public MigrationRunner(UtilDB db, DatabaseKind kind) {
+        this(db, kind, loadMigrations());
+    }
+
+    MigrationRunner(UtilDB db, DatabaseKind kind, List<Migration> migrations) {
+        this.db = db;
+        this.kind = kind;
+        this.migrations = migrations;
+    }
+
+    /**
+     * Применяет миграции, которых еще нет в schema_migrations.
+     *
+     * @return количество примененных миграций
+     * @throws SQLException если миграция не удалась или контрольная сумма примененной миграции изменилась
+     */
+    public int migrate() throws SQLException {
+        int applied = 0;
+        try (Connection conn = db.createConnection()) {
+            conn.setAutoCommit(true);
+            try (Statement stm = conn.createStatement()) {
+                stm.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            }
+            try {
+                createHistoryTable(conn);
+                Map<Integer, String> history = loadHistory(conn);
+                for (Migration migration : migrations) {
+                    if (!migration.appliesTo(kind)) {
+                        continue;
+                    }
+                    String checksum = history.get(migration.version());
+                    if (checksum != null) {
+                        if (!checksum.equals(migration.checksum())) {
+                            throw new SQLException("Checksum mismatch for applied migration V" + migration.version()
+                                    + " (" + migration.description() + ")");
+                        }
+                        continue;
+                    }
+                    System.out.println("Применение миграции V" + migration.version() + ": " + migration.description());
+                    apply(conn, migration);
+                    applied++;
+                }
+            } finally {
+                try (Statement stm = conn.createStatement()) {
+                    stm.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        }
+        return applied;
+    }
+
+    private void createHistoryTable(Connection conn) throws SQLException {
+        try (Statement stm = conn.createStatement()) {
+            stm.execute("""
+                    CREATE TABLE IF NOT EXISTS schema_migrations (
+                        version INTEGER PRIMARY KEY,
+                        description VARCHAR(255) NOT NULL,
+                        checksum CHAR(64) NOT NULL,
+                        applied_at TIMESTAMP NOT NULL DEFAULT now()
+                    )""");
+        }
+    }
+
+    private Map<Integer, String> loadHistory(Connection conn) throws SQLException {
+        Map<Integer, String> history = new HashMap<>();
+        try (Statement stm = conn.createStatement();
+             ResultSet resultSet = stm.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (resultSet.next()) {
+                history.put(resultSet.getInt(1), resultSet.getString(2).trim());
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Выполняет миграцию. Транзакционная миграция откатывается целиком; нетранзакционная записывается
+     * в историю только после успеха всех команд, поэтому ее команды должны быть повторяемыми (IF NOT EXISTS).
+     */
+    private void apply(Connection conn, Migration migration) throws SQLException {
+        if (!migration.transactional()) {
+            try (Statement stm = conn.createStatement()) {
+                for (String sql : migration.statements()) {
+                    executeNonTransactional(conn, stm, sql);
+                }
+            }
+            recordApplied(conn, migration);
+            return;
+        }
+        conn.setAutoCommit(false);
+        try {
+            executeAll(conn, migration);
+            recordApplied(conn, migration);
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void executeAll(Connection conn, Migration migration) throws SQLException {
+        try (Statement stm = conn.createStatement()) {
+            for (String sql : migration.statements()) {
+                stm.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Выполняет команду нетранзакционной миграции.
+     * <p>
+     * Прерванный CREATE INDEX CONCURRENTLY оставляет невалидный индекс с тем же именем, который IF NOT EXISTS
+     * при повторном запуске пропустил бы навсегда. Поэтому невалидный индекс удаляется и строится заново,
+     * а после построения проверяется pg_index.indisvalid: миграция с невалидным индексом не записывается в историю.
+     * </p>
+     */
+    private void executeNonTransactional(Connection conn, Statement stm, String sql) throws SQLException {
+        Matcher matcher = CONCURRENT_INDEX.matcher(sql);
+        if (!matcher.find()) {
+            stm.execute(sql);
+            return;
+        }
+        String index = matcher.group(1);
+        if (Boolean.FALSE.equals(isIndexValid(conn, index))) {
+            System.out.println("Невалидный индекс " + index + " удаляется и строится заново");
+            stm.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+        }
+        stm.execute(sql);
+        if (!Boolean.TRUE.equals(isIndexValid(conn, index))) {
+            throw new SQLException("Index " + index + " is missing or invalid after concurrent build");
+        }
+    }
+
+    /**
+     * @return признак валидности индекса или null, если индекса нет
+     */
+    private static Boolean isIndexValid(Connection conn, String index) throws SQLException {
+        try (PreparedStatement stm = conn.prepareStatement(
+                "SELECT indisvalid FROM pg_index WHERE indexrelid = to_regclass(?)")) {
+            stm.setString(1, index);
+            ResultSet resultSet = stm.executeQuery();
+            return resultSet.next() ? resultSet.getBoolean(1) : null;
+        }
+    }
+
+    private void recordApplied(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement stm = conn.prepareStatement(
+                "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+            stm.setInt(1, migration.version());
+            stm.setString(2, migration.description());
+            stm.setString(3, migration.checksum());
+            stm.executeUpdate();
+        }
+    }
+
+    /**
+     * Загружает скрипты, перечисленные в db/migration/index.txt.
+     */
+    private static List<Migration> loadMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        for (String fileName : readResource(LOCATION + "index.txt").split("\n")) {
+            fileName = fileName.trim();
+            if (fileName.isEmpty() || fileName.startsWith("#")) {
+                continue;
+            }
+            Migration migration = Migration.parse(fileName, readResource(LOCATION + fileName));
+            if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version() >= migration.version()) {
+                throw new IllegalStateException("Migrations must be listed in ascending version order: " + fileName);
+            }
+            migrations.add(migration);
+        }
+        return migrations;
+    }
+
+    private static String readResource(String path) {
+        try (InputStream input = MigrationRunner.class.getClassLoader().getResourceAsStream(path)) {
+            if (input == null) {
+                throw new IllegalStateException("Migration resource not found: " + path);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                StringBuilder content = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    content.append(line).append('\n');
+                }
+                return content.toString();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read migration resource " + path, ex);
+        }
+    }
+}
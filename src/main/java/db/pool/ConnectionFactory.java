@@ -0,0 +1,19 @@
+package db.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Фабрика физических соединений с базой данных, используемая пулом соединений.
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+
+    /**
+     * Открывает новое физическое соединение с базой данных.
+     *
+     * @return новое соединение
+     * @throws SQLException если соединение не удалось открыть
+     */
+    Connection open() throws SQLException;
+}
@@ -0,0 +1,331 @@
+package db.pool;
+
+import db.Deadline;
+import db.UtilDB;
+import metrics.MetricsSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченный пул соединений с базой данных.
+ * <p>
+ * Количество выданных соединений ограничено семафором на maxSize разрешений, поэтому узел
+ * никогда не открывает больше maxSize сессий БД. Ожидание свободного соединения ограничено
+ * borrowTimeoutMs, после чего выбрасывается SQLTransientConnectionException.
+ * Свободные соединения хранятся в стеке (LIFO), чтобы чаще выдавались "теплые" соединения,
+ * а простаивающие дольше idleTimeoutMs закрывались фоновым потоком до уровня minSize.
+ * К каждому физическому соединению привязан LRU-кэш подготовленных запросов.
+ * </p>
+ */
+public class ConnectionPool implements UtilDB, MetricsSource {
+    private final ConnectionFactory factory;
+    private final PoolConfig config;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final StatementCache.Counters statementCacheCounters = new StatementCache.Counters();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Создает пул и сразу открывает minSize соединений.
+     *
+     * @param factory фабрика физических соединений
+     * @param config  настройки пула
+     */
+    public ConnectionPool(ConnectionFactory factory, PoolConfig config) {
+        this.factory = factory;
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize(), true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(config.getIdleTimeoutMs() / 2, 30000));
+        housekeeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        fillToMinimum();
+    }
+
+    /**
+     * Выдает соединение из пула. Закрытие полученного соединения возвращает его в пул.
+     * Ожидание ограничено borrowTimeoutMs и остатком бюджета запроса ({@link Deadline}).
+     *
+     * @return соединение с базой данных
+     * @throws SQLTransientConnectionException если свободное соединение не появилось за borrowTimeoutMs
+     * @throws SQLTimeoutException             если бюджет запроса исчерпан до получения соединения
+     * @throws SQLException                    если пул закрыт или не удалось открыть соединение
+     */
+    @Override
+    public Connection createConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт", "08003");
+        }
+        long remaining = Deadline.checkRemaining();
+        long timeoutMs = Math.min(config.getBorrowTimeoutMs(), remaining);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            acquirePermit(timeoutMs);
+        } catch (SQLTransientConnectionException ex) {
+            if (timeoutMs < config.getBorrowTimeoutMs()) {
+                throw new SQLTimeoutException("Превышено время выполнения запроса при ожидании соединения", "57014", ex);
+            }
+            throw ex;
+        }
+        try {
+            return takeConnection(deadline).lease();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Закрывает пул: свободные соединения закрываются сразу, выданные - при возврате.
+     */
+    @Override
+    public void closeConnection() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * @return количество открытых физических соединений
+     */
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    /**
+     * @return количество свободных соединений в пуле
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return количество соединений, выданных клиентам
+     */
+    public int getActiveCount() {
+        return config.getMaxSize() - permits.availablePermits();
+    }
+
+    /**
+     * @return количество потоков, ожидающих свободное соединение
+     */
+    public int getWaitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * @return настройки пула
+     */
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Возвращает состояние пула и счетчики кэша подготовленных запросов.
+     *
+     * @return метрики пула
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxSize", config.getMaxSize());
+        metrics.put("total", getTotalCount());
+        metrics.put("active", getActiveCount());
+        metrics.put("idle", getIdleCount());
+        metrics.put("waiting", getWaitingCount());
+        metrics.putAll(statementCacheCounters.snapshot());
+        return metrics;
+    }
+
+    /**
+     * Возвращает соединение в пул. Вызывается из прокси при закрытии соединения клиентом.
+     *
+     * @param pooled возвращаемое соединение
+     */
+    void release(PooledConnection pooled) {
+        try {
+            if (closed || pooled.isBroken()) {
+                discard(pooled);
+                return;
+            }
+            pooled.reset();
+            idle.offerFirst(pooled);
+        } catch (SQLException ex) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Захватывает разрешение на выдачу соединения с ограничением по времени.
+     *
+     * @param timeoutMs максимальное время ожидания
+     * @throws SQLTransientConnectionException если разрешение не получено вовремя
+     */
+    private void acquirePermit(long timeoutMs) throws SQLTransientConnectionException {
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Нет свободных соединений в пуле: ожидание превысило " + timeoutMs + " мс", "08001");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Ожидание соединения прервано", "08001", ex);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Берет проверенное свободное соединение или открывает новое, если позволяет лимит.
+     *
+     * @param deadline момент (System.nanoTime), после которого ожидание прекращается
+     * @return соединение, готовое к выдаче
+     * @throws SQLException если соединение не удалось получить
+     */
+    private PooledConnection takeConnection(long deadline) throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+            if (pooled == null) {
+                if (reserveSlot()) {
+                    return open();
+                }
+                // Все слоты заняты соединениями, которые прямо сейчас возвращаются в пул
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLTransientConnectionException("Нет свободных соединений в пуле", "08001");
+                }
+                try {
+                    pooled = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLTransientConnectionException("Ожидание соединения прервано", "08001", ex);
+                }
+                if (pooled == null) {
+                    continue;
+                }
+            }
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Проверяет соединение перед выдачей. Недавно возвращенные соединения не проверяются,
+     * чтобы не тратить лишний запрос к БД на каждую выдачу под нагрузкой.
+     *
+     * @param pooled проверяемое соединение
+     * @return true, если соединение можно выдать
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        if (pooled.isBroken()) {
+            return false;
+        }
+        long idleFor = System.currentTimeMillis() - pooled.getLastReleasedAt();
+        if (idleFor < config.getValidationIntervalMs()) {
+            return true;
+        }
+        try {
+            return pooled.getPhysical().isValid(config.getValidationTimeoutSec());
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Резервирует место под новое физическое соединение, не превышая maxSize.
+     *
+     * @return true, если место зарезервировано
+     */
+    private boolean reserveSlot() {
+        int current;
+        do {
+            current = total.get();
+            if (current >= config.getMaxSize()) {
+                return false;
+            }
+        } while (!total.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Открывает физическое соединение в заранее зарезервированном месте.
+     *
+     * @return новое соединение пула
+     * @throws SQLException если соединение не удалось открыть
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            StatementCache statementCache = config.getStatementCacheSize() > 0
+                    ? new StatementCache(config.getStatementCacheSize(), statementCacheCounters)
+                    : null;
+            return new PooledConnection(this, factory.open(), statementCache);
+        } catch (SQLException | RuntimeException ex) {
+            total.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Закрывает физическое соединение и освобождает его место в пуле.
+     *
+     * @param pooled закрываемое соединение
+     */
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Закрывает соединения, простаивающие дольше idleTimeoutMs, и восполняет пул до minSize.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : idle) {
+            boolean expired = now - pooled.getLastReleasedAt() > config.getIdleTimeoutMs();
+            // remove() гарантирует, что соединение не было выдано клиенту за время обхода
+            if (expired && total.get() > config.getMinSize() && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+        fillToMinimum();
+    }
+
+    /**
+     * Открывает соединения, пока их количество меньше minSize.
+     */
+    private void fillToMinimum() {
+        while (!closed && total.get() < config.getMinSize() && reserveSlot()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException | RuntimeException ex) {
+                System.out.println("Ошибка при создании соединения с базой данных: " + ex.getMessage());
+                return;
+            }
+        }
+    }
+}
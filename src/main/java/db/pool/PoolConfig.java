@@ -0,0 +1,82 @@
+package db.pool;
+
+import config.ConfigUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Настройки пула соединений.
+ */
+@Getter
+@AllArgsConstructor
+public class PoolConfig {
+    // Минимальное количество соединений, которое пул держит открытыми
+    private final int minSize;
+    // Жесткий предел количества соединений (сессий БД) на узел
+    private final int maxSize;
+    // Максимальное время ожидания свободного соединения
+    private final long borrowTimeoutMs;
+    // Время простоя, после которого лишнее соединение закрывается
+    private final long idleTimeoutMs;
+    // Таймаут проверки соединения при выдаче из пула (Connection.isValid)
+    private final int validationTimeoutSec;
+    // Соединение, вернувшееся в пул менее этого интервала назад, выдается без проверки
+    private final long validationIntervalMs;
+    // Размер LRU-кэша подготовленных запросов на одно соединение (0 - кэш отключен)
+    private final int statementCacheSize;
+
+    /**
+     * Создает настройки пула из application.properties.
+     *
+     * @return настройки пула
+     */
+    public static PoolConfig fromProperties() {
+        return fromProperties(null);
+    }
+
+    /**
+     * Создает настройки отдельного пула ресурса.
+     * Свойство pool_{resource}_{name} переопределяет общее свойство pool_{name}.
+     *
+     * @param resource имя ресурса, например products, или null для общих настроек
+     * @return настройки пула
+     */
+    public static PoolConfig fromProperties(String resource) {
+        return resource == null ? fromScopes() : fromScopes(resource);
+    }
+
+    /**
+     * Создает настройки пула ресурса на шарде.
+     * Свойство pool_shard_{resource}_{name} переопределяет pool_shard_{name}, а оно - общее pool_{name}.
+     *
+     * @param resource имя ресурса, например products
+     * @return настройки пула
+     */
+    public static PoolConfig fromShardProperties(String resource) {
+        return fromScopes("shard", "shard_" + resource);
+    }
+
+    /**
+     * Создает настройки пула; каждая следующая область свойств переопределяет предыдущую.
+     */
+    private static PoolConfig fromScopes(String... scopes) {
+        int maxSize = Math.max(1, poolProperty(scopes, "max_size", 10));
+        int minSize = Math.min(maxSize, Math.max(0, poolProperty(scopes, "min_size", 2)));
+        return new PoolConfig(
+                minSize,
+                maxSize,
+                poolProperty(scopes, "borrow_timeout_ms", 3000),
+                poolProperty(scopes, "idle_timeout_ms", 600000),
+                poolProperty(scopes, "validation_timeout_sec", 2),
+                poolProperty(scopes, "validation_interval_ms", 500),
+                ConfigUtil.getIntProperty("statement_cache_size", 64));
+    }
+
+    private static int poolProperty(String[] scopes, String name, int defaultValue) {
+        int value = ConfigUtil.getIntProperty("pool_" + name, defaultValue);
+        for (String scope : scopes) {
+            value = ConfigUtil.getIntProperty("pool_" + scope + "_" + name, value);
+        }
+        return value;
+    }
+}
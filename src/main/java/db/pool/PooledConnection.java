@@ -0,0 +1,289 @@
+package db.pool;
+
+import db.Deadline;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Физическое соединение, принадлежащее пулу.
+ * Клиенту выдается прокси над соединением, у которого close() возвращает соединение в пул,
+ * а не закрывает его. На каждую выдачу создается новый прокси, поэтому ссылка,
+ * оставшаяся у клиента после close(), не может повлиять на следующего владельца соединения.
+ * Подготовленные запросы соединения кэшируются в {@link StatementCache}.
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private volatile long lastReleasedAt = System.currentTimeMillis();
+    private volatile boolean broken;
+
+    /**
+     * @param pool           пул, которому принадлежит соединение
+     * @param physical       физическое соединение
+     * @param statementCache кэш подготовленных запросов или null, если кэширование отключено
+     */
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    long getLastReleasedAt() {
+        return lastReleasedAt;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Выдает клиенту прокси над физическим соединением.
+     *
+     * @return соединение, которое при закрытии возвращается в пул
+     */
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(
+                PooledConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new LeaseHandler());
+    }
+
+    /**
+     * Возвращает соединение в исходное состояние перед повторной выдачей:
+     * откатывает незавершенную транзакцию и снимает режим только для чтения.
+     *
+     * @throws SQLException если соединение не удалось привести в исходное состояние
+     */
+    void reset() throws SQLException {
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (physical.isReadOnly()) {
+            physical.setReadOnly(false);
+        }
+        physical.clearWarnings();
+        lastReleasedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Закрывает кэшированные запросы и физическое соединение.
+     */
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.closeAll();
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.out.println("Ошибка при закрытии соединения: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Проверяет, означает ли ошибка, что соединение больше нельзя использовать.
+     *
+     * @param ex ошибка, полученная от драйвера
+     * @return true, если соединение нужно исключить из пула
+     */
+    private static boolean isFatal(SQLException ex) {
+        if (ex instanceof SQLNonTransientConnectionException || ex instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = ex.getSQLState();
+        // 08xxx - ошибки соединения, 57P0x - сервер остановлен или перезапускается
+        return state != null && (state.startsWith("08") || state.startsWith("57P0"));
+    }
+
+    /**
+     * Вызывает метод физического объекта, разворачивая исключение рефлексии
+     * и помечая соединение сломанным при фатальной ошибке.
+     */
+    private Object invokePhysical(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException sqlException && isFatal(sqlException)) {
+                broken = true;
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Ограничивает время выполнения запроса остатком бюджета текущего HTTP-запроса.
+     * Если бюджет исчерпан, запрос закрывается и выбрасывается SQLTimeoutException.
+     */
+    private static void applyDeadline(Statement statement) throws SQLException {
+        try {
+            Deadline.applyTo(statement);
+        } catch (SQLException ex) {
+            statement.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Обработчик вызовов прокси, выданного одному клиенту.
+     */
+    private class LeaseHandler implements InvocationHandler {
+        private volatile boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Соединение уже возвращено в пул", "08003");
+            }
+            if (statementCache != null && method.getName().equals("prepareStatement") && isCacheable(args)) {
+                return prepareCached((Connection) proxy, args);
+            }
+            Object result = invokePhysical(physical, method, args);
+            if (result instanceof Statement statement) {
+                applyDeadline(statement);
+            }
+            return result;
+        }
+
+        /**
+         * Кэшируются только варианты prepareStatement(sql) и prepareStatement(sql, autoGeneratedKeys).
+         */
+        private boolean isCacheable(Object[] args) {
+            return args.length == 1 || (args.length == 2 && args[1] instanceof Integer);
+        }
+
+        private PreparedStatement prepareCached(Connection owner, Object[] args) throws SQLException {
+            Deadline.checkRemaining();
+            String sql = (String) args[0];
+            int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+            StatementCache.Key key = new StatementCache.Key(sql, autoGeneratedKeys);
+            PreparedStatement statement = statementCache.take(key);
+            if (statement == null) {
+                try {
+                    statement = physical.prepareStatement(sql, autoGeneratedKeys);
+                } catch (SQLException ex) {
+                    if (isFatal(ex)) {
+                        broken = true;
+                    }
+                    throw ex;
+                }
+            }
+            applyDeadline(statement);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PooledConnection.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CachedStatementHandler(owner, key, statement));
+        }
+    }
+
+    /**
+     * Обработчик прокси кэшированного запроса: close() возвращает запрос в кэш.
+     */
+    private class CachedStatementHandler implements InvocationHandler {
+        private final Connection owner;
+        private final StatementCache.Key key;
+        private final PreparedStatement statement;
+        private final List<ResultSet> resultSets = new ArrayList<>();
+        private boolean closed;
+
+        CachedStatementHandler(Connection owner, StatementCache.Key key, PreparedStatement statement) {
+            this.owner = owner;
+            this.key = key;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        recycle();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + key.sql() + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Запрос уже закрыт");
+            }
+            Object result = invokePhysical(statement, method, args);
+            if (result instanceof ResultSet resultSet) {
+                resultSets.add(resultSet);
+            }
+            return result;
+        }
+
+        /**
+         * Сбрасывает состояние запроса и возвращает его в кэш.
+         * Если соединение сломано или сброс не удался, запрос закрывается.
+         */
+        private void recycle() throws SQLException {
+            try {
+                for (ResultSet resultSet : resultSets) {
+                    resultSet.close();
+                }
+                resultSets.clear();
+                if (broken) {
+                    statement.close();
+                    return;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+                statement.setQueryTimeout(0);
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                statementCache.put(key, statement);
+            } catch (SQLException ex) {
+                statement.close();
+                throw ex;
+            }
+        }
+    }
+}
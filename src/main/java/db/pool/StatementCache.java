@@ -0,0 +1,111 @@
+package db.pool;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU-кэш подготовленных запросов одного физического соединения.
+ * <p>
+ * Ключом служит текст SQL и режим возврата сгенерированных ключей. Запрос, выданный клиенту,
+ * изымается из кэша и возвращается в него при закрытии, поэтому один и тот же объект
+ * PreparedStatement никогда не используется двумя вызовами одновременно.
+ * Кэш используется только потоком, владеющим соединением, и не синхронизирован.
+ * </p>
+ */
+class StatementCache {
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+
+    /**
+     * @param maxSize  максимальное количество запросов в кэше
+     * @param counters общие для пула счетчики попаданий и промахов
+     */
+    StatementCache(int maxSize, Counters counters) {
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Изымает подготовленный запрос из кэша.
+     *
+     * @param key ключ запроса
+     * @return подготовленный запрос или null при промахе
+     */
+    PreparedStatement take(Key key) {
+        PreparedStatement statement = statements.remove(key);
+        if (statement != null) {
+            counters.hits.incrementAndGet();
+        } else {
+            counters.misses.incrementAndGet();
+        }
+        return statement;
+    }
+
+    /**
+     * Возвращает запрос в кэш. Если кэш переполнен, закрывается самый давно использованный запрос.
+     *
+     * @param key       ключ запроса
+     * @param statement подготовленный запрос
+     */
+    void put(Key key, PreparedStatement statement) {
+        PreparedStatement previous = statements.put(key, statement);
+        if (previous != null && previous != statement) {
+            close(previous);
+        }
+        Iterator<PreparedStatement> eldest = statements.values().iterator();
+        while (statements.size() > maxSize && eldest.hasNext()) {
+            PreparedStatement evicted = eldest.next();
+            eldest.remove();
+            counters.evictions.incrementAndGet();
+            close(evicted);
+        }
+    }
+
+    /**
+     * Закрывает все запросы кэша. Вызывается перед закрытием физического соединения.
+     */
+    void closeAll() {
+        List<PreparedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        all.forEach(StatementCache::close);
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.out.println("Ошибка при закрытии запроса: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ключ кэша: текст запроса и режим возврата сгенерированных ключей.
+     */
+    record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    /**
+     * Счетчики кэша, общие для всех соединений пула.
+     */
+    static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("statementCacheHits", hits.get());
+            metrics.put("statementCacheMisses", misses.get());
+            metrics.put("statementCacheEvictions", evictions.get());
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package db.resilience;
+
+import config.ConfigUtil;
+import metrics.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Автоматический выключатель обращений к базе данных.
+ * <p>
+ * В состоянии CLOSED результаты последних windowSize обращений хранятся в кольцевом буфере.
+ * Когда доля ошибок или медленных обращений достигает порога, выключатель переходит в OPEN
+ * и на время openDurationMs отклоняет обращения без похода в БД. Затем в состоянии HALF_OPEN
+ * пропускается halfOpenProbes пробных обращений: если все успешны, выключатель замыкается,
+ * при первой ошибке снова размыкается.
+ * </p>
+ */
+public class CircuitBreaker implements MetricsSource {
+
+    /**
+     * Состояние выключателя.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+
+    // Результаты обращений: 0 - успех, 1 - ошибка, 2 - медленное обращение
+    private final byte[] outcomes;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openUntil;
+    private int probesInFlight;
+    private int successfulProbes;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong openedCount = new AtomicLong();
+
+    /**
+     * @param windowSize            количество последних обращений, по которым считаются доли
+     * @param minimumCalls          минимум обращений в окне для принятия решения
+     * @param failureRateThreshold  порог доли ошибок, %
+     * @param slowCallRateThreshold порог доли медленных обращений, %
+     * @param slowCallThresholdMs   обращение дольше этого времени считается медленным
+     * @param openDurationMs        сколько выключатель остается разомкнутым
+     * @param halfOpenProbes        количество пробных обращений в состоянии HALF_OPEN
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, int slowCallRateThreshold,
+                          long slowCallThresholdMs, long openDurationMs, int halfOpenProbes) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallThresholdNanos = slowCallThresholdMs * 1_000_000L;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.outcomes = new byte[windowSize];
+    }
+
+    /**
+     * Создает выключатель с настройками из application.properties.
+     *
+     * @return выключатель
+     */
+    public static CircuitBreaker fromProperties() {
+        return new CircuitBreaker(
+                Math.max(1, ConfigUtil.getIntProperty("breaker_window_size", 50)),
+                ConfigUtil.getIntProperty("breaker_minimum_calls", 20),
+                ConfigUtil.getIntProperty("breaker_failure_rate_percent", 50),
+                ConfigUtil.getIntProperty("breaker_slow_call_rate_percent", 80),
+                ConfigUtil.getIntProperty("breaker_slow_call_ms", 2000),
+                ConfigUtil.getIntProperty("breaker_open_duration_ms", 10000),
+                Math.max(1, ConfigUtil.getIntProperty("breaker_half_open_probes", 3)));
+    }
+
+    /**
+     * Запрашивает разрешение на обращение к базе данных.
+     * В разомкнутом состоянии отвечает без блокировок.
+     *
+     * @return true, если обращение разрешено
+     */
+    public boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() < openUntil) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() < openUntil) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+                successfulProbes = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                probesInFlight++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Регистрирует успешное обращение.
+     *
+     * @param durationNanos длительность обращения
+     */
+    public synchronized void onSuccess(long durationNanos) {
+        boolean slow = durationNanos >= slowCallThresholdNanos;
+        if (state == State.HALF_OPEN) {
+            if (slow) {
+                open();
+            } else if (++successfulProbes >= halfOpenProbes) {
+                close();
+            }
+            return;
+        }
+        record(slow ? (byte) 2 : (byte) 0);
+    }
+
+    /**
+     * Регистрирует неудачное обращение.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record((byte) 1);
+    }
+
+    /**
+     * Освобождает разрешение, полученное в HALF_OPEN, если обращение не дало результата о состоянии БД
+     * (например, завершилось ошибкой данных).
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    /**
+     * @return текущее состояние выключателя
+     */
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("state", state.name());
+        metrics.put("calls", recorded);
+        metrics.put("failureRatePercent", recorded == 0 ? 0 : failures * 100 / recorded);
+        metrics.put("slowCallRatePercent", recorded == 0 ? 0 : slowCalls * 100 / recorded);
+        metrics.put("rejected", rejected.get());
+        metrics.put("opened", openedCount.get());
+        return metrics;
+    }
+
+    private void record(byte outcome) {
+        if (recorded == windowSize) {
+            byte evicted = outcomes[position];
+            if (evicted == 1) {
+                failures--;
+            } else if (evicted == 2) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % windowSize;
+        if (outcome == 1) {
+            failures++;
+        } else if (outcome == 2) {
+            slowCalls++;
+        }
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && (failures * 100 >= failureRateThreshold * recorded
+                || slowCalls * 100 >= slowCallRateThreshold * recorded)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openDurationMs;
+        openedCount.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,152 @@
+package db.resilience;
+
+import db.Deadline;
+import db.TransactionContext;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Защита обращений к базе данных: автоматический выключатель и повторы при временных ошибках.
+ * <p>
+ * Чтения повторяются согласно {@link RetryPolicy}, если не выполняются внутри транзакции запроса
+ * и пауза укладывается в оставшееся время {@link Deadline}. Записи не повторяются, так как
+ * неизвестно, была ли зафиксирована предыдущая попытка.
+ * </p>
+ */
+public class DbResilience {
+
+    /**
+     * Защита, выполняющая обращения без выключателя и повторов.
+     */
+    public static final DbResilience NONE = new DbResilience(null, RetryPolicy.NONE);
+
+    private static final String BREAKER_OPEN_MESSAGE = "Database circuit breaker is open";
+
+    private final CircuitBreaker breaker;
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * @param breaker     автоматический выключатель или null, если он не используется
+     * @param retryPolicy политика повторов для чтений
+     */
+    public DbResilience(CircuitBreaker breaker, RetryPolicy retryPolicy) {
+        this.breaker = breaker;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Выполняет идемпотентное чтение с повторами при временных ошибках.
+     *
+     * @param call обращение к базе данных
+     * @param <T>  тип результата
+     * @return результат обращения
+     * @throws SQLException если обращение не удалось или выключатель разомкнут
+     */
+    public <T> T read(SqlCall<T> call) throws SQLException {
+        int attempts = TransactionContext.isActive() ? 1 : retryPolicy.getMaxAttempts();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return execute(call);
+            } catch (SQLException ex) {
+                if (attempt >= attempts || !retryPolicy.isRetryable(ex)) {
+                    throw ex;
+                }
+                long backoff = retryPolicy.backoffMs(attempt);
+                if (backoff >= Deadline.remainingMs()) {
+                    throw ex;
+                }
+                System.out.println("Повтор обращения к БД после ошибки " + ex.getSQLState() + ", попытка " + (attempt + 1));
+                sleep(backoff, ex);
+            }
+        }
+    }
+
+    /**
+     * Выполняет запись под защитой выключателя, без повторов.
+     *
+     * @param call обращение к базе данных
+     * @param <T>  тип результата
+     * @return результат обращения
+     * @throws SQLException если обращение не удалось или выключатель разомкнут
+     */
+    public <T> T write(SqlCall<T> call) throws SQLException {
+        return execute(call);
+    }
+
+    /**
+     * Выполняет потоковое чтение (выгрузку) под защитой выключателя, без повторов.
+     * К моменту ошибки часть строк уже передана получателю, поэтому повторить обращение нельзя.
+     * Длительность выгрузки зависит от объема данных, поэтому в долю медленных обращений она не входит.
+     *
+     * @param call обращение к базе данных
+     * @param <T>  тип результата
+     * @return результат обращения
+     * @throws SQLException если обращение не удалось или выключатель разомкнут
+     */
+    public <T> T stream(SqlCall<T> call) throws SQLException {
+        return execute(call, false);
+    }
+
+    private <T> T execute(SqlCall<T> call) throws SQLException {
+        return execute(call, true);
+    }
+
+    private <T> T execute(SqlCall<T> call, boolean timed) throws SQLException {
+        if (breaker == null) {
+            return call.call();
+        }
+        if (!breaker.tryAcquire()) {
+            throw new SQLTransientConnectionException(BREAKER_OPEN_MESSAGE, "08001");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            breaker.onSuccess(timed ? System.nanoTime() - start : 0);
+            return result;
+        } catch (SQLException ex) {
+            if (isRaisedLocally(ex)) {
+                // Исчерпанный бюджет клиента или очередь к пулу этого узла ничего не говорят о состоянии БД
+                breaker.onIgnored();
+            } else if (isDatabaseFailure(ex)) {
+                breaker.onFailure();
+            } else {
+                // Ошибки данных (нарушение ограничений и т.п.) говорят о доступности БД
+                breaker.onSuccess(timed ? System.nanoTime() - start : 0);
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            breaker.onIgnored();
+            throw ex;
+        }
+    }
+
+    /**
+     * Определяет, выброшена ли ошибка самим приложением до обращения к драйверу: исчерпанный бюджет
+     * запроса ({@link Deadline}, ожидание соединения или пачки чтений) - SQLTimeoutException,
+     * нехватка соединений в пуле - SQLTransientConnectionException. Ошибки сервера и соединения
+     * драйвер PostgreSQL сообщает через PSQLException, поэтому эти типы от него не приходят.
+     */
+    private static boolean isRaisedLocally(SQLException ex) {
+        return ex instanceof SQLTimeoutException || ex instanceof SQLTransientConnectionException;
+    }
+
+    /**
+     * Определяет, свидетельствует ли ошибка о проблеме с базой данных:
+     * недоступность (08), нехватка ресурсов (53), остановка сервера или таймаут (57).
+     */
+    private static boolean isDatabaseFailure(SQLException ex) {
+        String state = ex.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("53") || state.startsWith("57");
+    }
+
+    private static void sleep(long backoffMs, SQLException cause) throws SQLException {
+        try {
+            Thread.sleep(backoffMs);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package db.resilience;
+
+import config.ConfigUtil;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Политика повторов обращений при временных ошибках базы данных.
+ * <p>
+ * Повторяются только ошибки сериализации и взаимоблокировки (40001, 40P01),
+ * обрыв соединения (класс 08) и перезапуск сервера (57P01). Пауза перед повтором
+ * выбирается случайно из [0, min(maxBackoff, baseBackoff * 2^attempt)] (full jitter),
+ * чтобы повторы от разных запросов не приходили одновременно.
+ * </p>
+ */
+public class RetryPolicy {
+
+    /**
+     * Политика без повторов.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0);
+
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+
+    /**
+     * @param maxAttempts   максимальное количество попыток, включая первую
+     * @param baseBackoffMs базовая пауза перед повтором
+     * @param maxBackoffMs  максимальная пауза перед повтором
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Создает политику с настройками из application.properties.
+     *
+     * @return политика повторов
+     */
+    public static RetryPolicy fromProperties() {
+        return new RetryPolicy(
+                ConfigUtil.getIntProperty("retry_max_attempts", 3),
+                ConfigUtil.getIntProperty("retry_base_backoff_ms", 50),
+                ConfigUtil.getIntProperty("retry_max_backoff_ms", 1000));
+    }
+
+    /**
+     * @return максимальное количество попыток
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Проверяет, имеет ли смысл повторить обращение после ошибки.
+     * Отказ пула в выдаче соединения не повторяется: он уже означает перегрузку.
+     *
+     * @param ex ошибка обращения
+     * @return true, если ошибка временная
+     */
+    public boolean isRetryable(SQLException ex) {
+        if (ex instanceof SQLTransientConnectionException) {
+            return false;
+        }
+        String state = ex.getSQLState();
+        if (state == null) {
+            return false;
+        }
+        return state.equals("40001") || state.equals("40P01") || state.equals("57P01") || state.startsWith("08");
+    }
+
+    /**
+     * Вычисляет паузу перед повтором.
+     *
+     * @param attempt номер завершившейся неудачей попытки, начиная с 1
+     * @return пауза в миллисекундах
+     */
+    public long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
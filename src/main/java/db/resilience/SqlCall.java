@@ -0,0 +1,20 @@
+package db.resilience;
+
+import java.sql.SQLException;
+
+/**
+ * Обращение к базе данных, выполняемое под защитой {@link DbResilience}.
+ *
+ * @param <T> тип результата
+ */
+@FunctionalInterface
+public interface SqlCall<T> {
+
+    /**
+     * Выполняет обращение к базе данных.
+     *
+     * @return результат обращения
+     * @throws SQLException если произошла ошибка при работе с базой данных
+     */
+    T call() throws SQLException;
+}
@@ -0,0 +1,19 @@
+package db.shard;
+
+/**
+ * Действие, выполняемое на выбранном шарде.
+ *
+ * @param <T> тип результата
+ * @param <E> тип проверяемого исключения действия
+ */
+@FunctionalInterface
+public interface ShardCall<T, E extends Exception> {
+
+    /**
+     * Выполняет действие.
+     *
+     * @return результат действия
+     * @throws E ошибка действия
+     */
+    T call() throws E;
+}
@@ -0,0 +1,147 @@
+package db.shard;
+
+import db.UtilDB;
+import metrics.MetricsSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Реализация UtilDB, распределяющая данные по нескольким базам (шардам).
+ * <p>
+ * Шард записи определяется ее идентификатором: {@code shard = id mod N}. Репозиторий выбирает шард
+ * через {@link #onShard(int, ShardCall)}, после чего {@link #createConnection()} и {@link #createReadConnection()}
+ * в текущем потоке выдают соединения этого шарда. Новые записи распределяются по шардам по кругу.
+ * </p>
+ */
+public class ShardedUtilDB implements UtilDB, MetricsSource {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<UtilDB> shards;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final AtomicLongArray routed;
+
+    /**
+     * @param shards источники соединений шардов; порядок определяет номер шарда и не должен меняться
+     */
+    public ShardedUtilDB(List<UtilDB> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.routed = new AtomicLongArray(shards.size());
+    }
+
+    /**
+     * @return количество шардов
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Возвращает источник соединений шарда для обращений, не зависящих от выбора шарда в потоке.
+     *
+     * @param shard номер шарда
+     * @return источник соединений шарда
+     */
+    public UtilDB shard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Определяет шард, в котором хранится запись с заданным идентификатором.
+     *
+     * @param id идентификатор записи
+     * @return номер шарда
+     */
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id, (long) shards.size());
+    }
+
+    /**
+     * Выбирает шард для новой записи.
+     *
+     * @return номер шарда
+     */
+    public int nextShard() {
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    /**
+     * Выполняет действие, направляя все обращения к БД в текущем потоке на заданный шард.
+     *
+     * @param shard номер шарда
+     * @param call  действие
+     * @param <T>   тип результата
+     * @param <E>   тип исключения действия
+     * @return результат действия
+     * @throws E ошибка действия
+     */
+    public <T, E extends Exception> T onShard(int shard, ShardCall<T, E> call) throws E {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        routed.incrementAndGet(shard);
+        try {
+            return call.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Выдает соединение с шардом, выбранным в текущем потоке.
+     *
+     * @return соединение с базой данных
+     * @throws SQLException если шард не выбран или не удалось получить соединение
+     */
+    @Override
+    public Connection createConnection() throws SQLException {
+        return currentShard().createConnection();
+    }
+
+    /**
+     * Выдает соединение для чтения с шардом, выбранным в текущем потоке.
+     *
+     * @return соединение с базой данных
+     * @throws SQLException если шард не выбран или не удалось получить соединение
+     */
+    @Override
+    public Connection createReadConnection() throws SQLException {
+        return currentShard().createReadConnection();
+    }
+
+    /**
+     * Закрывает соединения всех шардов.
+     */
+    @Override
+    public void closeConnection() {
+        shards.forEach(UtilDB::closeConnection);
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            metrics.put("shard-" + i + ".routedCalls", routed.get(i));
+        }
+        return metrics;
+    }
+
+    private UtilDB currentShard() throws SQLException {
+        Integer shard = CURRENT.get();
+        if (shard == null) {
+            throw new SQLException("Shard is not selected for the current call");
+        }
+        return shards.get(shard);
+    }
+}
@@ -0,0 +1,23 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Результат чтения сущностей по набору идентификаторов.
+ * Найденные сущности идут в порядке запрошенных id, ненайденные id перечислены в missing.
+ *
+ * @param <T> тип DTO элементов
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetDto<T> {
+    private List<T> items;
+    private List<Long> missing;
+}
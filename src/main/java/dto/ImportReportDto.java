@@ -0,0 +1,24 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Отчет о массовом импорте.
+ * Список rejects содержит не больше import_max_rejects строк, поле rejected - общее количество отклоненных.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDto {
+    private long received;
+    private long inserted;
+    private long updated;
+    private long rejected;
+    private List<ImportRejectDto> rejects;
+}
@@ -0,0 +1,23 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Страница списка сущностей при постраничном чтении по ключу.
+ * Следующая страница запрашивается с параметром after=nextCursor; nextCursor равен null на последней странице.
+ *
+ * @param <T> тип DTO элементов
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDto<T> {
+    private List<T> items;
+    private Long nextCursor;
+}
@@ -0,0 +1,19 @@
+package dto.recipe;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Set;
+
+/**
+ * Тело запроса PUT для рецепта: поля RecipeDto и новый состав рецепта.
+ * Используется только для чтения запроса, в ответах возвращается RecipeDto.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class RecipeUpdateDto extends RecipeDto {
+    // Идентификаторы продуктов нового состава; null - состав не изменяется
+    private Set<Long> productIds;
+}
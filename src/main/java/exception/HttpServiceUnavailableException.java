@@ -0,0 +1,7 @@
+package exception;
+
+public class HttpServiceUnavailableException extends RuntimeException {
+    public HttpServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,77 @@
+package filter;
+
+import metrics.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничитель количества одновременно обрабатываемых запросов к одному ресурсу.
+ * Запрос, не получивший разрешение за maxWaitMs, отклоняется, а не занимает поток контейнера в очереди.
+ */
+public class Bulkhead implements MetricsSource {
+    private final int maxInFlight;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param maxInFlight максимальное количество одновременных запросов
+     * @param maxWaitMs   максимальное время ожидания разрешения
+     */
+    public Bulkhead(int maxInFlight, long maxWaitMs) {
+        this.maxInFlight = maxInFlight;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxInFlight, true);
+    }
+
+    /**
+     * Пытается занять место для запроса.
+     *
+     * @return true, если запрос можно обрабатывать; в этом случае вызывающий обязан вызвать {@link #release()}
+     */
+    public boolean tryEnter() {
+        boolean acquired;
+        try {
+            acquired = maxWaitMs > 0
+                    ? permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)
+                    : permits.tryAcquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return true;
+    }
+
+    /**
+     * Освобождает место, занятое запросом.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        permits.release();
+    }
+
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxInFlight", maxInFlight);
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("peakInFlight", peakInFlight.get());
+        metrics.put("accepted", accepted.get());
+        metrics.put("rejected", rejected.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,46 @@
+package filter;
+
+import exception.HttpServiceUnavailableException;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Фильтр, ограничивающий количество одновременных запросов к каждому ресурсу (/api/products, /api/recipes).
+ * Ограничители создаются в ListenerContext и передаются через атрибут контекста "bulkheads".
+ * Запрос сверх лимита получает 503 Service Unavailable, не затрагивая другие ресурсы.
+ */
+@WebFilter("/api/*")
+public class BulkheadFilter implements Filter {
+    static final String BULKHEADS_ATTRIBUTE = "bulkheads";
+    private Map<String, Bulkhead> bulkheads = Map.of();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void init(FilterConfig filterConfig) throws ServletException {
+        Object attribute = filterConfig.getServletContext().getAttribute(BULKHEADS_ATTRIBUTE);
+        if (attribute instanceof Map<?, ?> map) {
+            bulkheads = (Map<String, Bulkhead>) map;
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        Bulkhead bulkhead = bulkheads.get(DeadlineFilter.resourceName(((HttpServletRequest) servletRequest).getRequestURI()));
+        if (bulkhead == null) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        if (!bulkhead.tryEnter()) {
+            throw new ServletException(new HttpServiceUnavailableException("Too many concurrent requests, try again later"));
+        }
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            bulkhead.release();
+        }
+    }
+}
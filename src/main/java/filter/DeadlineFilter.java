@@ -0,0 +1,93 @@
+package filter;
+
+import config.ConfigUtil;
+import db.Deadline;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+
+/**
+ * Фильтр, устанавливающий крайний срок выполнения запроса.
+ * Бюджет берется из заголовка X-Request-Timeout (в миллисекундах) или из настройки для ресурса
+ * (deadline_products_ms, deadline_recipes_ms), иначе из deadline_default_ms.
+ * Бюджет из заголовка не может превышать deadline_max_ms; значение 0 в настройках снимает ограничение.
+ * Выгрузка (/export) и импорт (/import) коллекции длятся пропорционально объему данных, поэтому для них
+ * используются отдельные настройки deadline_export_ms и deadline_import_ms (по умолчанию без ограничения).
+ */
+@WebFilter("/api/*")
+public class DeadlineFilter implements Filter {
+    static final String TIMEOUT_HEADER = "X-Request-Timeout";
+    private final long defaultMs = ConfigUtil.getIntProperty("deadline_default_ms", 5000);
+    private final long maxMs = ConfigUtil.getIntProperty("deadline_max_ms", 30000);
+    private final long exportMs = ConfigUtil.getIntProperty("deadline_export_ms", 0);
+    private final long importMs = ConfigUtil.getIntProperty("deadline_import_ms", 0);
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        Long budget = resolveBudget(httpRequest);
+        if (budget == null) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+        Deadline.start(budget);
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    /**
+     * Определяет бюджет времени запроса.
+     *
+     * Исчерпанный бюджет из заголовка (0 или меньше) приводит к отказу при первом обращении к БД.
+     *
+     * @param request HTTP-запрос
+     * @return бюджет в миллисекундах или null, если время запроса не ограничено
+     */
+    private Long resolveBudget(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (header != null) {
+            try {
+                return Math.min(Long.parseLong(header.trim()), maxMs);
+            } catch (NumberFormatException ex) {
+                // Некорректный заголовок игнорируется, используется значение по умолчанию
+            }
+        }
+        String uri = request.getRequestURI();
+        if (uri != null && uri.endsWith("/export")) {
+            return exportMs > 0 ? exportMs : null;
+        }
+        if (uri != null && uri.endsWith("/import")) {
+            return importMs > 0 ? importMs : null;
+        }
+        String resource = resourceName(uri);
+        long budget = resource == null
+                ? defaultMs
+                : ConfigUtil.getIntProperty("deadline_" + resource + "_ms", (int) defaultMs);
+        return budget > 0 ? budget : null;
+    }
+
+    /**
+     * Извлекает имя ресурса из пути вида /context/api/{resource}/...
+     *
+     * @param uri путь запроса
+     * @return имя ресурса или null
+     */
+    static String resourceName(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        int start = uri.indexOf("/api/");
+        if (start < 0) {
+            return null;
+        }
+        String rest = uri.substring(start + "/api/".length());
+        int end = rest.indexOf('/');
+        String resource = end < 0 ? rest : rest.substring(0, end);
+        return resource.isEmpty() ? null : resource;
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonSyntaxException;
 import exception.ElementNotFoundException;
 import exception.HttpBadRequestException;
 import exception.HttpMediaTypeException;
+import exception.HttpServiceUnavailableException;
 import exception.ServiceException;
 import jakarta.servlet.*;
 import jakarta.servlet.annotation.WebFilter;
@@ -12,6 +13,9 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.BadRequestException;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
 
 @WebFilter("/*")  // Аннотация для указания, что этот фильтр применяется ко всем запросам
 public class ErrorFilter implements Filter {
@@ -39,7 +43,16 @@ public class ErrorFilter implements Filter {
         } catch (ServletException error) {
             // Перехват ServletException и обработка его причины
             Throwable cause = error.getCause();
-            if (cause instanceof ElementNotFoundException) {
+            if (isDeadlineExceeded(cause)) {
+                // Исчерпан бюджет времени запроса или запрос к БД отменен по таймауту
+                handleError(httpResponse, HttpServletResponse.SC_GATEWAY_TIMEOUT, cause.getMessage());
+
+            } else if (cause instanceof HttpServiceUnavailableException
+                    || hasCause(cause, SQLTransientConnectionException.class)) {
+                // Превышен лимит одновременных запросов к ресурсу или нет свободных соединений с БД
+                handleError(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, cause.getMessage());
+
+            } else if (cause instanceof ElementNotFoundException) {
                 // Обработка исключения ElementNotFoundException
                 handleError(httpResponse, HttpServletResponse.SC_NOT_FOUND, cause.getMessage());
 
@@ -61,6 +74,39 @@ public class ErrorFilter implements Filter {
         }
     }
 
+    /**
+     * Проверяет, вызвана ли ошибка исчерпанием бюджета времени запроса.
+     * SQLState 57014 (query_canceled) драйвер возвращает при срабатывании Statement.setQueryTimeout.
+     *
+     * @param error исключение
+     * @return true, если в цепочке причин есть таймаут запроса
+     */
+    private boolean isDeadlineExceeded(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof SQLTimeoutException
+                    || (current instanceof SQLException sqlException && "57014".equals(sqlException.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет, есть ли в цепочке причин исключение заданного типа.
+     *
+     * @param error исключение
+     * @param type  искомый тип
+     * @return true, если исключение найдено
+     */
+    private boolean hasCause(Throwable error, Class<? extends Throwable> type) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (type.isInstance(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Обрабатывает ошибки, устанавливая соответствующий HTTP-статус и сообщение об ошибке в формате JSON.
      *
@@ -0,0 +1,62 @@
+package filter;
+
+import db.ReadConsistency;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Фильтр, обеспечивающий чтение собственных записей при чтении с реплик.
+ * После записи клиенту выставляется cookie с моментом, до которого его запросы на чтение
+ * направляются на основной сервер, а не на реплики.
+ */
+@WebFilter("/api/*")
+public class ReadYourWritesFilter implements Filter {
+    static final String COOKIE_NAME = "db_primary_until";
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        ReadConsistency.open(readPrimaryUntil(httpRequest), primaryUntil -> {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(primaryUntil));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (primaryUntil - System.currentTimeMillis() + 999) / 1000));
+            httpResponse.addCookie(cookie);
+        });
+        try {
+            filterChain.doFilter(httpRequest, httpResponse);
+        } finally {
+            ReadConsistency.close();
+        }
+    }
+
+    /**
+     * Извлекает из cookie момент окончания окна чтения с основного сервера.
+     *
+     * @param request HTTP-запрос
+     * @return момент окончания окна (epoch ms) или 0, если cookie нет
+     */
+    private long readPrimaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
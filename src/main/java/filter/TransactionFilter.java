@@ -0,0 +1,67 @@
+package filter;
+
+import config.ConfigUtil;
+import db.TransactionContext;
+import exception.ServiceException;
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Фильтр, выполняющий изменяющие запросы (POST, PUT, PATCH, DELETE) в одной транзакции.
+ * Все вызовы репозиториев внутри запроса используют одно соединение, а фиксация выполняется один раз.
+ * Тело ответа накапливается и отправляется клиенту только после успешной фиксации.
+ */
+@WebFilter("/api/*")
+public class TransactionFilter implements Filter {
+    private static final Set<String> TRANSACTIONAL_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private final String ERROR_MESSAGE_DATA_BASE = ConfigUtil.getProperty("ERROR_MESSAGE_DATA_BASE");
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        if (!TRANSACTIONAL_METHODS.contains(httpRequest.getMethod())) {
+            filterChain.doFilter(httpRequest, httpResponse);
+            return;
+        }
+
+        BufferedResponseWrapper bufferedResponse = new BufferedResponseWrapper(httpResponse);
+        TransactionContext.begin();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(httpRequest, bufferedResponse);
+            completed = true;
+        } finally {
+            // Ошибка, уже превращенная в ответ (например, внешним ErrorFilter), тоже откатывает транзакцию
+            if (!completed || bufferedResponse.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+                rollbackQuietly();
+            }
+        }
+        if (bufferedResponse.getStatus() < HttpServletResponse.SC_BAD_REQUEST) {
+            try {
+                TransactionContext.commit();
+            } catch (SQLException ex) {
+                throw new ServletException(new ServiceException(ERROR_MESSAGE_DATA_BASE, ex));
+            }
+        }
+        bufferedResponse.writeTo();
+    }
+
+    /**
+     * Откатывает транзакцию, не маскируя исходную ошибку запроса.
+     */
+    private void rollbackQuietly() {
+        try {
+            TransactionContext.rollback();
+        } catch (SQLException ex) {
+            System.out.println("Ошибка при откате транзакции: " + ex.getMessage());
+        }
+    }
+}
@@ -1,21 +1,46 @@
 package listener;
 
+import config.ConfigUtil;
+import db.DbExecutor;
+import db.TransactionalUtilDB;
 import db.UtilDB;
 import db.UtilDBimpl;
+import db.id.BlockIdAllocator;
+import db.migration.DatabaseKind;
+import db.migration.MigrationRunner;
+import db.resilience.CircuitBreaker;
+import db.resilience.DbResilience;
+import db.resilience.RetryPolicy;
+import db.shard.ShardedUtilDB;
 import dto.product.ProductCreateDto;
 import dto.product.ProductDto;
 import dto.recipe.RecipeCreateDto;
 import dto.recipe.RecipeDto;
+import entity.Product;
+import entity.Recipe;
+import filter.Bulkhead;
 import jakarta.servlet.ServletContext;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import metrics.MetricsRegistry;
+import repository.ProductRepository;
+import repository.RecipeRepository;
+import repository.impl.BatchLoader;
 import repository.impl.ProductRepositoryImp;
 import repository.impl.RecipeRepositoryImp;
+import repository.impl.ShardedProductRepositoryImp;
+import repository.impl.ShardedRecipeRepositoryImp;
 import service.Service;
 import service.impl.ProductServiceImpl;
 import service.impl.RecipeServiceImpl;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Класс ListenerContext реализует интерфейс ServletContextListener и используется для инициализации
  * объектов базы данных и сервисов при запуске приложения.
@@ -31,29 +56,145 @@ public class ListenerContext implements ServletContextListener {
      */
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        // Создание экземпляра базы данных
-        UtilDB db = UtilDBimpl.getInstance();
-        // Создание экземпляра репозитория продукта с использованием базы данных
-        ProductRepositoryImp productRepositoryImp = new ProductRepositoryImp(db);
-        RecipeRepositoryImp recipeRepositoryImp = new RecipeRepositoryImp(db);
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        // Ограничение одновременных запросов к каждому ресурсу (см. BulkheadFilter)
+        Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+        long bulkheadMaxWaitMs = ConfigUtil.getIntProperty("bulkhead_max_wait_ms", 0);
+        for (String resource : List.of("products", "recipes")) {
+            Bulkhead bulkhead = new Bulkhead(
+                    Math.max(1, ConfigUtil.getIntProperty("bulkhead_" + resource + "_max_in_flight", 50)), bulkheadMaxWaitMs);
+            bulkheads.put(resource, bulkhead);
+            metricsRegistry.register("bulkhead." + resource, bulkhead);
+        }
+        // Автоматический выключатель на каждый ресурс и повторы чтений при временных ошибках БД:
+        // сбои пулов рецептов не размыкают выключатель продуктов
+        Map<String, DbResilience> resilience = new LinkedHashMap<>();
+        for (String resource : List.of("products", "recipes")) {
+            CircuitBreaker circuitBreaker = CircuitBreaker.fromProperties();
+            metricsRegistry.register("dbCircuitBreaker." + resource, circuitBreaker);
+            resilience.put(resource, new DbResilience(circuitBreaker, RetryPolicy.fromProperties()));
+        }
+
+        ProductRepository productRepository;
+        RecipeRepository recipeRepository;
+        int maxConnections = 0;
+        // Размер блока идентификаторов, выдаваемых приложением; 0 - идентификаторы генерирует БД
+        int idBlockSize = ConfigUtil.getIntProperty("id_block_size", 0);
+        List<String> shardUrls = UtilDBimpl.splitUrls(ConfigUtil.getProperty("shard_urls", ""));
+        if (shardUrls.isEmpty()) {
+            // Отдельные пулы соединений для продуктов и рецептов, чтобы тяжелые запросы рецептов не занимали соединения продуктов
+            UtilDBimpl productsDb = UtilDBimpl.getInstance("products");
+            UtilDBimpl recipesDb = UtilDBimpl.getInstance("recipes");
+            migrate(productsDb, DatabaseKind.SINGLE, "default", Math.max(1, idBlockSize));
+            metricsRegistry.register("db.products", productsDb);
+            metricsRegistry.register("db.recipes", recipesDb);
+            maxConnections = productsDb.getPool().getConfig().getMaxSize() + recipesDb.getPool().getConfig().getMaxSize();
+            // Соединения выдаются с учетом транзакции текущего запроса (см. TransactionFilter)
+            UtilDB productDb = new TransactionalUtilDB(productsDb);
+            UtilDB recipeDb = new TransactionalUtilDB(recipesDb);
+            BlockIdAllocator productIds = null;
+            BlockIdAllocator recipeIds = null;
+            if (idBlockSize > 0) {
+                productIds = new BlockIdAllocator(productDb, "product_id_seq", idBlockSize);
+                recipeIds = new BlockIdAllocator(recipeDb, "recipe_id_seq", idBlockSize);
+                metricsRegistry.register("ids.product", productIds);
+                metricsRegistry.register("ids.recipe", recipeIds);
+            }
+            productRepository = new ProductRepositoryImp(productDb, resilience.get("products"), productIds);
+            recipeRepository = new RecipeRepositoryImp(recipeDb, resilience.get("recipes"), recipeIds);
+        } else {
+            // Данные распределены по шардам; транзакция запроса держит отдельное соединение на каждый шард.
+            // Как и без шардирования, у продуктов и рецептов на каждом шарде свои пулы
+            List<UtilDB> productShards = new ArrayList<>();
+            List<UtilDB> recipeShards = new ArrayList<>();
+            for (int i = 0; i < shardUrls.size(); i++) {
+                UtilDBimpl productsDb = UtilDBimpl.getShardInstance(i, shardUrls.get(i), "products");
+                UtilDBimpl recipesDb = UtilDBimpl.getShardInstance(i, shardUrls.get(i), "recipes");
+                migrate(productsDb, DatabaseKind.SHARD, "shard-" + i, Math.max(1, idBlockSize));
+                metricsRegistry.register("db.shard-" + i + ".products", productsDb);
+                metricsRegistry.register("db.shard-" + i + ".recipes", recipesDb);
+                maxConnections += productsDb.getPool().getConfig().getMaxSize() + recipesDb.getPool().getConfig().getMaxSize();
+                productShards.add(new TransactionalUtilDB(productsDb, "shard-" + i));
+                recipeShards.add(new TransactionalUtilDB(recipesDb, "shard-" + i));
+            }
+            ShardedUtilDB productsShardedDb = new ShardedUtilDB(productShards);
+            ShardedUtilDB recipesShardedDb = new ShardedUtilDB(recipeShards);
+            metricsRegistry.register("db.sharding.products", productsShardedDb);
+            metricsRegistry.register("db.sharding.recipes", recipesShardedDb);
+            // Шард определяется по идентификатору, поэтому идентификаторы всегда выдает приложение
+            ShardedProductRepositoryImp shardedProductRepository = new ShardedProductRepositoryImp(
+                    productsShardedDb, resilience.get("products"), Math.max(1, idBlockSize));
+            productRepository = shardedProductRepository;
+            recipeRepository = new ShardedRecipeRepositoryImp(recipesShardedDb, resilience.get("recipes"),
+                    shardedProductRepository, Math.max(1, idBlockSize));
+        }
+        // Асинхронные варианты репозиториев; одновременных задач не больше, чем соединений в пулах
+        DbExecutor dbExecutor = new DbExecutor(maxConnections);
+        metricsRegistry.register("dbExecutor", dbExecutor);
+        // Объединение одновременных чтений по id в один запрос ANY(?); 0 - каждое чтение отдельным запросом
+        long batchWindowUs = ConfigUtil.getIntProperty("batch_window_us", 0);
+        BatchLoader<Product> productLoader = null;
+        BatchLoader<Recipe> recipeLoader = null;
+        if (batchWindowUs > 0) {
+            int batchMaxSize = ConfigUtil.getIntProperty("batch_max_size", 100);
+            productLoader = new BatchLoader<>(productRepository, batchWindowUs, batchMaxSize);
+            recipeLoader = new BatchLoader<>(recipeRepository, batchWindowUs, batchMaxSize);
+            metricsRegistry.register("batch.product", productLoader);
+            metricsRegistry.register("batch.recipe", recipeLoader);
+        }
         // Создание экземпляра сервиса продукта с использованием репозитория
-        Service<ProductDto, ProductCreateDto> productService = new ProductServiceImpl(productRepositoryImp);
-        Service<RecipeDto, RecipeCreateDto> recipeService = new RecipeServiceImpl(recipeRepositoryImp);
+        Service<ProductDto, ProductCreateDto> productService = new ProductServiceImpl(productRepository, productLoader);
+        Service<RecipeDto, RecipeCreateDto> recipeService = new RecipeServiceImpl(recipeRepository, recipeLoader);
         // Получение контекста сервлета
         ServletContext ctx = sce.getServletContext();
         // Сохранение сервиса продукта в контексте сервлета для использования в других компонентах
         ctx.setAttribute("productService", productService);
         ctx.setAttribute("recipeService", recipeService);
+        ctx.setAttribute("metricsRegistry", metricsRegistry);
+        ctx.setAttribute("bulkheads", bulkheads);
+        ctx.setAttribute("dbExecutor", dbExecutor);
+    }
+
+    /**
+     * Применяет миграции схемы к базе данных, если они включены свойством migrations_enabled,
+     * и устанавливает шаг последовательностей идентификаторов по размеру блока id_block_size.
+     * Ошибка миграции прерывает запуск приложения.
+     *
+     * @param db          источник соединений с базой данных
+     * @param kind        вид базы данных: единственная база или шард
+     * @param database    имя базы данных для сообщений
+     * @param idIncrement шаг последовательностей: размер блока или 1, если идентификаторы генерирует БД
+     */
+    private void migrate(UtilDB db, DatabaseKind kind, String database, int idIncrement) {
+        if (!Boolean.parseBoolean(ConfigUtil.getProperty("migrations_enabled", "true"))) {
+            return;
+        }
+        try {
+            int applied = new MigrationRunner(db, kind).migrate();
+            System.out.println("Миграции базы " + database + " применены: " + applied);
+            for (String sequence : List.of("product_id_seq", "recipe_id_seq")) {
+                if (BlockIdAllocator.alignIncrement(db, sequence, idIncrement)) {
+                    System.out.println("Шаг " + sequence + " базы " + database + " изменен на " + idIncrement);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Migration of database " + database + " failed: " + ex.getMessage(), ex);
+        }
     }
 
     /**
      * Метод вызывается при уничтожении контекста сервлета.
-     * В данном случае не выполняет никаких действий, но может быть расширен для выполнения необходимых операций очистки.
+     * Останавливает исполнитель асинхронных запросов и закрывает пул соединений с базой данных.
      *
      * @param sce событие уничтожения контекста сервлета
      */
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        DbExecutor dbExecutor = (DbExecutor) sce.getServletContext().getAttribute("dbExecutor");
+        if (dbExecutor != null) {
+            dbExecutor.shutdown();
+        }
+        UtilDBimpl.closeAll();
         ServletContextListener.super.contextDestroyed(sce);
     }
 }
@@ -0,0 +1,23 @@
+package mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Чтение текущей строки ResultSet в объект по заранее найденным номерам столбцов.
+ * Получается один раз для константного запроса и используется для всех его результатов.
+ *
+ * @param <E> тип сущности
+ */
+@FunctionalInterface
+public interface RowReader<E> {
+
+    /**
+     * Создает объект из текущей строки результата.
+     *
+     * @param resultSet результат, установленный на строку
+     * @return объект сущности
+     * @throws SQLException если происходит ошибка при извлечении данных
+     */
+    E read(ResultSet resultSet) throws SQLException;
+}
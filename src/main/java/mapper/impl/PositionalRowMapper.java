@@ -0,0 +1,107 @@
+package mapper.impl;
+
+import mapper.RowReader;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Маппер строк ResultSet в сущность с доступом к столбцам по номеру.
+ * <p>
+ * Столбцы сущности описываются один раз при создании маппера: метка столбца и запись значения в объект.
+ * Репозиторий получает читатель {@link #forQuery()} на каждый свой константный запрос: номера столбцов
+ * находятся при первом выполнении запроса и переиспользуются для всех его результатов, поэтому строки
+ * читаются по номеру без поиска столбца по имени, а порядок столбцов в запросе не влияет на результат.
+ * </p>
+ *
+ * @param <E> тип сущности
+ */
+public class PositionalRowMapper<E> {
+
+    /**
+     * Запись значения столбца с заданным номером в объект.
+     *
+     * @param <E> тип сущности
+     */
+    @FunctionalInterface
+    public interface ColumnSetter<E> {
+        void set(E entity, ResultSet resultSet, int index) throws SQLException;
+    }
+
+    private final Supplier<E> factory;
+    private final List<String> labels = new ArrayList<>();
+    private final List<ColumnSetter<E>> setters = new ArrayList<>();
+    private boolean optional;
+
+    /**
+     * @param factory создание пустого объекта сущности
+     */
+    public PositionalRowMapper(Supplier<E> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Добавляет столбец сущности. Вызывается только при создании маппера.
+     *
+     * @param label  метка столбца в результате запроса
+     * @param setter запись значения столбца в объект
+     * @return этот маппер
+     */
+    public PositionalRowMapper<E> column(String label, ColumnSetter<E> setter) {
+        labels.add(label);
+        setters.add(setter);
+        return this;
+    }
+
+    /**
+     * Делает сущность необязательной: строка, в которой первый столбец равен NULL (нет пары в LEFT JOIN),
+     * читается как null. Вызывается только при создании маппера.
+     *
+     * @return этот маппер
+     */
+    public PositionalRowMapper<E> optional() {
+        optional = true;
+        return this;
+    }
+
+    /**
+     * Возвращает читатель строк одного константного запроса (списка столбцов).
+     * Номера столбцов находятся по первому результату и затем не ищутся повторно,
+     * поэтому читатель нельзя использовать для запросов с другим списком столбцов.
+     *
+     * @return читатель строк запроса
+     */
+    public RowReader<E> forQuery() {
+        QueryColumns columns = new QueryColumns(labels.toArray(new String[0]));
+        return rs -> read(rs, columns.of(rs));
+    }
+
+    /**
+     * Читает текущую строку результата, находя номера столбцов заново.
+     * Для запросов репозитория используйте читатель {@link #forQuery()}.
+     *
+     * @param resultSet результат, установленный на строку
+     * @return объект сущности или null для пустой строки необязательной сущности
+     * @throws SQLException если происходит ошибка при извлечении данных
+     */
+    public E map(ResultSet resultSet) throws SQLException {
+        return read(resultSet, QueryColumns.resolve(resultSet.getMetaData(), labels.toArray(new String[0])));
+    }
+
+    /**
+     * Создает объект из текущей строки по найденным номерам столбцов.
+     */
+    private E read(ResultSet resultSet, int[] indices) throws SQLException {
+        E entity = factory.get();
+        for (int i = 0; i < indices.length; i++) {
+            setters.get(i).set(entity, resultSet, indices[i]);
+            if (i == 0 && optional && resultSet.wasNull()) {
+                return null;
+            }
+        }
+        return entity;
+    }
+}
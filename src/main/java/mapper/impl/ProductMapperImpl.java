@@ -4,6 +4,7 @@ import dto.product.ProductCreateDto;
 import dto.product.ProductDto;
 import entity.Product;
 import mapper.Mapper;
+import mapper.RowReader;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,6 +15,13 @@ import java.sql.SQLException;
  */
 public class ProductMapperImpl implements Mapper<ProductDto, ProductCreateDto, Product> {
 
+    // Столбцы продукта; номера столбцов находятся один раз для каждого запроса
+    private static final PositionalRowMapper<Product> ROW_MAPPER = new PositionalRowMapper<>(Product::new)
+            .column("id", (product, rs, i) -> product.setId(rs.getLong(i)))
+            .column("name", (product, rs, i) -> product.setName(rs.getString(i)))
+            .column("description", (product, rs, i) -> product.setDescription(rs.getString(i)))
+            .column("price", (product, rs, i) -> product.setPrice(rs.getInt(i)));
+
     /**
      * Преобразует объект ProductDto (Response DTO) в объект Product (сущность).
      *
@@ -40,17 +48,23 @@ public class ProductMapperImpl implements Mapper<ProductDto, ProductCreateDto, P
     @Override
     public Product fromResultSetToEntity(ResultSet resultSet) {
         try {
-            Product product = new Product();
-            product.setName(resultSet.getString("name"));
-            product.setId(resultSet.getInt("id"));
-            product.setPrice(resultSet.getInt("price"));
-            product.setDescription(resultSet.getString("description"));
-            return product;
+            return ROW_MAPPER.map(resultSet);
         } catch (SQLException ex) {
             throw new RuntimeException(ex.getMessage());
         }
     }
 
+    /**
+     * Возвращает читатель строк для одного константного запроса продуктов: номера столбцов находятся
+     * при первом выполнении запроса, а не для каждой строки, как при вызове
+     * {@link #fromResultSetToEntity(ResultSet)} в цикле.
+     *
+     * @return читатель строк запроса со столбцами id, name, description, price
+     */
+    public RowReader<Product> queryReader() {
+        return ROW_MAPPER.forQuery();
+    }
+
     /**
      * Преобразует объект ProductCreateDto (Create DTO) в объект Product (сущность).
      *
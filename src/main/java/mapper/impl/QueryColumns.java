@@ -0,0 +1,87 @@
+package mapper.impl;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Номера столбцов одного константного запроса.
+ * <p>
+ * Номера находятся по меткам столбцов при первом выполнении запроса и затем переиспользуются
+ * для всех его результатов, поэтому экземпляр создается на запрос (список столбцов), а не на ResultSet.
+ * </p>
+ */
+public class QueryColumns {
+
+    private final String[] labels;
+    // Найденные номера столбцов; до первого результата запроса равны null
+    private volatile int[] indices;
+
+    /**
+     * @param labels метки столбцов в результате запроса
+     */
+    public QueryColumns(String... labels) {
+        this.labels = labels.clone();
+    }
+
+    /**
+     * Возвращает номера столбцов в порядке меток, находя их по первому результату запроса.
+     *
+     * @param resultSet результат запроса
+     * @return номера столбцов (с единицы)
+     * @throws SQLException если в результате нет одного из столбцов
+     */
+    public int[] of(ResultSet resultSet) throws SQLException {
+        int[] resolved = indices;
+        if (resolved == null) {
+            resolved = resolve(resultSet.getMetaData(), labels);
+            indices = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Возвращает номер столбца с заданной меткой.
+     *
+     * @param resultSet результат запроса
+     * @param label     метка одного из столбцов запроса
+     * @return номер столбца (с единицы)
+     * @throws SQLException если в результате нет столбца
+     */
+    public int of(ResultSet resultSet, String label) throws SQLException {
+        int[] resolved = of(resultSet);
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) {
+                return resolved[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown column label: " + label);
+    }
+
+    /**
+     * Находит номера столбцов с заданными метками в результате с заданными метаданными.
+     */
+    static int[] resolve(ResultSetMetaData metaData, String[] labels) throws SQLException {
+        String[] columns = new String[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1);
+        }
+        int[] indices = new int[labels.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = indexOf(columns, labels[i]);
+        }
+        return indices;
+    }
+
+    /**
+     * Ищет столбец по метке без учета регистра, как {@link ResultSet#findColumn(String)}.
+     */
+    private static int indexOf(String[] columns, String label) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("The column name " + label + " was not found in this ResultSet.");
+    }
+}
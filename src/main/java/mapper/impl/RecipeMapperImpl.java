@@ -1,11 +1,15 @@
 package mapper.impl;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import dto.recipe.RecipeCreateDto;
 import dto.recipe.RecipeDto;
 import entity.Product;
 import entity.Recipe;
 import mapper.Mapper;
+import mapper.RowReader;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
@@ -17,6 +21,115 @@ import java.util.Set;
  */
 public class RecipeMapperImpl implements Mapper<RecipeDto, RecipeCreateDto, Recipe> {
 
+    // Столбцы рецепта в запросах к таблице recipe
+    private static final PositionalRowMapper<Recipe> RECIPE = new PositionalRowMapper<>(Recipe::new)
+            .column("id", (recipe, rs, i) -> recipe.setId(rs.getLong(i)))
+            .column("name", (recipe, rs, i) -> recipe.setName(rs.getString(i)))
+            .column("description", (recipe, rs, i) -> recipe.setDescription(rs.getString(i)));
+    // Столбцы рецепта и его продукта в строке соединения recipe с product
+    private static final PositionalRowMapper<Recipe> RECIPE_ROW = new PositionalRowMapper<>(Recipe::new)
+            .column("recipe_id", (recipe, rs, i) -> recipe.setId(rs.getLong(i)))
+            .column("recipe_name", (recipe, rs, i) -> recipe.setName(rs.getString(i)))
+            .column("recipe_description", (recipe, rs, i) -> recipe.setDescription(rs.getString(i)));
+    private static final PositionalRowMapper<Product> PRODUCT_ROW = new PositionalRowMapper<>(Product::new)
+            .column("product_id", (product, rs, i) -> product.setId(rs.getLong(i)))
+            .column("product_name", (product, rs, i) -> product.setName(rs.getString(i)))
+            .column("product_description", (product, rs, i) -> product.setDescription(rs.getString(i)))
+            .column("product_price", (product, rs, i) -> product.setPrice(rs.getInt(i)))
+            .optional();
+
+    /**
+     * Читатели строк соединения рецепта с продуктами для одного константного запроса:
+     * номера столбцов находятся при первом выполнении запроса и переиспользуются.
+     */
+    public static final class JoinedRows {
+
+        private final QueryColumns key = new QueryColumns("recipe_id");
+        private final QueryColumns json = new QueryColumns("products");
+        private final RowReader<Recipe> recipe = RECIPE_ROW.forQuery();
+        private final RowReader<Product> product = PRODUCT_ROW.forQuery();
+
+        /**
+         * Возвращает идентификатор рецепта текущей строки.
+         */
+        public long recipeId(ResultSet resultSet) throws SQLException {
+            return resultSet.getLong(key.of(resultSet)[0]);
+        }
+
+        /**
+         * Читает рецепт (без продуктов) из текущей строки.
+         */
+        public Recipe recipe(ResultSet resultSet) throws SQLException {
+            return recipe.read(resultSet);
+        }
+
+        /**
+         * Читает продукт из текущей строки; у рецепта без продуктов столбцы продукта равны NULL.
+         *
+         * @return продукт или null, если в строке нет продукта
+         */
+        public Product product(ResultSet resultSet) throws SQLException {
+            return product.read(resultSet);
+        }
+
+        /**
+         * Собирает один рецепт из всех строк результата.
+         *
+         * @param resultSet результат запроса, не установленный на строку
+         * @return рецепт с продуктами или null, если строк нет
+         * @throws SQLException если происходит ошибка при извлечении данных
+         */
+        public Recipe readRecipe(ResultSet resultSet) throws SQLException {
+            Recipe recipe = null;
+            Set<Product> products = new HashSet<>();
+
+            // Проходим по ResultSet и извлекаем данные
+            while (resultSet.next()) {
+                // Инициализируем объект Recipe при первой итерации
+                if (recipe == null) {
+                    recipe = recipe(resultSet);
+                }
+
+                // Создаем и заполняем объект Product для каждого продукта в рецепте
+                Product product = product(resultSet);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+            if (recipe != null) {
+                recipe.setProducts(products);
+            }
+            return recipe;
+        }
+
+        /**
+         * Читает рецепт из строки с продуктами, агрегированными в JSON-массив
+         * (см. {@link RecipeMapperImpl#fromJsonRowToEntity(ResultSet)}).
+         *
+         * @param resultSet результат запроса, не установленный на строку
+         * @return рецепт с продуктами или null, если строк нет
+         * @throws SQLException если происходит ошибка при извлечении данных или разборе JSON
+         */
+        public Recipe readJsonAgg(ResultSet resultSet) throws SQLException {
+            if (!resultSet.next()) {
+                return null;
+            }
+            Recipe recipe = recipe(resultSet);
+            Set<Product> products = new HashSet<>();
+            try (JsonReader reader = new JsonReader(resultSet.getCharacterStream(json.of(resultSet)[0]))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    products.add(readProduct(reader));
+                }
+                reader.endArray();
+            } catch (IOException ex) {
+                throw new SQLException("Malformed products JSON", ex);
+            }
+            recipe.setProducts(products);
+            return recipe;
+        }
+    }
+
     /**
      * Преобразует объект RecipeDto (Response DTO) в объект Recipe (сущность).
      *
@@ -42,36 +155,74 @@ public class RecipeMapperImpl implements Mapper<RecipeDto, RecipeCreateDto, Reci
     @Override
     public Recipe fromResultSetToEntity(ResultSet resultSet) {
         try {
-            Recipe recipe = null;
-            Set<Product> products = new HashSet<>();
+            return new JoinedRows().readRecipe(resultSet);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage()); // Для логирования и отладки
+        }
+    }
 
-            // Проходим по ResultSet и извлекаем данные
-            while (resultSet.next()) {
-                // Инициализируем объект Recipe при первой итерации
-                if (recipe == null) {
-                    recipe = new Recipe();
-                    recipe.setId(resultSet.getLong("recipe_id"));
-                    recipe.setName(resultSet.getString("recipe_name"));
-                    recipe.setDescription(resultSet.getString("recipe_description"));
-                }
+    /**
+     * Преобразует строку результата с продуктами, агрегированными в JSON-массив, в объект Recipe.
+     * <p>
+     * Ожидаются столбцы recipe_id, recipe_name, recipe_description и products - массив объектов
+     * {@code {"id", "name", "description", "price"}}, построенный {@code json_agg} на стороне сервера.
+     * Массив читается потоковым {@link JsonReader} сразу в объекты Product, без промежуточного дерева JSON.
+     * </p>
+     *
+     * @param resultSet объект ResultSet, полученный из базы данных
+     * @return объект Recipe или null, если строк нет
+     * @throws RuntimeException если возникает ошибка при извлечении данных или разборе JSON
+     */
+    public Recipe fromJsonRowToEntity(ResultSet resultSet) {
+        try {
+            return new JoinedRows().readJsonAgg(resultSet);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.getMessage()); // Для логирования и отладки
+        }
+    }
 
-                // Создаем и заполняем объект Product для каждого продукта в рецепте
-                Product product = new Product();
-                product.setId(resultSet.getLong("product_id"));
-                product.setName(resultSet.getString("product_name"));
-                product.setDescription(resultSet.getString("product_description"));
-                product.setPrice(resultSet.getInt("product_price"));
-                products.add(product);
+    /**
+     * Возвращает читатель строк для одного константного запроса рецептов со столбцами id, name, description.
+     *
+     * @return читатель строк запроса
+     */
+    public RowReader<Recipe> recipeReader() {
+        return RECIPE.forQuery();
+    }
+
+    /**
+     * Возвращает читатели строк соединения рецепта с продуктами для одного константного запроса.
+     *
+     * @return читатели строк запроса
+     */
+    public JoinedRows joinedRows() {
+        return new JoinedRows();
+    }
+
+    /**
+     * Читает один продукт из JSON-объекта; неизвестные поля пропускаются.
+     * Цена NULL читается как 0, как {@link ResultSet#getInt(int)} в построчном чтении.
+     */
+    private static Product readProduct(JsonReader reader) throws IOException {
+        Product product = new Product();
+        product.setPrice(0);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
             }
-            if (recipe != null) {
-                recipe.setProducts(products);
-                return recipe;
+            switch (field) {
+                case "id" -> product.setId(reader.nextLong());
+                case "name" -> product.setName(reader.nextString());
+                case "description" -> product.setDescription(reader.nextString());
+                case "price" -> product.setPrice(reader.nextInt());
+                default -> reader.skipValue();
             }
-            return recipe;
-
-        } catch (SQLException e) {
-            throw new RuntimeException(e.getMessage()); // Для логирования и отладки
         }
+        reader.endObject();
+        return product;
     }
 
     /**
@@ -0,0 +1,34 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Реестр источников метрик приложения.
+ * Хранится в контексте сервлета и заполняется при запуске приложения.
+ */
+public class MetricsRegistry {
+    private final Map<String, MetricsSource> sources = new ConcurrentSkipListMap<>();
+
+    /**
+     * Регистрирует источник метрик под заданным именем.
+     *
+     * @param name   имя группы метрик
+     * @param source источник метрик
+     */
+    public void register(String name, MetricsSource source) {
+        sources.put(name, source);
+    }
+
+    /**
+     * Снимает текущие значения всех зарегистрированных метрик.
+     *
+     * @return метрики, сгруппированные по имени источника
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        sources.forEach((name, source) -> snapshot.put(name, source.getMetrics()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * Источник метрик, публикуемых через {@link MetricsRegistry}.
+ */
+public interface MetricsSource {
+
+    /**
+     * Возвращает текущие значения метрик.
+     *
+     * @return имена метрик и их значения
+     */
+    Map<String, Object> getMetrics();
+}
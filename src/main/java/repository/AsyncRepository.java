@@ -0,0 +1,39 @@
+package repository;
+
+import exception.RepositoryException;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Интерфейс AsyncRepository определяет неблокирующие варианты методов {@link RepositoryWithoutSave}.
+ * Ошибки базы данных завершают future исключением {@link RepositoryException}.
+ *
+ * @param <T> тип сущности, с которой работает репозиторий
+ */
+public interface AsyncRepository<T> {
+
+    /**
+     * Асинхронно получает объект по его идентификатору.
+     *
+     * @param id идентификатор объекта
+     * @return future с Optional объекта, пустым, если объект не найден
+     */
+    CompletableFuture<Optional<T>> getByIdAsync(Long id);
+
+    /**
+     * Асинхронно обновляет существующий объект.
+     *
+     * @param updateEntity объект с обновленными данными
+     * @return future с Optional обновленного объекта, пустым, если объект не найден
+     */
+    CompletableFuture<Optional<T>> updateByEntityAsync(T updateEntity);
+
+    /**
+     * Асинхронно удаляет объект по его идентификатору.
+     *
+     * @param id идентификатор объекта
+     * @return future с Optional удаленного объекта, пустым, если объект не найден
+     */
+    CompletableFuture<Optional<T>> deleteByIdAsync(Long id);
+}
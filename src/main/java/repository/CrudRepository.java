@@ -2,6 +2,8 @@ package repository;
 
 import exception.RepositoryException;
 
+import java.util.List;
+
 public interface CrudRepository<T> extends RepositoryWithoutSave<T> {
     /**
      * Сохраняет новую сущность в репозитории.
@@ -12,4 +14,22 @@ public interface CrudRepository<T> extends RepositoryWithoutSave<T> {
      */
     T save(T e) throws RepositoryException;
 
+    /**
+     * Сохраняет несколько новых сущностей в одной транзакции.
+     *
+     * @param entities сущности для сохранения
+     * @return сохраненные сущности с идентификаторами в порядке входного списка
+     * @throws RepositoryException если произошла ошибка при сохранении; в этом случае не сохраняется ни одна сущность
+     */
+    List<T> saveAll(List<T> entities) throws RepositoryException;
+
+    /**
+     * Сохраняет сущность или обновляет существующую с тем же естественным ключом одним запросом,
+     * без предварительной проверки существования.
+     *
+     * @param e сущность для сохранения
+     * @return сохраненная сущность в том виде, в котором она записана в репозиторий
+     * @throws RepositoryException если произошла ошибка при сохранении
+     */
+    T upsert(T e) throws RepositoryException;
 }
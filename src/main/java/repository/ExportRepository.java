@@ -0,0 +1,37 @@
+package repository;
+
+import exception.RepositoryException;
+
+import java.io.IOException;
+
+public interface ExportRepository<T> {
+    /**
+     * Передает все сущности обработчику по одной, не загружая таблицу в память.
+     *
+     * @param handler обработчик сущностей
+     * @return количество переданных сущностей
+     * @throws RepositoryException если произошла ошибка при чтении
+     * @throws IOException         если обработчик не смог передать сущность
+     */
+    long exportAll(RowHandler<T> handler) throws RepositoryException, IOException;
+
+    /**
+     * Передает обработчику сущности с идентификатором из диапазона [fromId, toId) в порядке возрастания id.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик сущностей
+     * @return количество переданных сущностей
+     * @throws RepositoryException если произошла ошибка при чтении
+     * @throws IOException         если обработчик не смог передать сущность
+     */
+    long exportRange(long fromId, long toId, RowHandler<T> handler) throws RepositoryException, IOException;
+
+    /**
+     * Возвращает диапазон, содержащий все идентификаторы сущностей.
+     *
+     * @return диапазон [min(id), max(id) + 1) или null, если сущностей нет
+     * @throws RepositoryException если произошла ошибка при чтении
+     */
+    IdRange getIdRange() throws RepositoryException;
+}
@@ -0,0 +1,29 @@
+package repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Полуинтервал идентификаторов [fromId, toId).
+ *
+ * @param fromId первый идентификатор диапазона
+ * @param toId   идентификатор, следующий за последним
+ */
+public record IdRange(long fromId, long toId) {
+
+    /**
+     * Делит диапазон на не более чем parts смежных диапазонов равной ширины.
+     *
+     * @param parts желаемое количество частей
+     * @return части диапазона в порядке возрастания id
+     */
+    public List<IdRange> split(int parts) {
+        long span = toId - fromId;
+        long width = Math.max(1, (span + parts - 1) / parts);
+        List<IdRange> ranges = new ArrayList<>();
+        for (long from = fromId; from < toId; from += width) {
+            ranges.add(new IdRange(from, Math.min(toId, from + width)));
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,18 @@
+package repository;
+
+import exception.RepositoryException;
+
+import java.io.IOException;
+
+public interface ImportRepository<T> {
+    /**
+     * Загружает записи источника одной операцией и объединяет их с существующими по уникальному ключу.
+     *
+     * @param source    источник записей с номерами строк
+     * @param maxReport сколько номеров вытесненных строк вернуть в отчете
+     * @return итог импорта
+     * @throws RepositoryException если произошла ошибка при записи
+     * @throws IOException         если не удалось прочитать источник
+     */
+    ImportResult importAll(RowSource<ImportRow<T>> source, int maxReport) throws RepositoryException, IOException;
+}
@@ -0,0 +1,14 @@
+package repository;
+
+import java.util.List;
+
+/**
+ * Итог массового импорта.
+ *
+ * @param inserted       количество добавленных записей
+ * @param updated        количество обновленных существующих записей
+ * @param duplicates     количество строк, вытесненных более поздней строкой с тем же ключом
+ * @param duplicateLines номера первых вытесненных строк (не больше заданного предела)
+ */
+public record ImportResult(long inserted, long updated, long duplicates, List<Long> duplicateLines) {
+}
@@ -0,0 +1,11 @@
+package repository;
+
+/**
+ * Запись импорта вместе с номером строки входных данных.
+ *
+ * @param line   номер строки во входных данных (с 1)
+ * @param entity сущность
+ * @param <T>    тип сущности
+ */
+public record ImportRow<T>(long line, T entity) {
+}
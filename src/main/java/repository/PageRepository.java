@@ -0,0 +1,17 @@
+package repository;
+
+import exception.RepositoryException;
+
+import java.util.List;
+
+public interface PageRepository<T> {
+    /**
+     * Возвращает сущности с идентификатором больше afterId в порядке возрастания id (постраничное чтение по ключу).
+     *
+     * @param afterId идентификатор последней сущности предыдущей страницы (0 для первой страницы)
+     * @param limit   максимальное количество сущностей
+     * @return сущности страницы
+     * @throws RepositoryException если произошла ошибка при чтении
+     */
+    List<T> getPage(long afterId, int limit) throws RepositoryException;
+}
@@ -0,0 +1,7 @@
+package repository;
+
+import entity.Product;
+
+public interface ProductRepository extends CrudRepository<Product>, PageRepository<Product>, ExportRepository<Product>,
+        ImportRepository<Product> {
+}
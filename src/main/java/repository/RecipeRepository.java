@@ -0,0 +1,6 @@
+package repository;
+
+import entity.Recipe;
+
+public interface RecipeRepository extends RecipeRepositorySave<Recipe>, PageRepository<Recipe>, ExportRepository<Recipe> {
+}
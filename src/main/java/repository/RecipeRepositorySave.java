@@ -2,7 +2,8 @@ package repository;
 
 import exception.RepositoryException;
 
-import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -17,9 +18,30 @@ public interface RecipeRepositorySave<T> extends RepositoryWithoutSave<T> {
      *
      * @param recipe     объект рецепта для сохранения
      * @param productIds множество идентификаторов продуктов, связанных с рецептом
-     * @return сохраненный объект рецепта
+     * @return сохраненный объект рецепта вместе с его продуктами
      * @throws RepositoryException если происходит ошибка при работе с базой данных
-     * @throws SQLException        если происходит ошибка при выполнении SQL запроса
      */
-    T save(T recipe, Set<Long> productIds) throws RepositoryException, SQLException;
+    T save(T recipe, Set<Long> productIds) throws RepositoryException;
+
+    /**
+     * Сохраняет несколько новых рецептов вместе с их продуктами в одной транзакции.
+     *
+     * @param recipes    рецепты для сохранения
+     * @param productIds идентификаторы продуктов каждого рецепта в том же порядке, что и recipes
+     * @return сохраненные рецепты с идентификаторами и продуктами в порядке входного списка
+     * @throws RepositoryException если происходит ошибка при работе с базой данных; в этом случае не сохраняется ни один рецепт
+     */
+    List<T> saveAll(List<T> recipes, List<Set<Long>> productIds) throws RepositoryException;
+
+    /**
+     * Обновляет рецепт и при необходимости его состав в одной транзакции.
+     * Связи с продуктами изменяются по разнице с текущим составом: удаляются только исключенные продукты
+     * и добавляются только новые, поэтому число записей пропорционально числу изменений.
+     *
+     * @param recipe     объект рецепта с обновленными данными
+     * @param productIds новый состав рецепта; null - состав не изменяется
+     * @return Optional с обновленным рецептом и его продуктами; пустой Optional, если рецепт не найден
+     * @throws RepositoryException если состав пуст, продукты не найдены или происходит ошибка при работе с базой данных
+     */
+    Optional<T> updateByEntity(T recipe, Set<Long> productIds) throws RepositoryException;
 }
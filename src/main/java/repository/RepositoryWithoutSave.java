@@ -2,6 +2,8 @@ package repository;
 
 import exception.RepositoryException;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -21,19 +23,29 @@ public interface RepositoryWithoutSave<T> {
     Optional<T> getById(Long id) throws RepositoryException;
 
     /**
-     * Обновляет существующий объект в базе данных.
+     * Получает объекты по набору идентификаторов за одно обращение к базе данных.
+     *
+     * @param ids идентификаторы объектов
+     * @return найденные объекты по идентификатору; отсутствующие id в результат не попадают
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    Map<Long, T> getByIds(Collection<Long> ids) throws RepositoryException;
+
+    /**
+     * Обновляет существующий объект в базе данных одним запросом.
      *
      * @param updateEntity объект с обновленными данными
-     * @return обновленный объект
+     * @return Optional с объектом в том виде, в котором он записан в базу данных; пустой Optional, если объект не найден
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
-    T updateByEntity(T updateEntity) throws RepositoryException;
+    Optional<T> updateByEntity(T updateEntity) throws RepositoryException;
 
     /**
-     * Удаляет объект по его идентификатору из базы данных.
+     * Удаляет объект по его идентификатору из базы данных одним запросом.
      *
      * @param id идентификатор объекта
+     * @return Optional с удаленным объектом; пустой Optional, если объект не найден
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
-    void deleteById(Long id) throws RepositoryException;
+    Optional<T> deleteById(Long id) throws RepositoryException;
 }
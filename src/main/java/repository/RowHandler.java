@@ -0,0 +1,20 @@
+package repository;
+
+import java.io.IOException;
+
+/**
+ * Обработчик сущностей, получаемых по одной при потоковом чтении.
+ *
+ * @param <T> тип сущности
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+
+    /**
+     * Обрабатывает очередную сущность.
+     *
+     * @param row сущность
+     * @throws IOException если не удалось передать сущность получателю
+     */
+    void handle(T row) throws IOException;
+}
@@ -0,0 +1,20 @@
+package repository;
+
+import java.io.IOException;
+
+/**
+ * Источник записей, передающий их обработчику по одной по мере чтения входных данных.
+ *
+ * @param <T> тип записи
+ */
+@FunctionalInterface
+public interface RowSource<T> {
+
+    /**
+     * Передает обработчику все записи источника.
+     *
+     * @param handler обработчик записей
+     * @throws IOException если не удалось прочитать входные данные или передать запись
+     */
+    void forEach(RowHandler<T> handler) throws IOException;
+}
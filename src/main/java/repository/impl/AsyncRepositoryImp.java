@@ -0,0 +1,68 @@
+package repository.impl;
+
+import db.DbExecutor;
+import db.TransactionContext;
+import exception.RepositoryException;
+import repository.AsyncRepository;
+import repository.RepositoryWithoutSave;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Класс AsyncRepositoryImp реализует интерфейс AsyncRepository поверх блокирующего репозитория.
+ * Обращения к базе данных выполняются в {@link DbExecutor}, не занимая поток контейнера.
+ * Внутри транзакции запроса вызов выполняется синхронно в текущем потоке, чтобы остаться в этой транзакции.
+ *
+ * @param <T> тип сущности, с которой работает репозиторий
+ */
+public class AsyncRepositoryImp<T> implements AsyncRepository<T> {
+    private final RepositoryWithoutSave<T> repository;
+    private final DbExecutor executor;
+
+    /**
+     * @param repository блокирующий репозиторий
+     * @param executor   исполнитель обращений к базе данных
+     */
+    public AsyncRepositoryImp(RepositoryWithoutSave<T> repository, DbExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> getByIdAsync(Long id) {
+        return call(() -> repository.getById(id));
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> updateByEntityAsync(T updateEntity) {
+        return call(() -> repository.updateByEntity(updateEntity));
+    }
+
+    @Override
+    public CompletableFuture<Optional<T>> deleteByIdAsync(Long id) {
+        return call(() -> repository.deleteById(id));
+    }
+
+    /**
+     * Выполняет вызов репозитория в исполнителе или синхронно, если в потоке открыта транзакция.
+     */
+    private <R> CompletableFuture<R> call(RepositoryCall<R> call) {
+        if (TransactionContext.isActive()) {
+            try {
+                return CompletableFuture.completedFuture(call.call());
+            } catch (RepositoryException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }
+        return executor.submit(call::call);
+    }
+
+    /**
+     * Вызов блокирующего метода репозитория.
+     */
+    @FunctionalInterface
+    private interface RepositoryCall<R> {
+        R call() throws RepositoryException;
+    }
+}
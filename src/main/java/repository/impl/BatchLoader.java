@@ -0,0 +1,199 @@
+package repository.impl;
+
+import db.Deadline;
+import db.ReadConsistency;
+import db.TransactionContext;
+import exception.RepositoryException;
+import metrics.MetricsSource;
+import repository.RepositoryWithoutSave;
+
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Объединяет одновременные чтения по идентификатору в один запрос {@link RepositoryWithoutSave#getByIds}.
+ * <p>
+ * Первый вызов открывает пачку и ждет не дольше окна или до заполнения пачки; вызовы, пришедшие за это время,
+ * добавляют свои идентификаторы в ту же пачку. Затем первый вызов выполняет один запрос в своем потоке
+ * и передает результат остальным. Дополнительных потоков нет, задержка каждого чтения ограничена окном.
+ * </p>
+ * <p>
+ * Запрос пачки выполняется с самым длинным крайним сроком ее участников ({@link Deadline}), а не со сроком
+ * первого вызова: короткий бюджет первого запроса не должен обрывать чтение для остальных. Каждый участник
+ * ждет результат не дольше своего остатка бюджета.
+ * </p>
+ * <p>
+ * Внутри транзакции запроса и в окне чтения с основного сервера после записи (см. {@link ReadConsistency})
+ * чтение выполняется напрямую: запрос пачки идет на соединении другого потока и не видит его незафиксированных
+ * изменений.
+ * </p>
+ *
+ * @param <T> тип сущности, с которой работает репозиторий
+ */
+public class BatchLoader<T> implements MetricsSource {
+    private final RepositoryWithoutSave<T> repository;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Object lock = new Object();
+    private Batch<T> current;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedLookups = new AtomicLong();
+    private final AtomicLong directLookups = new AtomicLong();
+
+    /**
+     * @param repository   репозиторий, выполняющий чтение пачки
+     * @param windowMicros сколько ждать других чтений после открытия пачки, мкс
+     * @param maxBatchSize размер пачки, при котором она выполняется не дожидаясь окончания окна
+     */
+    public BatchLoader(RepositoryWithoutSave<T> repository, long windowMicros, int maxBatchSize) {
+        this.repository = repository;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * Получает сущность по идентификатору в составе пачки.
+     *
+     * @param id идентификатор сущности
+     * @return Optional с сущностью, если она найдена, иначе пустой Optional
+     * @throws RepositoryException если запрос пачки завершился ошибкой
+     */
+    public Optional<T> getById(Long id) throws RepositoryException {
+        if (TransactionContext.isActive() || ReadConsistency.isPrimaryRequired()) {
+            directLookups.incrementAndGet();
+            return repository.getById(id);
+        }
+        Batch<T> batch;
+        boolean leader;
+        synchronized (lock) {
+            leader = current == null;
+            if (leader) {
+                current = new Batch<>();
+            }
+            batch = current;
+            batch.ids.add(id);
+            batch.extendDeadline(Deadline.remainingMs());
+            if (batch.ids.size() >= maxBatchSize) {
+                // Пачка заполнена: новые чтения откроют следующую, первый вызов выполняет эту без ожидания
+                current = null;
+                batch.full.countDown();
+            }
+        }
+        batchedLookups.incrementAndGet();
+        if (leader) {
+            execute(batch);
+        }
+        try {
+            return Optional.ofNullable(await(batch).get(id));
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RepositoryException cause) {
+                throw new RepositoryException(cause.getMessage(), cause);
+            }
+            throw new CompletionException(ex.getCause());
+        }
+    }
+
+    /**
+     * Ждет результат пачки не дольше остатка бюджета текущего запроса.
+     */
+    private Map<Long, T> await(Batch<T> batch) throws ExecutionException, RepositoryException {
+        long remaining = Deadline.remainingMs();
+        try {
+            if (remaining == Long.MAX_VALUE) {
+                return batch.result.get();
+            }
+            return batch.result.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            SQLTimeoutException timeout = new SQLTimeoutException("Превышено время выполнения запроса при ожидании пачки", "57014", ex);
+            throw new RepositoryException(timeout.getMessage(), timeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while waiting for a lookup batch", ex);
+        }
+    }
+
+    /**
+     * Ждет окончания окна или заполнения пачки и выполняет ее одним запросом.
+     */
+    private void execute(Batch<T> batch) {
+        try {
+            batch.full.await(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<Long> ids;
+        long budgetMs;
+        synchronized (lock) {
+            if (current == batch) {
+                current = null;
+            }
+            ids = new ArrayList<>(new LinkedHashSet<>(batch.ids));
+            budgetMs = batch.remainingMs();
+        }
+        batches.incrementAndGet();
+        try {
+            batch.result.complete(Deadline.within(budgetMs, () -> repository.getByIds(ids)).call());
+        } catch (Exception ex) {
+            batch.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Возвращает количество пачек и чтений, выполненных в пачках и напрямую.
+     *
+     * @return метрики объединения чтений
+     */
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long batchCount = batches.get();
+        metrics.put("batches", batchCount);
+        metrics.put("batchedLookups", batchedLookups.get());
+        metrics.put("directLookups", directLookups.get());
+        metrics.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) batchedLookups.get() / batchCount);
+        return metrics;
+    }
+
+    /**
+     * Идентификаторы одной пачки и ее общий результат.
+     */
+    private static final class Batch<T> {
+        private final List<Long> ids = new ArrayList<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CompletableFuture<Map<Long, T>> result = new CompletableFuture<>();
+        // Самый поздний крайний срок участников (System.nanoTime); участник без срока снимает ограничение
+        private long latestDeadlineNanos = Long.MIN_VALUE;
+        private boolean unbounded;
+
+        /**
+         * Учитывает остаток бюджета нового участника пачки.
+         */
+        private void extendDeadline(long remainingMs) {
+            if (remainingMs == Long.MAX_VALUE) {
+                unbounded = true;
+                return;
+            }
+            latestDeadlineNanos = Math.max(latestDeadlineNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMs));
+        }
+
+        /**
+         * @return бюджет запроса пачки в миллисекундах или Long.MAX_VALUE без ограничения
+         */
+        private long remainingMs() {
+            return unbounded ? Long.MAX_VALUE : TimeUnit.NANOSECONDS.toMillis(latestDeadlineNanos - System.nanoTime());
+        }
+    }
+}
@@ -2,25 +2,48 @@ package repository.impl;
 
 import config.ConfigUtil;
 import db.UtilDB;
-import dto.product.ProductCreateDto;
-import dto.product.ProductDto;
+import db.id.IdAllocator;
+import db.resilience.DbResilience;
 import entity.Product;
 import exception.RepositoryException;
-import mapper.Mapper;
+import mapper.RowReader;
 import mapper.impl.ProductMapperImpl;
-import repository.CrudRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import repository.IdRange;
+import repository.ImportResult;
+import repository.ImportRow;
+import repository.ProductRepository;
+import repository.RowHandler;
+import repository.RowSource;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Класс ProductRepositoryImp реализует интерфейс CrudRepository для сущности Product.
  * Обеспечивает выполнение CRUD операций с базой данных.
  */
-public class ProductRepositoryImp implements CrudRepository<Product> {
+public class ProductRepositoryImp implements ProductRepository {
 
-    final private Mapper<ProductDto, ProductCreateDto, Product> mapper = new ProductMapperImpl();
+    // Столбцы продукта перечисляются явно: результат не зависит от порядка и состава столбцов таблицы
+    static final String PRODUCT_COLUMNS = "id, name, description, price";
+
+    final private ProductMapperImpl mapper = new ProductMapperImpl();
+    // Все запросы продуктов возвращают PRODUCT_COLUMNS, поэтому номера столбцов находятся один раз
+    final private RowReader<Product> productRows = mapper.queryReader();
     final private UtilDB db;
+    final private DbResilience resilience;
+    final private IdAllocator idAllocator;
+    final private int exportFetchSize = ConfigUtil.getIntProperty("export_fetch_size", 1000);
     final private String ERROR_MESSAGE_DATA_BASE = ConfigUtil.getProperty("ERROR_MESSAGE_DATA_BASE");
 
     /**
@@ -29,7 +52,32 @@ public class ProductRepositoryImp implements CrudRepository<Product> {
      * @param db объект UtilDB для управления соединениями с базой данных
      */
     public ProductRepositoryImp(UtilDB db) {
+        this(db, DbResilience.NONE);
+    }
+
+    /**
+     * Конструктор для инициализации объекта репозитория с защитой обращений к базе данных.
+     * Чтения выполняются с повторами при временных ошибках, все обращения проходят через автоматический выключатель.
+     *
+     * @param db         объект UtilDB для управления соединениями с базой данных
+     * @param resilience защита обращений к базе данных
+     */
+    public ProductRepositoryImp(UtilDB db, DbResilience resilience) {
+        this(db, resilience, null);
+    }
+
+    /**
+     * Конструктор для инициализации объекта репозитория с выдачей идентификаторов на стороне приложения.
+     * Идентификатор нового продукта берется из idAllocator до вставки, без RETURN_GENERATED_KEYS.
+     *
+     * @param db          объект UtilDB для управления соединениями с базой данных
+     * @param resilience  защита обращений к базе данных
+     * @param idAllocator источник идентификаторов или null, чтобы идентификатор генерировала БД
+     */
+    public ProductRepositoryImp(UtilDB db, DbResilience resilience, IdAllocator idAllocator) {
         this.db = db;
+        this.resilience = resilience;
+        this.idAllocator = idAllocator;
     }
 
     /**
@@ -41,20 +89,55 @@ public class ProductRepositoryImp implements CrudRepository<Product> {
      */
     @Override
     public Optional<Product> getById(Long id) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement("SELECT * from product where id=?")) {
-            // Устанавливаем значение идентификатора в запрос
-            stm.setLong(1, id);
-            // Выполняем запрос и получаем результат
-            ResultSet resultSet = stm.executeQuery();
-            // Если результат найден, маппим его в объект Product
-            if (resultSet.next()) {
-                Product product = mapper.fromResultSetToEntity(resultSet);
-                return Optional.ofNullable(product);
-            }
-            // Если результат не найден, возвращаем пустой Optional
-            return Optional.empty();
+        try {
+            return resilience.read(() -> {
+                // Устанавливаем соединение и создаем подготовленный запрос
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT " + PRODUCT_COLUMNS + " FROM product WHERE id = ?")) {
+                    // Устанавливаем значение идентификатора в запрос
+                    stm.setLong(1, id);
+                    // Выполняем запрос и получаем результат
+                    ResultSet resultSet = stm.executeQuery();
+                    // Если результат найден, маппим его в объект Product
+                    if (resultSet.next()) {
+                        Product product = productRows.read(resultSet);
+                        return Optional.ofNullable(product);
+                    }
+                    // Если результат не найден, возвращаем пустой Optional
+                    return Optional.empty();
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Получает продукты по набору идентификаторов одним запросом с параметром-массивом {@code id = ANY(?)}.
+     *
+     * @param ids идентификаторы продуктов
+     * @return найденные продукты по идентификатору; отсутствующие id в результат не попадают
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Map<Long, Product> getByIds(Collection<Long> ids) throws RepositoryException {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT " + PRODUCT_COLUMNS + " FROM product WHERE id = ANY(?)")) {
+                    stm.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+                    ResultSet resultSet = stm.executeQuery();
+                    Map<Long, Product> products = new HashMap<>();
+                    while (resultSet.next()) {
+                        Product product = productRows.read(resultSet);
+                        products.put(product.getId(), product);
+                    }
+                    return products;
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
@@ -69,70 +152,475 @@ public class ProductRepositoryImp implements CrudRepository<Product> {
      */
     @Override
     public Product save(Product newProduct) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement(
-                     "INSERT INTO product (name, price, description) VALUES (?, ?, ?)",
-                     Statement.RETURN_GENERATED_KEYS)) {
-            // Устанавливаем параметры запроса
-            stm.setString(1, newProduct.getName());
-            stm.setInt(2, newProduct.getPrice());
-            stm.setString(3, newProduct.getDescription());
-            // Выполняем запрос на вставку
-            stm.executeUpdate();
-            // Получаем сгенерированный ключ (идентификатор)
-            ResultSet rs = stm.getGeneratedKeys();
-            if (rs.next()) {
-                newProduct.setId(rs.getLong(1));
+        try {
+            if (idAllocator != null) {
+                // Идентификатор известен до вставки, поэтому обращение к БД одно и без возврата ключей
+                newProduct.setId(idAllocator.nextId());
+                return resilience.write(() -> {
+                    try (Connection conn = db.createConnection();
+                         PreparedStatement stm = conn.prepareStatement(
+                                 "INSERT INTO product (id, name, price, description) VALUES (?, ?, ?, ?)")) {
+                        stm.setLong(1, newProduct.getId());
+                        stm.setString(2, newProduct.getName());
+                        stm.setInt(3, newProduct.getPrice());
+                        stm.setString(4, newProduct.getDescription());
+                        stm.executeUpdate();
+                        return newProduct;
+                    }
+                });
+            }
+            return resilience.write(() -> {
+                // Устанавливаем соединение и создаем подготовленный запрос
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(
+                             "INSERT INTO product (name, price, description) VALUES (?, ?, ?)",
+                             Statement.RETURN_GENERATED_KEYS)) {
+                    // Устанавливаем параметры запроса
+                    stm.setString(1, newProduct.getName());
+                    stm.setInt(2, newProduct.getPrice());
+                    stm.setString(3, newProduct.getDescription());
+                    // Выполняем запрос на вставку
+                    stm.executeUpdate();
+                    // Получаем сгенерированный ключ (идентификатор)
+                    ResultSet rs = stm.getGeneratedKeys();
+                    if (rs.next()) {
+                        newProduct.setId(rs.getLong(1));
+                    }
+                    return newProduct;
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Сохраняет несколько продуктов одним пакетом (addBatch/executeBatch) в одной транзакции.
+     * Драйвер с reWriteBatchedInserts отправляет пакет многострочными INSERT.
+     *
+     * @param newProducts продукты для сохранения
+     * @return сохраненные продукты с идентификаторами в порядке входного списка
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Product> saveAll(List<Product> newProducts) throws RepositoryException {
+        if (newProducts.isEmpty()) {
+            return newProducts;
+        }
+        try {
+            if (idAllocator != null) {
+                for (Product product : newProducts) {
+                    product.setId(idAllocator.nextId());
+                }
             }
-            return newProduct;
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        insertBatch(conn, newProducts);
+                        conn.commit();
+                        return newProducts;
+                    } catch (SQLException ex) {
+                        conn.rollback();
+                        throw ex;
+                    }
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
 
     /**
-     * Обновляет существующий продукт в базе данных.
+     * Вставляет продукты одним пакетом. Без аллокатора идентификаторы берутся из сгенерированных ключей,
+     * которые драйвер возвращает в порядке добавления в пакет.
+     *
+     * @param conn     соединение транзакции
+     * @param products продукты для вставки
+     * @throws SQLException если происходит ошибка при выполнении SQL запроса
+     */
+    private void insertBatch(Connection conn, List<Product> products) throws SQLException {
+        if (idAllocator != null) {
+            try (PreparedStatement stm = conn.prepareStatement(
+                    "INSERT INTO product (id, name, price, description) VALUES (?, ?, ?, ?)")) {
+                for (Product product : products) {
+                    stm.setLong(1, product.getId());
+                    stm.setString(2, product.getName());
+                    stm.setInt(3, product.getPrice());
+                    stm.setString(4, product.getDescription());
+                    stm.addBatch();
+                }
+                stm.executeBatch();
+            }
+            return;
+        }
+        try (PreparedStatement stm = conn.prepareStatement(
+                "INSERT INTO product (name, price, description) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (Product product : products) {
+                stm.setString(1, product.getName());
+                stm.setInt(2, product.getPrice());
+                stm.setString(3, product.getDescription());
+                stm.addBatch();
+            }
+            stm.executeBatch();
+            ResultSet keys = stm.getGeneratedKeys();
+            for (Product product : products) {
+                if (!keys.next()) {
+                    throw new SQLException("Generated keys count does not match batch size");
+                }
+                product.setId(keys.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Обновляет существующий продукт в базе данных запросом {@code UPDATE ... RETURNING}.
+     * Отсутствие продукта определяется по пустому результату, без предварительного чтения.
      *
      * @param updateProduct объект Product с обновленными данными
-     * @return обновленный объект Product
+     * @return Optional с обновленным продуктом или пустой Optional, если продукт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Product> updateByEntity(Product updateProduct) throws RepositoryException {
+        try {
+            return resilience.write(() -> {
+                // Устанавливаем соединение и создаем подготовленный запрос
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(
+                             "UPDATE product SET name = ?, price = ?, description = ? WHERE id = ? RETURNING " + PRODUCT_COLUMNS)) {
+                    // Устанавливаем параметры запроса
+                    stm.setString(1, updateProduct.getName());
+                    stm.setInt(2, updateProduct.getPrice());
+                    stm.setString(3, updateProduct.getDescription());
+                    stm.setLong(4, updateProduct.getId());
+                    // Обновленная строка возвращается тем же запросом
+                    ResultSet resultSet = stm.executeQuery();
+                    return resultSet.next() ? Optional.of(productRows.read(resultSet)) : Optional.empty();
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Сохраняет продукт или обновляет цену и описание продукта с тем же именем одним запросом
+     * {@code INSERT ... ON CONFLICT (name) DO UPDATE ... RETURNING}. Проверка и запись атомарны,
+     * поэтому одновременные вызовы с одним именем не создают дубликатов.
+     *
+     * @param product продукт для сохранения
+     * @return продукт в том виде, в котором он записан в базу данных
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
     @Override
-    public Product updateByEntity(Product updateProduct) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement("UPDATE product SET name = ?, price = ?, description = ? WHERE id = ?")) {
-            // Устанавливаем параметры запроса
-            stm.setString(1, updateProduct.getName());
-            stm.setDouble(2, updateProduct.getPrice());
-            stm.setString(3, updateProduct.getDescription());
-            stm.setLong(4, updateProduct.getId());
-            // Выполняем запрос на обновление
-            stm.executeUpdate();
-            return updateProduct;
+    public Product upsert(Product product) throws RepositoryException {
+        try {
+            // При обновлении выделенный идентификатор не используется; пропуск в последовательности допустим
+            Long newId = idAllocator != null ? idAllocator.nextId() : null;
+            return resilience.write(() -> {
+                String query = (newId != null
+                        ? "INSERT INTO product (id, name, price, description) VALUES (?, ?, ?, ?)"
+                        : "INSERT INTO product (name, price, description) VALUES (?, ?, ?)")
+                        + " ON CONFLICT (name) DO UPDATE SET price = EXCLUDED.price, description = EXCLUDED.description"
+                        + " RETURNING " + PRODUCT_COLUMNS;
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    int index = 1;
+                    if (newId != null) {
+                        stm.setLong(index++, newId);
+                    }
+                    stm.setString(index++, product.getName());
+                    stm.setInt(index++, product.getPrice());
+                    stm.setString(index, product.getDescription());
+                    ResultSet resultSet = stm.executeQuery();
+                    resultSet.next();
+                    return productRows.read(resultSet);
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
 
     /**
-     * Удаляет продукт по его идентификатору из базы данных.
+     * Удаляет продукт по его идентификатору из базы данных запросом {@code DELETE ... RETURNING}.
      *
      * @param id идентификатор продукта
+     * @return Optional с удаленным продуктом или пустой Optional, если продукт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Product> deleteById(Long id) throws RepositoryException {
+        try {
+            return resilience.write(() -> {
+                // Устанавливаем соединение и создаем подготовленный запрос
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement("DELETE FROM product WHERE id = ? RETURNING " + PRODUCT_COLUMNS)) {
+                    // Устанавливаем значение идентификатора в запрос
+                    stm.setLong(1, id);
+                    // Удаленная строка возвращается тем же запросом
+                    ResultSet resultSet = stm.executeQuery();
+                    return resultSet.next() ? Optional.of(productRows.read(resultSet)) : Optional.empty();
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Получает страницу продуктов с идентификатором больше afterId.
+     * Условие по первичному ключу вместо OFFSET дает одинаковую стоимость для любой страницы.
+     *
+     * @param afterId идентификатор последнего продукта предыдущей страницы
+     * @param limit   максимальное количество продуктов
+     * @return продукты страницы в порядке возрастания id
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Product> getPage(long afterId, int limit) throws RepositoryException {
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT " + PRODUCT_COLUMNS + " FROM product WHERE id > ? ORDER BY id LIMIT ?")) {
+                    stm.setLong(1, afterId);
+                    stm.setInt(2, limit);
+                    ResultSet resultSet = stm.executeQuery();
+                    List<Product> products = new ArrayList<>();
+                    while (resultSet.next()) {
+                        products.add(productRows.read(resultSet));
+                    }
+                    return products;
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Передает все продукты обработчику в порядке возрастания id.
+     *
+     * @param handler обработчик продуктов
+     * @return количество переданных продуктов
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать продукт
+     */
+    @Override
+    public long exportAll(RowHandler<Product> handler) throws RepositoryException, IOException {
+        return exportRange(0, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Передает обработчику продукты из диапазона идентификаторов в порядке возрастания id.
+     * <p>
+     * Запрос выполняется в транзакции с setFetchSize, поэтому PgJDBC читает строки курсором на сервере
+     * порциями по export_fetch_size и память не зависит от размера таблицы.
+     * </p>
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик продуктов
+     * @return количество переданных продуктов
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать продукт
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<Product> handler) throws RepositoryException, IOException {
+        try {
+            return resilience.stream(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT " + PRODUCT_COLUMNS + " FROM product WHERE id >= ? AND id < ? ORDER BY id")) {
+                    // Курсор на сервере используется только вне режима авто-коммита
+                    conn.setAutoCommit(false);
+                    stm.setFetchSize(exportFetchSize);
+                    stm.setLong(1, fromId);
+                    stm.setLong(2, toId);
+                    long count = 0;
+                    try (ResultSet resultSet = stm.executeQuery()) {
+                        while (resultSet.next()) {
+                            handler.handle(productRows.read(resultSet));
+                            count++;
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    conn.commit();
+                    return count;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов продуктов.
+     *
+     * @return диапазон [min(id), max(id) + 1) или null, если продуктов нет
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
     @Override
-    public void deleteById(Long id) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement("DELETE FROM product WHERE id = ?")) {
-            // Устанавливаем значение идентификатора в запрос
-            stm.setLong(1, id);
-            // Выполняем запрос на удаление
-            stm.executeUpdate();
+    public IdRange getIdRange() throws RepositoryException {
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT min(id), max(id) FROM product")) {
+                    ResultSet resultSet = stm.executeQuery();
+                    resultSet.next();
+                    long min = resultSet.getLong(1);
+                    // Агрегаты пустой таблицы равны NULL
+                    return resultSet.wasNull() ? null : new IdRange(min, resultSet.getLong(2) + 1);
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
+
+    /**
+     * Импортирует продукты через COPY во временную таблицу и объединяет их с таблицей product.
+     * <p>
+     * Строки источника передаются в COPY по мере чтения, затем одним запросом INSERT ... ON CONFLICT (name)
+     * добавляются новые продукты и обновляются цена и описание существующих. Если имя встречается
+     * во входных данных несколько раз, применяется последняя строка, а предыдущие возвращаются в отчете.
+     * Временная таблица удаляется при завершении транзакции.
+     * </p>
+     *
+     * @param source    источник продуктов с номерами строк
+     * @param maxReport сколько номеров вытесненных строк вернуть в отчете
+     * @return итог импорта
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если не удалось прочитать источник
+     */
+    @Override
+    public ImportResult importAll(RowSource<ImportRow<Product>> source, int maxReport) throws RepositoryException, IOException {
+        // Идентификаторы новых строк выдает idAllocator при загрузке во временную таблицу: значение по умолчанию
+        // nextval вычисляется до проверки конфликта и при шаге последовательности id_block_size
+        // тратило бы целый блок на каждую строку, в том числе на обновляемые
+        String insertColumns = idAllocator != null ? "id, name, price, description" : "name, price, description";
+        String mergeQuery = """
+                WITH latest AS (
+                    SELECT DISTINCT ON (name) id, name, price, description
+                    FROM product_import
+                    ORDER BY name, line_no DESC
+                ), merged AS (
+                    INSERT INTO product (%s)
+                    SELECT %s FROM latest
+                    ON CONFLICT (name) DO UPDATE SET price = EXCLUDED.price, description = EXCLUDED.description
+                    RETURNING (xmax = 0) AS inserted
+                )
+                SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM merged""".formatted(insertColumns, insertColumns);
+        String duplicatesQuery = """
+                SELECT line_no, count(*) OVER () FROM (
+                    SELECT line_no, row_number() OVER (PARTITION BY name ORDER BY line_no DESC) AS rn
+                    FROM product_import
+                ) ranked
+                WHERE rn > 1
+                ORDER BY line_no
+                LIMIT ?""";
+
+        try {
+            // Источник читается один раз, поэтому повтор невозможен
+            return resilience.stream(() -> {
+                try (Connection conn = db.createConnection()) {
+                    conn.setAutoCommit(false);
+                    try (Statement stm = conn.createStatement()) {
+                        stm.execute("CREATE TEMP TABLE product_import (line_no bigint, id bigint, name varchar(100), "
+                                + "price integer, description varchar(255)) ON COMMIT DROP");
+                    }
+                    copyToStaging(conn, source, idAllocator);
+                    try (Statement stm = conn.createStatement()) {
+                        // Статистика временной таблицы нужна планировщику для объединения
+                        stm.execute("ANALYZE product_import");
+                    }
+
+                    long inserted;
+                    long updated;
+                    try (PreparedStatement stm = conn.prepareStatement(mergeQuery)) {
+                        ResultSet resultSet = stm.executeQuery();
+                        resultSet.next();
+                        inserted = resultSet.getLong(1);
+                        updated = resultSet.getLong(2);
+                    }
+                    long duplicates = 0;
+                    List<Long> duplicateLines = new ArrayList<>();
+                    try (PreparedStatement stm = conn.prepareStatement(duplicatesQuery)) {
+                        // Общее количество нужно и при пустом отчете, поэтому запрашивается хотя бы одна строка
+                        stm.setInt(1, Math.max(1, maxReport));
+                        ResultSet resultSet = stm.executeQuery();
+                        while (resultSet.next()) {
+                            duplicates = resultSet.getLong(2);
+                            if (duplicateLines.size() < maxReport) {
+                                duplicateLines.add(resultSet.getLong(1));
+                            }
+                        }
+                    }
+                    conn.commit();
+                    return new ImportResult(inserted, updated, duplicates, duplicateLines);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Передает строки источника в COPY ... FROM STDIN в формате CSV.
+     *
+     * @param conn        соединение транзакции импорта
+     * @param source      источник продуктов
+     * @param idAllocator источник идентификаторов строк или null, чтобы идентификатор генерировала БД
+     * @throws SQLException если COPY завершился ошибкой
+     * @throws IOException  если не удалось прочитать источник
+     */
+    private static void copyToStaging(Connection conn, RowSource<ImportRow<Product>> source,
+                                      IdAllocator idAllocator) throws SQLException, IOException {
+        CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY product_import (line_no, id, name, price, description) FROM STDIN WITH (FORMAT csv)");
+        try {
+            source.forEach(row -> {
+                Product product = row.entity();
+                String id;
+                try {
+                    id = idAllocator != null ? String.valueOf(idAllocator.nextId()) : "";
+                } catch (SQLException ex) {
+                    throw new IOException(ex);
+                }
+                byte[] line = (row.line() + "," + id + "," + csvValue(product.getName()) + ","
+                        + (product.getPrice() == null ? "" : product.getPrice()) + ","
+                        + csvValue(product.getDescription()) + "\n").getBytes(StandardCharsets.UTF_8);
+                try {
+                    copyIn.writeToCopy(line, 0, line.length);
+                } catch (SQLException ex) {
+                    throw new IOException(ex);
+                }
+            });
+            copyIn.endCopy();
+        } catch (IOException ex) {
+            // Ошибка записи в COPY или выдачи идентификатора приходит от драйвера, ошибка чтения - от источника
+            if (ex.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw ex;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * Экранирует значение для CSV: null передается пустым полем без кавычек, остальное - в кавычках.
+     */
+    private static String csvValue(String value) {
+        return value == null ? "" : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
 }
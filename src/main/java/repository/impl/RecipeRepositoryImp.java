@@ -2,26 +2,52 @@ package repository.impl;
 
 import config.ConfigUtil;
 import db.UtilDB;
-import dto.recipe.RecipeCreateDto;
-import dto.recipe.RecipeDto;
+import db.id.IdAllocator;
+import db.resilience.DbResilience;
+import entity.Product;
 import entity.Recipe;
 import exception.RepositoryException;
-import mapper.Mapper;
+import mapper.RowReader;
+import mapper.impl.ProductMapperImpl;
+import mapper.impl.QueryColumns;
 import mapper.impl.RecipeMapperImpl;
-import repository.RecipeRepositorySave;
+import repository.IdRange;
+import repository.RecipeRepository;
+import repository.RowHandler;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 
 /**
- * Класс RecipeRepositoryImp реализует интерфейс RecipeRepositorySave для сущности Recipe.
+ * Класс RecipeRepositoryImp реализует интерфейс RecipeRepository для сущности Recipe.
  * Обеспечивает выполнение CRUD операций с базой данных.
  */
-public class RecipeRepositoryImp implements RecipeRepositorySave<Recipe> {
+public class RecipeRepositoryImp implements RecipeRepository {
 
-    final private Mapper<RecipeDto, RecipeCreateDto, Recipe> mapper = new RecipeMapperImpl();
+    final private RecipeMapperImpl mapper = new RecipeMapperImpl();
+    final private ProductMapperImpl productMapper = new ProductMapperImpl();
+    // Читатели строк по константным запросам: номера столбцов находятся при первом выполнении запроса
+    final private RecipeMapperImpl.JoinedRows byIdRows = mapper.joinedRows();
+    final private RecipeMapperImpl.JoinedRows jsonAggRows = mapper.joinedRows();
+    final private RecipeMapperImpl.JoinedRows savedRows = mapper.joinedRows();
+    final private RecipeMapperImpl.JoinedRows insertedRows = mapper.joinedRows();
+    final private RecipeMapperImpl.JoinedRows modifiedRows = mapper.joinedRows();
+    final private RecipeMapperImpl.JoinedRows exportRows = mapper.joinedRows();
+    // Запросы рецептов со столбцами id, name, description
+    final private RowReader<Recipe> recipeRows = mapper.recipeReader();
+    // Запросы продуктов со столбцами PRODUCT_COLUMNS
+    final private RowReader<Product> productRows = productMapper.queryReader();
+    // Продукты рецептов страницы: recipe_id и столбцы продукта
+    final private RowReader<Product> linkedProductRows = productMapper.queryReader();
+    final private QueryColumns linkColumns = new QueryColumns("recipe_id", "id");
     final private UtilDB db;
+    final private DbResilience resilience;
+    final private IdAllocator idAllocator;
+    final private int exportFetchSize = ConfigUtil.getIntProperty("export_fetch_size", 1000);
+    // Чтение рецепта по id одной строкой с продуктами в JSON-массиве вместо строки на каждый продукт
+    final private boolean readJsonAgg = Boolean.parseBoolean(ConfigUtil.getProperty("recipe_read_json_agg", "true"));
     final private String ERROR_MESSAGE_DATA_BASE = ConfigUtil.getProperty("ERROR_MESSAGE_DATA_BASE");
 
     /**
@@ -30,11 +56,37 @@ public class RecipeRepositoryImp implements RecipeRepositorySave<Recipe> {
      * @param db объект UtilDB для управления соединениями с базой данных
      */
     public RecipeRepositoryImp(UtilDB db) {
+        this(db, DbResilience.NONE);
+    }
+
+    /**
+     * Конструктор для инициализации объекта репозитория с защитой обращений к базе данных.
+     * Чтения выполняются с повторами при временных ошибках, все обращения проходят через автоматический выключатель.
+     *
+     * @param db         объект UtilDB для управления соединениями с базой данных
+     * @param resilience защита обращений к базе данных
+     */
+    public RecipeRepositoryImp(UtilDB db, DbResilience resilience) {
+        this(db, resilience, null);
+    }
+
+    /**
+     * Конструктор для инициализации объекта репозитория с выдачей идентификаторов на стороне приложения.
+     * Идентификатор нового рецепта берется из idAllocator до вставки, без RETURN_GENERATED_KEYS.
+     *
+     * @param db          объект UtilDB для управления соединениями с базой данных
+     * @param resilience  защита обращений к базе данных
+     * @param idAllocator источник идентификаторов или null, чтобы идентификатор генерировала БД
+     */
+    public RecipeRepositoryImp(UtilDB db, DbResilience resilience, IdAllocator idAllocator) {
         this.db = db;
+        this.resilience = resilience;
+        this.idAllocator = idAllocator;
     }
 
     /**
      * Получает рецепт по его идентификатору из базы данных.
+     * При включенном свойстве recipe_read_json_agg рецепт читается одной строкой, см. {@link #getByIdJsonAgg(Long)}.
      *
      * @param id идентификатор рецепта
      * @return Optional с объектом Recipe, если он найден, иначе пустой Optional
@@ -42,6 +94,9 @@ public class RecipeRepositoryImp implements RecipeRepositorySave<Recipe> {
      */
     @Override
     public Optional<Recipe> getById(Long id) throws RepositoryException {
+        if (readJsonAgg) {
+            return getByIdJsonAgg(id);
+        }
         String query = """
                 SELECT\s
                     r.id AS recipe_id,
@@ -60,155 +115,649 @@ public class RecipeRepositoryImp implements RecipeRepositorySave<Recipe> {
                 WHERE\s
                     r.id = ?""";
 
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement(query)) {
-            // Устанавливаем значение идентификатора в запрос
-            stm.setLong(1, id);
-            // Выполняем запрос и получаем результат
-            ResultSet resultSet = stm.executeQuery();
-            // Маппим результат в объект Recipe
-            Recipe recipe = mapper.fromResultSetToEntity(resultSet);
-            return Optional.ofNullable(recipe);
+        try {
+            return resilience.read(() -> {
+                // Устанавливаем соединение и создаем подготовленный запрос
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    // Устанавливаем значение идентификатора в запрос
+                    stm.setLong(1, id);
+                    // Выполняем запрос и получаем результат
+                    ResultSet resultSet = stm.executeQuery();
+                    // Маппим результат в объект Recipe
+                    Recipe recipe = byIdRows.readRecipe(resultSet);
+                    return Optional.ofNullable(recipe);
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Получает рецепт по идентификатору одной строкой: продукты агрегируются сервером в JSON-массив
+     * {@code json_agg}, поэтому столбцы рецепта не повторяются для каждого продукта, а драйвер разбирает
+     * одну строку вместо строки на продукт. Массив разбирается потоковым парсером, см.
+     * {@link RecipeMapperImpl#fromJsonRowToEntity(ResultSet)}.
+     *
+     * @param id идентификатор рецепта
+     * @return Optional с объектом Recipe, если он найден, иначе пустой Optional
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    Optional<Recipe> getByIdJsonAgg(Long id) throws RepositoryException {
+        // Рецепт без продуктов получает пустой массив: FILTER отбрасывает строку LEFT JOIN без продукта
+        String query = """
+                SELECT r.id AS recipe_id,
+                       r.name AS recipe_name,
+                       r.description AS recipe_description,
+                       COALESCE(json_agg(json_build_object(
+                               'id', p.id, 'name', p.name, 'description', p.description, 'price', p.price))
+                               FILTER (WHERE p.id IS NOT NULL), '[]') AS products
+                FROM recipe r
+                LEFT JOIN recipe_product rp ON r.id = rp.recipe_id
+                LEFT JOIN product p ON rp.product_id = p.id
+                WHERE r.id = ?
+                GROUP BY r.id""";
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    stm.setLong(1, id);
+                    return Optional.ofNullable(jsonAggRows.readJsonAgg(stm.executeQuery()));
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
 
     /**
-     * Сохраняет новый рецепт в базе данных вместе с его продуктами.
+     * Сохраняет новый рецепт вместе с его продуктами одним запросом: CTE вставляет рецепт, связи с продуктами
+     * из параметра-массива {@code unnest(?::bigint[])} и возвращает рецепт с присоединенными продуктами.
+     * Запрос атомарен, поэтому отдельная транзакция и повторное чтение рецепта не нужны.
      *
      * @param newRecipe  объект Recipe для сохранения
      * @param productsId множество идентификаторов продуктов, связанных с рецептом
-     * @return сохраненный объект Recipe
-     * @throws RepositoryException если происходит ошибка при работе с базой данных
-     * @throws SQLException        если происходит ошибка при выполнении SQL запроса
+     * @return сохраненный рецепт с продуктами
+     * @throws RepositoryException если список продуктов пуст или происходит ошибка при работе с базой данных
      */
     @Override
-    public Recipe save(Recipe newRecipe, Set<Long> productsId) throws RepositoryException, SQLException {
-        Connection conn = null;
-        // Устанавливаем соединение и выключаем авто-коммит для транзакции
+    public Recipe save(Recipe newRecipe, Set<Long> productsId) throws RepositoryException {
+        return save(newRecipe, productsId, true);
+    }
+
+    /**
+     * Сохраняет новый рецепт вместе со связями одним запросом.
+     *
+     * @param newRecipe       объект Recipe для сохранения
+     * @param productsId      множество идентификаторов продуктов, связанных с рецептом
+     * @param hydrateProducts присоединять ли продукты из этой же базы данных;
+     *                        при шардировании продукты лежат на других шардах и устанавливаются вызывающим
+     * @return сохраненный рецепт
+     * @throws RepositoryException если список продуктов пуст или происходит ошибка при работе с базой данных
+     */
+    Recipe save(Recipe newRecipe, Set<Long> productsId, boolean hydrateProducts) throws RepositoryException {
+        if (productsId == null || productsId.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+        }
+        String insertRecipe = idAllocator != null
+                ? "INSERT INTO recipe (id, name, description) VALUES (?, ?, ?) RETURNING id, name, description"
+                : "INSERT INTO recipe (name, description) VALUES (?, ?) RETURNING id, name, description";
+        String query = "WITH r AS (" + insertRecipe + "),\n" + """
+                l AS (
+                    INSERT INTO recipe_product (recipe_id, product_id)
+                    SELECT r.id, u.product_id FROM r, unnest(?::bigint[]) AS u(product_id)
+                    RETURNING recipe_id, product_id
+                )
+                """ + (hydrateProducts ? """
+                SELECT r.id AS recipe_id,
+                       r.name AS recipe_name,
+                       r.description AS recipe_description,
+                       p.id AS product_id,
+                       p.name AS product_name,
+                       p.description AS product_description,
+                       p.price AS product_price
+                FROM r
+                JOIN l ON l.recipe_id = r.id
+                JOIN product p ON p.id = l.product_id""" : """
+                SELECT r.id AS recipe_id, r.name AS recipe_name, r.description AS recipe_description FROM r""");
         try {
-            conn = db.createConnection();
-            conn.setAutoCommit(false);
-
-            // Сохраняем рецепт в базу данных
-            saveRecipeToDB(conn, newRecipe);
-
-            // Добавляем связь между рецептом и продуктами в таблицу many-to-many
-            addRecipeProductsManyToMany(conn, newRecipe.getId(), productsId);
-
-            // Коммитим транзакцию
-            conn.commit();
-            return newRecipe;
-        } catch (IllegalArgumentException | SQLException ex) {
-            // В случае ошибки откатываем транзакцию
-            if (conn != null) {
-                conn.rollback();
-            }
+            // Идентификатор выделяется до получения соединения: при исчерпании блока аллокатор сам обращается к БД
+            Long newId = idAllocator != null ? idAllocator.nextId() : null;
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    int index = 1;
+                    if (newId != null) {
+                        stm.setLong(index++, newId);
+                    }
+                    stm.setString(index++, newRecipe.getName());
+                    stm.setString(index++, newRecipe.getDescription());
+                    stm.setArray(index, conn.createArrayOf("bigint", productsId.toArray()));
+                    ResultSet resultSet = stm.executeQuery();
+                    if (hydrateProducts) {
+                        return savedRows.readRecipe(resultSet);
+                    }
+                    resultSet.next();
+                    return insertedRows.recipe(resultSet);
+                }
+            });
+        } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " " + ex.getMessage(), ex);
-        } finally {
-            // Включаем авто-коммит и закрываем соединение
-            if (conn != null) {
-                conn.setAutoCommit(true);
-                conn.close();
+        }
+    }
+
+    /**
+     * Сохраняет несколько рецептов в одной транзакции: рецепты вставляются одним пакетом,
+     * затем связи всех рецептов с продуктами - вторым пакетом.
+     *
+     * @param newRecipes рецепты для сохранения
+     * @param productIds идентификаторы продуктов каждого рецепта в том же порядке, что и newRecipes
+     * @return сохраненные рецепты с идентификаторами и продуктами в порядке входного списка
+     * @throws RepositoryException если список продуктов рецепта пуст или происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Recipe> saveAll(List<Recipe> newRecipes, List<Set<Long>> productIds) throws RepositoryException {
+        return saveAll(newRecipes, productIds, true);
+    }
+
+    /**
+     * Сохраняет несколько рецептов в одной транзакции.
+     *
+     * @param newRecipes      рецепты для сохранения
+     * @param productIds      идентификаторы продуктов каждого рецепта
+     * @param hydrateProducts загружать ли продукты рецептов из этой же базы данных;
+     *                        при шардировании продукты лежат на других шардах и загружаются вызывающим
+     * @return сохраненные рецепты в порядке входного списка
+     * @throws RepositoryException если список продуктов рецепта пуст или происходит ошибка при работе с базой данных
+     */
+    List<Recipe> saveAll(List<Recipe> newRecipes, List<Set<Long>> productIds, boolean hydrateProducts) throws RepositoryException {
+        if (newRecipes.size() != productIds.size()) {
+            throw new IllegalArgumentException("Recipes and product lists must have the same size");
+        }
+        for (Set<Long> ids : productIds) {
+            if (ids == null || ids.isEmpty()) {
+                throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+            }
+        }
+        if (newRecipes.isEmpty()) {
+            return newRecipes;
+        }
+        try {
+            if (idAllocator != null) {
+                for (Recipe recipe : newRecipes) {
+                    recipe.setId(idAllocator.nextId());
+                }
             }
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection()) {
+                    conn.setAutoCommit(false);
+                    try {
+                        saveRecipesBatch(conn, newRecipes);
+                        addRecipeProductsBatch(conn, newRecipes, productIds);
+                        if (hydrateProducts) {
+                            setProducts(conn, newRecipes, productIds);
+                        }
+                        conn.commit();
+                        return newRecipes;
+                    } catch (SQLException ex) {
+                        conn.rollback();
+                        throw ex;
+                    }
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " " + ex.getMessage(), ex);
         }
     }
 
     /**
-     * Обновляет существующий рецепт в базе данных.
+     * Обновляет существующий рецепт и возвращает его вместе с продуктами одним запросом:
+     * {@code UPDATE ... RETURNING} в CTE, к результату которого присоединяются продукты рецепта.
      *
      * @param recipeUpdate объект Recipe с обновленными данными
-     * @return обновленный объект Recipe
+     * @return Optional с обновленным рецептом или пустой Optional, если рецепт не найден
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
     @Override
-    public Recipe updateByEntity(Recipe recipeUpdate) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement("UPDATE recipe SET name = ?, description = ? WHERE id = ?")) {
-            // Устанавливаем параметры запроса
-            stm.setString(1, recipeUpdate.getName());
-            stm.setString(2, recipeUpdate.getDescription());
-            stm.setLong(3, recipeUpdate.getId());
-            // Выполняем запрос на обновление
-            stm.executeUpdate();
-            return recipeUpdate;
+    public Optional<Recipe> updateByEntity(Recipe recipeUpdate) throws RepositoryException {
+        try {
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(withProducts(
+                             "UPDATE recipe SET name = ?, description = ? WHERE id = ? RETURNING id, name, description"))) {
+                    stm.setString(1, recipeUpdate.getName());
+                    stm.setString(2, recipeUpdate.getDescription());
+                    stm.setLong(3, recipeUpdate.getId());
+                    return Optional.ofNullable(modifiedRows.readRecipe(stm.executeQuery()));
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
 
     /**
-     * Удаляет рецепт по его идентификатору из базы данных.
+     * Обновляет рецепт и его состав в одной транзакции.
+     * <p>
+     * Строка рецепта обновляется первой и остается заблокированной до конца транзакции, поэтому параллельные
+     * изменения состава одного рецепта выполняются по очереди. Разница с текущим составом вычисляется
+     * базой данных двумя запросами по параметру-массиву: удаление связей с продуктами, которых нет в новом составе,
+     * и вставка только отсутствующих связей; неизменные связи не перезаписываются.
+     * </p>
+     *
+     * @param recipeUpdate объект Recipe с обновленными данными
+     * @param productIds   новый состав рецепта; null - изменяются только название и описание
+     * @return Optional с обновленным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если состав пуст или происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Recipe> updateByEntity(Recipe recipeUpdate, Set<Long> productIds) throws RepositoryException {
+        if (productIds == null) {
+            return updateByEntity(recipeUpdate);
+        }
+        return updateByEntity(recipeUpdate, productIds, true);
+    }
+
+    /**
+     * Обновляет рецепт и его состав в одной транзакции.
+     *
+     * @param recipeUpdate    объект Recipe с обновленными данными
+     * @param productIds      новый состав рецепта
+     * @param hydrateProducts загружать ли продукты рецепта из этой же базы данных;
+     *                        при шардировании продукты лежат на других шардах и устанавливаются вызывающим
+     * @return Optional с обновленным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если состав пуст или происходит ошибка при работе с базой данных
+     */
+    Optional<Recipe> updateByEntity(Recipe recipeUpdate, Set<Long> productIds, boolean hydrateProducts) throws RepositoryException {
+        if (productIds == null || productIds.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+        }
+        try {
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection()) {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement recipeStm = conn.prepareStatement(
+                            "UPDATE recipe SET name = ?, description = ? WHERE id = ? RETURNING id, name, description");
+                         PreparedStatement removeStm = conn.prepareStatement(
+                                 "DELETE FROM recipe_product WHERE recipe_id = ? AND NOT (product_id = ANY(?::bigint[]))");
+                         PreparedStatement addStm = conn.prepareStatement("""
+                                 INSERT INTO recipe_product (recipe_id, product_id)
+                                 SELECT ?, u.product_id FROM unnest(?::bigint[]) AS u(product_id)
+                                 ON CONFLICT DO NOTHING""")) {
+                        recipeStm.setString(1, recipeUpdate.getName());
+                        recipeStm.setString(2, recipeUpdate.getDescription());
+                        recipeStm.setLong(3, recipeUpdate.getId());
+                        ResultSet recipeRs = recipeStm.executeQuery();
+                        if (!recipeRs.next()) {
+                            conn.rollback();
+                            return Optional.<Recipe>empty();
+                        }
+                        Recipe updated = recipeRows.read(recipeRs);
+                        Array ids = conn.createArrayOf("bigint", productIds.toArray());
+                        removeStm.setLong(1, updated.getId());
+                        removeStm.setArray(2, ids);
+                        removeStm.executeUpdate();
+                        addStm.setLong(1, updated.getId());
+                        addStm.setArray(2, ids);
+                        addStm.executeUpdate();
+                        if (hydrateProducts) {
+                            setProducts(conn, List.of(updated), List.of(productIds));
+                        }
+                        conn.commit();
+                        return Optional.of(updated);
+                    } catch (SQLException ex) {
+                        conn.rollback();
+                        throw ex;
+                    }
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Удаляет рецепт и возвращает его вместе с продуктами одним запросом.
+     * Все части запроса читают один снимок данных, поэтому связи, удаляемые каскадно, еще видны при выборке продуктов.
      *
      * @param id идентификатор рецепта
+     * @return Optional с удаленным рецептом или пустой Optional, если рецепт не найден
      * @throws RepositoryException если происходит ошибка при работе с базой данных
      */
     @Override
-    public void deleteById(Long id) throws RepositoryException {
-        // Устанавливаем соединение и создаем подготовленный запрос
-        try (Connection conn = db.createConnection();
-             PreparedStatement stm = conn.prepareStatement("DELETE FROM recipe WHERE id = ?")) {
-            // Устанавливаем значение идентификатора в запрос
-            stm.setLong(1, id);
-            // Выполняем запрос на удаление
-            stm.executeUpdate();
+    public Optional<Recipe> deleteById(Long id) throws RepositoryException {
+        try {
+            return resilience.write(() -> {
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(withProducts(
+                             "DELETE FROM recipe WHERE id = ? RETURNING id, name, description"))) {
+                    stm.setLong(1, id);
+                    return Optional.ofNullable(modifiedRows.readRecipe(stm.executeQuery()));
+                }
+            });
         } catch (SQLException ex) {
             throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
         }
     }
 
     /**
-     * Сохраняет рецепт в базу данных.
+     * Оборачивает изменяющий запрос с {@code RETURNING id, name, description} в CTE и присоединяет
+     * продукты рецепта; столбцы результата совпадают с запросом {@link #getById(Long)}.
+     *
+     * @param modifyingQuery запрос UPDATE или DELETE по таблице recipe
+     * @return запрос, возвращающий измененный рецепт с продуктами
+     */
+    private static String withProducts(String modifyingQuery) {
+        return "WITH r AS (" + modifyingQuery + ")" + """
+
+                SELECT r.id AS recipe_id,
+                       r.name AS recipe_name,
+                       r.description AS recipe_description,
+                       p.id AS product_id,
+                       p.name AS product_name,
+                       p.description AS product_description,
+                       p.price AS product_price
+                FROM r
+                LEFT JOIN recipe_product rp ON r.id = rp.recipe_id
+                LEFT JOIN product p ON rp.product_id = p.id""";
+    }
+
+    /**
+     * Получает страницу рецептов с идентификатором больше afterId вместе с продуктами.
+     * <p>
+     * Выполняется два запроса: страница рецептов и все продукты этих рецептов по {@code recipe_id = ANY(?)}.
+     * Результаты собираются в памяти, поэтому столбцы рецепта не повторяются для каждого продукта,
+     * а продукт, входящий в несколько рецептов, создается один раз.
+     * </p>
      *
-     * @param conn   соединение с базой данных
-     * @param recipe объект Recipe для сохранения
+     * @param afterId идентификатор последнего рецепта предыдущей страницы
+     * @param limit   максимальное количество рецептов
+     * @return рецепты страницы в порядке возрастания id
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Recipe> getPage(long afterId, int limit) throws RepositoryException {
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement recipeStm = conn.prepareStatement(
+                             "SELECT id, name, description FROM recipe WHERE id > ? ORDER BY id LIMIT ?")) {
+                    recipeStm.setLong(1, afterId);
+                    recipeStm.setInt(2, limit);
+                    return new ArrayList<>(readRecipesWithProducts(conn, recipeStm).values());
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Получает рецепты с продуктами по набору идентификаторов двумя запросами с параметром-массивом
+     * {@code id = ANY(?)}: рецепты и продукты всех найденных рецептов.
+     *
+     * @param ids идентификаторы рецептов
+     * @return найденные рецепты по идентификатору; отсутствующие id в результат не попадают
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Map<Long, Recipe> getByIds(Collection<Long> ids) throws RepositoryException {
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement recipeStm = conn.prepareStatement(
+                             "SELECT id, name, description FROM recipe WHERE id = ANY(?)")) {
+                    recipeStm.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+                    return readRecipesWithProducts(conn, recipeStm);
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Выполняет запрос рецептов и загружает продукты всех найденных рецептов одним запросом
+     * по {@code recipe_id = ANY(?)}. Результаты собираются в памяти, поэтому столбцы рецепта
+     * не повторяются для каждого продукта, а продукт, входящий в несколько рецептов, создается один раз.
+     *
+     * @param conn      соединение для чтения
+     * @param recipeStm подготовленный запрос рецептов со столбцами id, name, description
+     * @return рецепты с продуктами по идентификатору в порядке строк запроса
      * @throws SQLException если происходит ошибка при выполнении SQL запроса
      */
-    private void saveRecipeToDB(Connection conn, Recipe recipe) throws SQLException {
-        String query = "INSERT INTO recipe (name, description) VALUES (?, ?)";
-        // Создаем подготовленный запрос
-        try (PreparedStatement stm = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
-            // Устанавливаем параметры запроса
-            stm.setString(1, recipe.getName());
-            stm.setString(2, recipe.getDescription());
-            // Выполняем запрос на вставку
-            stm.executeUpdate();
-            // Получаем сгенерированный ключ (идентификатор)
-            ResultSet rs = stm.getGeneratedKeys();
-            if (rs.next()) {
-                recipe.setId(rs.getLong(1));
+    private Map<Long, Recipe> readRecipesWithProducts(Connection conn, PreparedStatement recipeStm) throws SQLException {
+        Map<Long, Recipe> recipes = new LinkedHashMap<>();
+        ResultSet recipeRs = recipeStm.executeQuery();
+        while (recipeRs.next()) {
+            Recipe recipe = recipeRows.read(recipeRs);
+            recipe.setProducts(new HashSet<>());
+            recipes.put(recipe.getId(), recipe);
+        }
+        if (recipes.isEmpty()) {
+            return recipes;
+        }
+        String productsQuery = """
+                SELECT rp.recipe_id, p.id, p.name, p.description, p.price
+                FROM recipe_product rp
+                JOIN product p ON p.id = rp.product_id
+                WHERE rp.recipe_id = ANY(?)""";
+        try (PreparedStatement productStm = conn.prepareStatement(productsQuery)) {
+            productStm.setArray(1, conn.createArrayOf("bigint", recipes.keySet().toArray()));
+            ResultSet productRs = productStm.executeQuery();
+            Map<Long, Product> products = new HashMap<>();
+            while (productRs.next()) {
+                int[] columns = linkColumns.of(productRs);
+                long productId = productRs.getLong(columns[1]);
+                Product product = products.get(productId);
+                if (product == null) {
+                    product = linkedProductRows.read(productRs);
+                    products.put(productId, product);
+                }
+                recipes.get(productRs.getLong(columns[0])).getProducts().add(product);
             }
         }
+        return recipes;
     }
 
     /**
-     * Добавляет связь между рецептом и продуктами в таблицу many-to-many.
+     * Передает все рецепты с продуктами обработчику в порядке возрастания id.
      *
-     * @param conn       соединение с базой данных
-     * @param recipeID   идентификатор рецепта
-     * @param productIds множество идентификаторов продуктов
-     * @throws RepositoryException если происходит ошибка при выполнении SQL запроса
+     * @param handler обработчик рецептов
+     * @return количество переданных рецептов
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать рецепт
      */
-    private void addRecipeProductsManyToMany(Connection conn, Long recipeID, Set<Long> productIds) throws RepositoryException {
-        if (productIds == null || productIds.isEmpty()) {
-            throw new IllegalArgumentException("Product list cannot be empty or equals null");
-        }
-        String query = "INSERT INTO recipe_product (recipe_id, product_id) VALUES (?,?)";
-        // Создаем подготовленный запрос
-        try (PreparedStatement stm = conn.prepareStatement(query)) {
-            // Устанавливаем параметры запроса для каждого продукта и добавляем в батч
-            for (Long productId : productIds) {
-                stm.setLong(1, recipeID);
-                stm.setLong(2, productId);
+    @Override
+    public long exportAll(RowHandler<Recipe> handler) throws RepositoryException, IOException {
+        return exportRange(0, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Передает обработчику рецепты с продуктами из диапазона идентификаторов в порядке возрастания id.
+     * <p>
+     * Строки соединения рецептов с продуктами читаются курсором на сервере (транзакция и setFetchSize)
+     * в порядке id рецепта, поэтому рецепт собирается из соседних строк и передается, как только
+     * начинается следующий; в памяти хранится только текущий рецепт.
+     * </p>
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик рецептов
+     * @return количество переданных рецептов
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать рецепт
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<Recipe> handler) throws RepositoryException, IOException {
+        String query = """
+                SELECT r.id AS recipe_id, r.name AS recipe_name, r.description AS recipe_description,
+                       p.id AS product_id, p.name AS product_name, p.description AS product_description,
+                       p.price AS product_price
+                FROM recipe r
+                LEFT JOIN recipe_product rp ON rp.recipe_id = r.id
+                LEFT JOIN product p ON p.id = rp.product_id
+                WHERE r.id >= ? AND r.id < ?
+                ORDER BY r.id""";
+
+        try {
+            return resilience.stream(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    // Курсор на сервере используется только вне режима авто-коммита
+                    conn.setAutoCommit(false);
+                    stm.setFetchSize(exportFetchSize);
+                    stm.setLong(1, fromId);
+                    stm.setLong(2, toId);
+                    long count = 0;
+                    try (ResultSet resultSet = stm.executeQuery()) {
+                        Recipe current = null;
+                        while (resultSet.next()) {
+                            if (current == null || current.getId() != exportRows.recipeId(resultSet)) {
+                                if (current != null) {
+                                    handler.handle(current);
+                                    count++;
+                                }
+                                current = exportRows.recipe(resultSet);
+                                current.setProducts(new HashSet<>());
+                            }
+                            // Строки читаются тем же маппером, что и рецепт по id
+                            Product product = exportRows.product(resultSet);
+                            if (product != null) {
+                                current.getProducts().add(product);
+                            }
+                        }
+                        if (current != null) {
+                            handler.handle(current);
+                            count++;
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    conn.commit();
+                    return count;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов рецептов.
+     *
+     * @return диапазон [min(id), max(id) + 1) или null, если рецептов нет
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public IdRange getIdRange() throws RepositoryException {
+        try {
+            return resilience.read(() -> {
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement stm = conn.prepareStatement("SELECT min(id), max(id) FROM recipe")) {
+                    ResultSet resultSet = stm.executeQuery();
+                    resultSet.next();
+                    long min = resultSet.getLong(1);
+                    // Агрегаты пустой таблицы равны NULL
+                    return resultSet.wasNull() ? null : new IdRange(min, resultSet.getLong(2) + 1);
+                }
+            });
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Вставляет рецепты одним пакетом. Без аллокатора идентификаторы берутся из сгенерированных ключей
+     * в порядке добавления в пакет.
+     *
+     * @param conn    соединение транзакции
+     * @param recipes рецепты для вставки
+     * @throws SQLException если происходит ошибка при выполнении SQL запроса
+     */
+    private void saveRecipesBatch(Connection conn, List<Recipe> recipes) throws SQLException {
+        if (idAllocator != null) {
+            try (PreparedStatement stm = conn.prepareStatement("INSERT INTO recipe (id, name, description) VALUES (?, ?, ?)")) {
+                for (Recipe recipe : recipes) {
+                    stm.setLong(1, recipe.getId());
+                    stm.setString(2, recipe.getName());
+                    stm.setString(3, recipe.getDescription());
+                    stm.addBatch();
+                }
+                stm.executeBatch();
+            }
+            return;
+        }
+        try (PreparedStatement stm = conn.prepareStatement(
+                "INSERT INTO recipe (name, description) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (Recipe recipe : recipes) {
+                stm.setString(1, recipe.getName());
+                stm.setString(2, recipe.getDescription());
                 stm.addBatch();
             }
-            // Выполняем батч запросов
             stm.executeBatch();
-        } catch (IllegalArgumentException | SQLException ex) {
-            throw new RepositoryException(ex.getMessage());
+            ResultSet keys = stm.getGeneratedKeys();
+            for (Recipe recipe : recipes) {
+                if (!keys.next()) {
+                    throw new SQLException("Generated keys count does not match batch size");
+                }
+                recipe.setId(keys.getLong(1));
+            }
+        }
+    }
+
+    /**
+     * Добавляет связи всех рецептов с продуктами одним пакетом.
+     *
+     * @param conn       соединение транзакции
+     * @param recipes    сохраненные рецепты
+     * @param productIds идентификаторы продуктов каждого рецепта
+     * @throws SQLException если происходит ошибка при выполнении SQL запроса
+     */
+    private void addRecipeProductsBatch(Connection conn, List<Recipe> recipes, List<Set<Long>> productIds) throws SQLException {
+        try (PreparedStatement stm = conn.prepareStatement("INSERT INTO recipe_product (recipe_id, product_id) VALUES (?,?)")) {
+            for (int i = 0; i < recipes.size(); i++) {
+                for (Long productId : productIds.get(i)) {
+                    stm.setLong(1, recipes.get(i).getId());
+                    stm.setLong(2, productId);
+                    stm.addBatch();
+                }
+            }
+            stm.executeBatch();
+        }
+    }
+
+    /**
+     * Загружает продукты всех рецептов одним запросом и раскладывает их по рецептам.
+     *
+     * @param conn       соединение транзакции
+     * @param recipes    сохраненные рецепты
+     * @param productIds идентификаторы продуктов каждого рецепта
+     * @throws SQLException если происходит ошибка при выполнении SQL запроса
+     */
+    private void setProducts(Connection conn, List<Recipe> recipes, List<Set<Long>> productIds) throws SQLException {
+        Set<Long> allIds = new HashSet<>();
+        productIds.forEach(allIds::addAll);
+        Map<Long, Product> products = new HashMap<>();
+        try (PreparedStatement stm = conn.prepareStatement(
+                "SELECT " + ProductRepositoryImp.PRODUCT_COLUMNS + " FROM product WHERE id = ANY(?)")) {
+            stm.setArray(1, conn.createArrayOf("bigint", allIds.toArray()));
+            ResultSet rs = stm.executeQuery();
+            while (rs.next()) {
+                Product product = productRows.read(rs);
+                products.put(product.getId(), product);
+            }
+        }
+        for (int i = 0; i < recipes.size(); i++) {
+            Set<Product> recipeProducts = new HashSet<>();
+            productIds.get(i).stream().map(products::get).filter(Objects::nonNull).forEach(recipeProducts::add);
+            recipes.get(i).setProducts(recipeProducts);
         }
     }
 }
@@ -0,0 +1,263 @@
+package repository.impl;
+
+import config.ConfigUtil;
+import db.id.BlockIdAllocator;
+import db.id.IdAllocator;
+import db.resilience.DbResilience;
+import db.shard.ShardedUtilDB;
+import entity.Product;
+import exception.RepositoryException;
+import repository.IdRange;
+import repository.ImportResult;
+import repository.ImportRow;
+import repository.ProductRepository;
+import repository.RowHandler;
+import repository.RowSource;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Репозиторий продуктов, распределенных по шардам {@link ShardedUtilDB}.
+ * <p>
+ * Каждому шарду соответствует обычный {@link ProductRepositoryImp} со своим {@link BlockIdAllocator}:
+ * идентификатор нового продукта равен {@code value * N + shard}, где value выдается из последовательности
+ * product_id_seq шарда, поэтому шард продукта всегда определяется по его id.
+ * </p>
+ */
+public class ShardedProductRepositoryImp implements ProductRepository {
+
+    final private ShardedUtilDB db;
+    final private DbResilience resilience;
+    final private List<ProductRepositoryImp> shardRepositories = new ArrayList<>();
+    final private int exportFetchSize = ConfigUtil.getIntProperty("export_fetch_size", 1000);
+    final private String ERROR_MESSAGE_DATA_BASE = ConfigUtil.getProperty("ERROR_MESSAGE_DATA_BASE");
+
+    /**
+     * @param db          источник соединений шардов
+     * @param resilience  защита обращений к базе данных
+     * @param idBlockSize размер блока идентификаторов (шаг последовательности product_id_seq)
+     */
+    public ShardedProductRepositoryImp(ShardedUtilDB db, DbResilience resilience, int idBlockSize) {
+        this.db = db;
+        this.resilience = resilience;
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            IdAllocator idAllocator = new BlockIdAllocator(db.shard(shard), "product_id_seq",
+                    idBlockSize, db.getShardCount(), shard);
+            shardRepositories.add(new ProductRepositoryImp(db, resilience, idAllocator));
+        }
+    }
+
+    /**
+     * Получает продукт по идентификатору с его шарда.
+     *
+     * @param id идентификатор продукта
+     * @return Optional с объектом Product, если он найден, иначе пустой Optional
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Product> getById(Long id) throws RepositoryException {
+        int shard = db.shardOf(id);
+        return db.onShard(shard, () -> shardRepositories.get(shard).getById(id));
+    }
+
+    /**
+     * Сохраняет новый продукт на следующем по кругу шарде.
+     *
+     * @param newProduct объект Product для сохранения
+     * @return сохраненный объект Product с присвоенным идентификатором
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Product save(Product newProduct) throws RepositoryException {
+        int shard = db.nextShard();
+        return db.onShard(shard, () -> shardRepositories.get(shard).save(newProduct));
+    }
+
+    /**
+     * Сохраняет несколько продуктов одним пакетом на следующем по кругу шарде,
+     * чтобы вся пачка сохранялась в одной транзакции.
+     *
+     * @param newProducts продукты для сохранения
+     * @return сохраненные продукты в порядке входного списка
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Product> saveAll(List<Product> newProducts) throws RepositoryException {
+        int shard = db.nextShard();
+        return db.onShard(shard, () -> shardRepositories.get(shard).saveAll(newProducts));
+    }
+
+    /**
+     * Вставка или обновление по имени при шардировании не поддерживается: уникальность имени обеспечивается
+     * только в пределах шарда, поэтому продукт с тем же именем может лежать на другом шарде.
+     *
+     * @throws RepositoryException всегда
+     */
+    @Override
+    public Product upsert(Product product) throws RepositoryException {
+        throw new RepositoryException("Upsert by name is not supported for sharded storage");
+    }
+
+    /**
+     * Обновляет продукт на его шарде.
+     *
+     * @param updateProduct объект Product с обновленными данными
+     * @return Optional с обновленным продуктом или пустой Optional, если продукт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Product> updateByEntity(Product updateProduct) throws RepositoryException {
+        int shard = db.shardOf(updateProduct.getId());
+        return db.onShard(shard, () -> shardRepositories.get(shard).updateByEntity(updateProduct));
+    }
+
+    /**
+     * Удаляет продукт с его шарда и связи рецептов с ним на всех шардах.
+     * Связи хранятся на шардах рецептов без внешнего ключа, поэтому каскадное удаление выполняется здесь.
+     *
+     * @param id идентификатор продукта
+     * @return Optional с удаленным продуктом или пустой Optional, если продукт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Product> deleteById(Long id) throws RepositoryException {
+        int owner = db.shardOf(id);
+        Optional<Product> deleted = db.onShard(owner, () -> shardRepositories.get(owner).deleteById(id));
+        if (deleted.isEmpty()) {
+            return deleted;
+        }
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            try {
+                db.onShard(shard, () -> resilience.write(() -> {
+                    try (Connection conn = db.createConnection();
+                         PreparedStatement stm = conn.prepareStatement("DELETE FROM recipe_product WHERE product_id = ?")) {
+                        stm.setLong(1, id);
+                        return stm.executeUpdate();
+                    }
+                }));
+            } catch (SQLException ex) {
+                throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Получает страницу продуктов со всех шардов: каждый шард возвращает до limit продуктов после afterId,
+     * результаты объединяются по возрастанию id и обрезаются до limit.
+     *
+     * @param afterId идентификатор последнего продукта предыдущей страницы
+     * @param limit   максимальное количество продуктов
+     * @return продукты страницы в порядке возрастания id
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Product> getPage(long afterId, int limit) throws RepositoryException {
+        List<Product> merged = new ArrayList<>();
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            int current = shard;
+            merged.addAll(db.onShard(current, () -> shardRepositories.get(current).getPage(afterId, limit)));
+        }
+        merged.sort(Comparator.comparingLong(Product::getId));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    /**
+     * Загружает продукты по набору идентификаторов: запросы группируются по шардам,
+     * по одному запросу на шард.
+     *
+     * @param ids идентификаторы продуктов
+     * @return найденные продукты по идентификатору; отсутствующие id в результат не попадают
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Map<Long, Product> getByIds(Collection<Long> ids) throws RepositoryException {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(db.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Map.Entry<Integer, List<Long>> entry : idsByShard.entrySet()) {
+            products.putAll(db.onShard(entry.getKey(), () -> shardRepositories.get(entry.getKey()).getByIds(entry.getValue())));
+        }
+        return products;
+    }
+
+    /**
+     * Передает все продукты обработчику в порядке возрастания id.
+     *
+     * @param handler обработчик
+     * @return количество переданных записей
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать запись
+     */
+    @Override
+    public long exportAll(RowHandler<Product> handler) throws RepositoryException, IOException {
+        return exportRange(0, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Передает обработчику продукты из диапазона идентификаторов в порядке возрастания id.
+     * Один курсор не может охватить несколько баз, поэтому продукты читаются страницами по ключу
+     * размером export_fetch_size, собранными со всех шардов; в памяти хранится одна страница.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик
+     * @return количество переданных записей
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать запись
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<Product> handler) throws RepositoryException, IOException {
+        long count = 0;
+        long afterId = fromId - 1;
+        while (true) {
+            List<Product> page = getPage(afterId, exportFetchSize);
+            for (Product row : page) {
+                if (row.getId() >= toId) {
+                    return count;
+                }
+                handler.handle(row);
+                count++;
+            }
+            if (page.size() < exportFetchSize) {
+                return count;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов продуктов по всем шардам.
+     *
+     * @return диапазон [min(id), max(id) + 1) или null, если записей нет
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public IdRange getIdRange() throws RepositoryException {
+        IdRange result = null;
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            ProductRepositoryImp shardRepository = shardRepositories.get(shard);
+            IdRange range = db.onShard(shard, shardRepository::getIdRange);
+            if (range != null) {
+                result = result == null ? range : new IdRange(Math.min(result.fromId(), range.fromId()),
+                        Math.max(result.toId(), range.toId()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Массовый импорт при шардировании не поддерживается: уникальность имени обеспечивается только
+     * в пределах шарда, а идентификаторы должны выдаваться аллокатором шарда.
+     *
+     * @throws RepositoryException всегда
+     */
+    @Override
+    public ImportResult importAll(RowSource<ImportRow<Product>> source, int maxReport) throws RepositoryException {
+        throw new RepositoryException("Bulk import is not supported for sharded storage");
+    }
+}
@@ -0,0 +1,469 @@
+package repository.impl;
+
+import config.ConfigUtil;
+import db.id.BlockIdAllocator;
+import db.id.IdAllocator;
+import db.resilience.DbResilience;
+import db.shard.ShardedUtilDB;
+import entity.Product;
+import entity.Recipe;
+import exception.RepositoryException;
+import mapper.RowReader;
+import mapper.impl.QueryColumns;
+import mapper.impl.RecipeMapperImpl;
+import repository.IdRange;
+import repository.RecipeRepository;
+import repository.RowHandler;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Репозиторий рецептов, распределенных по шардам {@link ShardedUtilDB}.
+ * <p>
+ * Рецепт и его связи с продуктами (recipe_product) хранятся на шарде рецепта. Продукты могут лежать
+ * на других шардах, поэтому внешнего ключа на product у связи нет: существование продуктов проверяется
+ * при сохранении, а при чтении продукты догружаются запросами к их шардам.
+ * </p>
+ */
+public class ShardedRecipeRepositoryImp implements RecipeRepository {
+
+    final private ShardedUtilDB db;
+    final private DbResilience resilience;
+    final private List<RecipeRepositoryImp> shardRepositories = new ArrayList<>();
+    final private ShardedProductRepositoryImp productRepository;
+    final private RecipeMapperImpl mapper = new RecipeMapperImpl();
+    // Читатели строк по константным запросам: номера столбцов находятся при первом выполнении запроса
+    final private RowReader<Recipe> recipeRows = mapper.recipeReader();
+    final private RowReader<Recipe> modifiedRows = mapper.recipeReader();
+    final private QueryColumns modifiedLinkColumns = new QueryColumns("product_id");
+    final private QueryColumns linkColumns = new QueryColumns("recipe_id", "product_id");
+    final private int exportFetchSize = ConfigUtil.getIntProperty("export_fetch_size", 1000);
+    final private String ERROR_MESSAGE_DATA_BASE = ConfigUtil.getProperty("ERROR_MESSAGE_DATA_BASE");
+
+    /**
+     * @param db                источник соединений шардов
+     * @param resilience        защита обращений к базе данных
+     * @param productRepository репозиторий продуктов для загрузки продуктов рецепта
+     * @param idBlockSize       размер блока идентификаторов (шаг последовательности recipe_id_seq)
+     */
+    public ShardedRecipeRepositoryImp(ShardedUtilDB db, DbResilience resilience,
+                                      ShardedProductRepositoryImp productRepository, int idBlockSize) {
+        this.db = db;
+        this.resilience = resilience;
+        this.productRepository = productRepository;
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            IdAllocator idAllocator = new BlockIdAllocator(db.shard(shard), "recipe_id_seq",
+                    idBlockSize, db.getShardCount(), shard);
+            shardRepositories.add(new RecipeRepositoryImp(db, resilience, idAllocator));
+        }
+    }
+
+    /**
+     * Получает рецепт с его шарда и догружает продукты с их шардов.
+     *
+     * @param id идентификатор рецепта
+     * @return Optional с объектом Recipe, если он найден, иначе пустой Optional
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Recipe> getById(Long id) throws RepositoryException {
+        Set<Long> productIds = new LinkedHashSet<>();
+        Recipe recipe;
+        try {
+            recipe = db.onShard(db.shardOf(id), () -> resilience.read(() -> {
+                productIds.clear();
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement recipeStm = conn.prepareStatement("SELECT id, name, description FROM recipe WHERE id = ?");
+                     PreparedStatement linksStm = conn.prepareStatement("SELECT product_id FROM recipe_product WHERE recipe_id = ?")) {
+                    recipeStm.setLong(1, id);
+                    ResultSet recipeRs = recipeStm.executeQuery();
+                    if (!recipeRs.next()) {
+                        return null;
+                    }
+                    Recipe found = recipeRows.read(recipeRs);
+                    linksStm.setLong(1, id);
+                    ResultSet linksRs = linksStm.executeQuery();
+                    while (linksRs.next()) {
+                        productIds.add(linksRs.getLong(1));
+                    }
+                    return found;
+                }
+            }));
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+        if (recipe == null) {
+            return Optional.empty();
+        }
+        // Связь с удаленным продуктом, которую не успели очистить, просто пропускается
+        recipe.setProducts(new HashSet<>(productRepository.getByIds(productIds).values()));
+        return Optional.of(recipe);
+    }
+
+    /**
+     * Получает страницу рецептов со всех шардов и догружает их продукты.
+     * С каждого шарда читается до limit рецептов и их связи (два запроса на шард), после слияния
+     * по id остается limit первых; продукты загружаются одним запросом на шард продуктов.
+     *
+     * @param afterId идентификатор последнего рецепта предыдущей страницы
+     * @param limit   максимальное количество рецептов
+     * @return рецепты страницы в порядке возрастания id
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Recipe> getPage(long afterId, int limit) throws RepositoryException {
+        TreeMap<Long, Recipe> merged = new TreeMap<>();
+        Map<Long, Set<Long>> productIdsByRecipe = new HashMap<>();
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            readShard(shard, "SELECT id, name, description FROM recipe WHERE id > ? ORDER BY id LIMIT ?", (conn, stm) -> {
+                stm.setLong(1, afterId);
+                stm.setInt(2, limit);
+            }, productIdsByRecipe).forEach(recipe -> merged.put(recipe.getId(), recipe));
+        }
+        List<Recipe> page = new ArrayList<>(merged.values().stream().limit(limit).toList());
+        setProducts(page, productIdsByRecipe);
+        return page;
+    }
+
+    /**
+     * Получает рецепты по набору идентификаторов: идентификаторы группируются по шардам,
+     * с каждого шарда рецепты и их связи читаются двумя запросами, продукты догружаются одним запросом на шард продуктов.
+     *
+     * @param ids идентификаторы рецептов
+     * @return найденные рецепты по идентификатору; отсутствующие id в результат не попадают
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Map<Long, Recipe> getByIds(Collection<Long> ids) throws RepositoryException {
+        Map<Integer, List<Long>> idsByShard = new TreeMap<>();
+        for (Long id : ids) {
+            idsByShard.computeIfAbsent(db.shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Long, Recipe> recipes = new HashMap<>();
+        Map<Long, Set<Long>> productIdsByRecipe = new HashMap<>();
+        for (Map.Entry<Integer, List<Long>> entry : idsByShard.entrySet()) {
+            readShard(entry.getKey(), "SELECT id, name, description FROM recipe WHERE id = ANY(?)",
+                    (conn, stm) -> stm.setArray(1, conn.createArrayOf("bigint", entry.getValue().toArray())),
+                    productIdsByRecipe).forEach(recipe -> recipes.put(recipe.getId(), recipe));
+        }
+        setProducts(recipes.values(), productIdsByRecipe);
+        return recipes;
+    }
+
+    /**
+     * Читает рецепты с шарда и их связи с продуктами (два запроса на одном соединении).
+     *
+     * @param shard              номер шарда
+     * @param recipesQuery       запрос рецептов со столбцами id, name, description
+     * @param binder             установка параметров запроса рецептов
+     * @param productIdsByRecipe сюда добавляются идентификаторы продуктов найденных рецептов
+     * @return найденные рецепты без продуктов
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    private List<Recipe> readShard(int shard, String recipesQuery, StatementBinder binder,
+                                   Map<Long, Set<Long>> productIdsByRecipe) throws RepositoryException {
+        Map<Long, Set<Long>> shardLinks = new HashMap<>();
+        try {
+            List<Recipe> recipes = db.onShard(shard, () -> resilience.read(() -> {
+                shardLinks.clear();
+                try (Connection conn = db.createReadConnection();
+                     PreparedStatement recipeStm = conn.prepareStatement(recipesQuery);
+                     PreparedStatement linksStm = conn.prepareStatement(
+                             "SELECT recipe_id, product_id FROM recipe_product WHERE recipe_id = ANY(?)")) {
+                    binder.bind(conn, recipeStm);
+                    List<Recipe> found = new ArrayList<>();
+                    ResultSet recipeRs = recipeStm.executeQuery();
+                    while (recipeRs.next()) {
+                        Recipe recipe = recipeRows.read(recipeRs);
+                        found.add(recipe);
+                        shardLinks.put(recipe.getId(), new LinkedHashSet<>());
+                    }
+                    if (found.isEmpty()) {
+                        return found;
+                    }
+                    linksStm.setArray(1, conn.createArrayOf("bigint", shardLinks.keySet().toArray()));
+                    ResultSet linksRs = linksStm.executeQuery();
+                    while (linksRs.next()) {
+                        int[] columns = linkColumns.of(linksRs);
+                        shardLinks.get(linksRs.getLong(columns[0])).add(linksRs.getLong(columns[1]));
+                    }
+                    return found;
+                }
+            }));
+            productIdsByRecipe.putAll(shardLinks);
+            return recipes;
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+    }
+
+    /**
+     * Загружает продукты рецептов одним запросом на шард продуктов и раскладывает их по рецептам.
+     *
+     * @param recipes            рецепты
+     * @param productIdsByRecipe идентификаторы продуктов каждого рецепта
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    private void setProducts(Collection<Recipe> recipes, Map<Long, Set<Long>> productIdsByRecipe) throws RepositoryException {
+        Set<Long> productIds = new HashSet<>();
+        recipes.forEach(recipe -> productIds.addAll(productIdsByRecipe.get(recipe.getId())));
+        Map<Long, Product> products = productRepository.getByIds(productIds);
+        for (Recipe recipe : recipes) {
+            Set<Product> recipeProducts = new HashSet<>();
+            // Связь с удаленным продуктом, которую не успели очистить, просто пропускается
+            productIdsByRecipe.get(recipe.getId()).stream()
+                    .map(products::get)
+                    .filter(Objects::nonNull)
+                    .forEach(recipeProducts::add);
+            recipe.setProducts(recipeProducts);
+        }
+    }
+
+    /**
+     * Сохраняет новый рецепт вместе со связями на следующем по кругу шарде.
+     *
+     * @param newRecipe  объект Recipe для сохранения
+     * @param productsId множество идентификаторов продуктов, связанных с рецептом
+     * @return сохраненный объект Recipe
+     * @throws RepositoryException если продукты не найдены или происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Recipe save(Recipe newRecipe, Set<Long> productsId) throws RepositoryException {
+        if (productsId == null || productsId.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+        }
+        // Внешнего ключа на product нет, поэтому существование продуктов проверяется явно
+        Map<Long, Product> products = productRepository.getByIds(productsId);
+        Set<Long> missing = new TreeSet<>(productsId);
+        missing.removeAll(products.keySet());
+        if (!missing.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Products not found: " + missing);
+        }
+        int shard = db.nextShard();
+        // Продукты лежат на других шардах, поэтому рецепт получает уже загруженные при проверке продукты
+        Recipe saved = db.onShard(shard, () -> shardRepositories.get(shard).save(newRecipe, productsId, false));
+        saved.setProducts(new HashSet<>(products.values()));
+        return saved;
+    }
+
+    /**
+     * Сохраняет несколько рецептов со связями одним пакетом на следующем по кругу шарде
+     * и догружает их продукты с шардов продуктов.
+     *
+     * @param newRecipes рецепты для сохранения
+     * @param productIds идентификаторы продуктов каждого рецепта в том же порядке, что и newRecipes
+     * @return сохраненные рецепты в порядке входного списка
+     * @throws RepositoryException если продукты не найдены или происходит ошибка при работе с базой данных
+     */
+    @Override
+    public List<Recipe> saveAll(List<Recipe> newRecipes, List<Set<Long>> productIds) throws RepositoryException {
+        Set<Long> allIds = new HashSet<>();
+        for (Set<Long> ids : productIds) {
+            if (ids == null || ids.isEmpty()) {
+                throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+            }
+            allIds.addAll(ids);
+        }
+        // Внешнего ключа на product нет, поэтому существование продуктов проверяется явно
+        Map<Long, Product> products = productRepository.getByIds(allIds);
+        Set<Long> missing = new TreeSet<>(allIds);
+        missing.removeAll(products.keySet());
+        if (!missing.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Products not found: " + missing);
+        }
+        int shard = db.nextShard();
+        List<Recipe> saved = db.onShard(shard, () -> shardRepositories.get(shard).saveAll(newRecipes, productIds, false));
+        for (int i = 0; i < saved.size(); i++) {
+            Set<Product> recipeProducts = new HashSet<>();
+            productIds.get(i).forEach(id -> recipeProducts.add(products.get(id)));
+            saved.get(i).setProducts(recipeProducts);
+        }
+        return saved;
+    }
+
+    /**
+     * Обновляет рецепт на его шарде и догружает продукты с их шардов.
+     * Обновление и чтение связей выполняются одним запросом на шарде рецепта.
+     *
+     * @param recipeUpdate объект Recipe с обновленными данными
+     * @return Optional с обновленным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Recipe> updateByEntity(Recipe recipeUpdate) throws RepositoryException {
+        return modifyOnShard(db.shardOf(recipeUpdate.getId()),
+                "UPDATE recipe SET name = ?, description = ? WHERE id = ? RETURNING id, name, description",
+                (conn, stm) -> {
+                    stm.setString(1, recipeUpdate.getName());
+                    stm.setString(2, recipeUpdate.getDescription());
+                    stm.setLong(3, recipeUpdate.getId());
+                });
+    }
+
+    /**
+     * Обновляет рецепт и его состав на шарде рецепта; связи изменяются по разнице с текущим составом.
+     * Существование продуктов проверяется на их шардах, они же становятся продуктами результата.
+     *
+     * @param recipeUpdate объект Recipe с обновленными данными
+     * @param productIds   новый состав рецепта; null - изменяются только название и описание
+     * @return Optional с обновленным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если состав пуст, продукты не найдены или происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Recipe> updateByEntity(Recipe recipeUpdate, Set<Long> productIds) throws RepositoryException {
+        if (productIds == null) {
+            return updateByEntity(recipeUpdate);
+        }
+        if (productIds.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Product list cannot be empty or equals null");
+        }
+        // Внешнего ключа на product нет, поэтому существование продуктов проверяется явно
+        Map<Long, Product> products = productRepository.getByIds(productIds);
+        Set<Long> missing = new TreeSet<>(productIds);
+        missing.removeAll(products.keySet());
+        if (!missing.isEmpty()) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE + " Products not found: " + missing);
+        }
+        int shard = db.shardOf(recipeUpdate.getId());
+        Optional<Recipe> updated = db.onShard(shard,
+                () -> shardRepositories.get(shard).updateByEntity(recipeUpdate, productIds, false));
+        updated.ifPresent(recipe -> recipe.setProducts(new HashSet<>(products.values())));
+        return updated;
+    }
+
+    /**
+     * Удаляет рецепт с его шарда; связи удаляются каскадно в пределах шарда.
+     * Связи читаются тем же запросом из снимка до удаления, продукты догружаются с их шардов.
+     *
+     * @param id идентификатор рецепта
+     * @return Optional с удаленным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public Optional<Recipe> deleteById(Long id) throws RepositoryException {
+        return modifyOnShard(db.shardOf(id), "DELETE FROM recipe WHERE id = ? RETURNING id, name, description",
+                (conn, stm) -> stm.setLong(1, id));
+    }
+
+    /**
+     * Выполняет изменяющий запрос с {@code RETURNING id, name, description} на шарде рецепта вместе с чтением
+     * связей рецепта и загружает его продукты.
+     *
+     * @param shard          номер шарда рецепта
+     * @param modifyingQuery запрос UPDATE или DELETE по таблице recipe
+     * @param binder         установка параметров запроса
+     * @return Optional с измененным рецептом или пустой Optional, если рецепт не найден
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    private Optional<Recipe> modifyOnShard(int shard, String modifyingQuery, StatementBinder binder) throws RepositoryException {
+        String query = "WITH r AS (" + modifyingQuery + ")"
+                + " SELECT r.id, r.name, r.description, rp.product_id"
+                + " FROM r LEFT JOIN recipe_product rp ON rp.recipe_id = r.id";
+        Map<Long, Set<Long>> productIdsByRecipe = new HashMap<>();
+        Recipe recipe;
+        try {
+            recipe = db.onShard(shard, () -> resilience.write(() -> {
+                productIdsByRecipe.clear();
+                try (Connection conn = db.createConnection();
+                     PreparedStatement stm = conn.prepareStatement(query)) {
+                    binder.bind(conn, stm);
+                    ResultSet resultSet = stm.executeQuery();
+                    Recipe found = null;
+                    while (resultSet.next()) {
+                        if (found == null) {
+                            found = modifiedRows.read(resultSet);
+                            productIdsByRecipe.put(found.getId(), new LinkedHashSet<>());
+                        }
+                        long productId = resultSet.getLong(modifiedLinkColumns.of(resultSet)[0]);
+                        if (!resultSet.wasNull()) {
+                            productIdsByRecipe.get(found.getId()).add(productId);
+                        }
+                    }
+                    return found;
+                }
+            }));
+        } catch (SQLException ex) {
+            throw new RepositoryException(ERROR_MESSAGE_DATA_BASE, ex);
+        }
+        if (recipe == null) {
+            return Optional.empty();
+        }
+        setProducts(List.of(recipe), productIdsByRecipe);
+        return Optional.of(recipe);
+    }
+
+    /**
+     * Передает все рецепты обработчику в порядке возрастания id.
+     *
+     * @param handler обработчик
+     * @return количество переданных записей
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать запись
+     */
+    @Override
+    public long exportAll(RowHandler<Recipe> handler) throws RepositoryException, IOException {
+        return exportRange(0, Long.MAX_VALUE, handler);
+    }
+
+    /**
+     * Передает обработчику рецепты из диапазона идентификаторов в порядке возрастания id.
+     * Один курсор не может охватить несколько баз, поэтому рецепты читаются страницами по ключу
+     * размером export_fetch_size, собранными со всех шардов; в памяти хранится одна страница.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик
+     * @return количество переданных записей
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     * @throws IOException         если обработчик не смог передать запись
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<Recipe> handler) throws RepositoryException, IOException {
+        long count = 0;
+        long afterId = fromId - 1;
+        while (true) {
+            List<Recipe> page = getPage(afterId, exportFetchSize);
+            for (Recipe row : page) {
+                if (row.getId() >= toId) {
+                    return count;
+                }
+                handler.handle(row);
+                count++;
+            }
+            if (page.size() < exportFetchSize) {
+                return count;
+            }
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов рецептов по всем шардам.
+     *
+     * @return диапазон [min(id), max(id) + 1) или null, если записей нет
+     * @throws RepositoryException если происходит ошибка при работе с базой данных
+     */
+    @Override
+    public IdRange getIdRange() throws RepositoryException {
+        IdRange result = null;
+        for (int shard = 0; shard < db.getShardCount(); shard++) {
+            RecipeRepositoryImp shardRepository = shardRepositories.get(shard);
+            IdRange range = db.onShard(shard, shardRepository::getIdRange);
+            if (range != null) {
+                result = result == null ? range : new IdRange(Math.min(result.fromId(), range.fromId()),
+                        Math.max(result.toId(), range.toId()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Установка параметров подготовленного запроса.
+     */
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(Connection conn, PreparedStatement stm) throws SQLException;
+    }
+}
@@ -0,0 +1,45 @@
+package service;
+
+import exception.ServiceException;
+import repository.IdRange;
+import repository.RowHandler;
+
+import java.io.IOException;
+
+/**
+ * Интерфейс ExportService определяет методы потоковой выгрузки коллекции.
+ *
+ * @param <T> тип DTO
+ */
+public interface ExportService<T> {
+
+    /**
+     * Передает все записи обработчику по одной, не загружая их в память целиком.
+     *
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка в сервисе
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    long export(RowHandler<T> handler) throws ServiceException, IOException;
+
+    /**
+     * Передает обработчику записи из диапазона идентификаторов [fromId, toId) в порядке возрастания id.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка в сервисе
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    long exportRange(long fromId, long toId, RowHandler<T> handler) throws ServiceException, IOException;
+
+    /**
+     * Возвращает диапазон, содержащий идентификаторы всех записей.
+     *
+     * @return диапазон идентификаторов или null, если записей нет
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    IdRange getIdRange() throws ServiceException;
+}
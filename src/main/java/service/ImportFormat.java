@@ -0,0 +1,42 @@
+package service;
+
+import java.util.Locale;
+
+/**
+ * Формат входных данных массового импорта.
+ */
+public enum ImportFormat {
+    /**
+     * CSV со столбцами name,price[,description]; первая строка может быть заголовком.
+     */
+    CSV("text/csv"),
+    /**
+     * Один JSON-объект на строку (NDJSON) с полями name, price, description.
+     */
+    NDJSON("application/x-ndjson");
+
+    private final String contentType;
+
+    ImportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * Определяет формат по заголовку Content-Type.
+     *
+     * @param contentType значение заголовка, возможно с параметрами (charset)
+     * @return формат или null, если тип не поддерживается
+     */
+    public static ImportFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        String mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        for (ImportFormat format : values()) {
+            if (format.contentType.equals(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -1,7 +1,45 @@
 package service;
 
+import dto.ImportReportDto;
+import dto.PageDto;
 import dto.product.ProductCreateDto;
 import dto.product.ProductDto;
+import exception.ServiceException;
 
-public interface ProductService extends Service<ProductDto, ProductCreateDto> {
+import java.io.IOException;
+import java.io.Reader;
+
+public interface ProductService extends Service<ProductDto, ProductCreateDto>, ExportService<ProductDto> {
+
+    /**
+     * Возвращает страницу продуктов с идентификатором больше afterId.
+     *
+     * @param afterId курсор - идентификатор последнего продукта предыдущей страницы (0 для первой страницы)
+     * @param limit   размер страницы
+     * @return страница продуктов и курсор следующей страницы
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    PageDto<ProductDto> getPage(long afterId, int limit) throws ServiceException;
+
+    /**
+     * Импортирует продукты из потока CSV или NDJSON одной операцией.
+     * Продукты с существующим именем обновляются; некорректные строки не прерывают импорт и попадают в отчет.
+     *
+     * @param reader входные данные
+     * @param format формат входных данных
+     * @return отчет об импорте
+     * @throws ServiceException если произошла ошибка в сервисе
+     * @throws IOException      если не удалось прочитать входные данные
+     */
+    ImportReportDto importProducts(Reader reader, ImportFormat format) throws ServiceException, IOException;
+
+    /**
+     * Создает продукт с заданным именем или обновляет цену и описание существующего одним запросом.
+     *
+     * @param name имя продукта
+     * @param dto  цена и описание продукта; имя из DTO не используется
+     * @return сохраненный продукт
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    ProductDto upsertByName(String name, ProductCreateDto dto) throws ServiceException;
 }
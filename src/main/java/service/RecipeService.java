@@ -1,7 +1,19 @@
 package service;
 
+import dto.PageDto;
 import dto.recipe.RecipeCreateDto;
 import dto.recipe.RecipeDto;
+import exception.ServiceException;
 
-public interface RecipeService extends Service<RecipeDto, RecipeCreateDto> {
+public interface RecipeService extends Service<RecipeDto, RecipeCreateDto>, ExportService<RecipeDto> {
+
+    /**
+     * Возвращает страницу рецептов с идентификатором больше afterId вместе с их продуктами.
+     *
+     * @param afterId курсор - идентификатор последнего рецепта предыдущей страницы (0 для первой страницы)
+     * @param limit   размер страницы
+     * @return страница рецептов и курсор следующей страницы
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    PageDto<RecipeDto> getPage(long afterId, int limit) throws ServiceException;
 }
@@ -1,8 +1,11 @@
 package service;
 
+import dto.BatchGetDto;
 import exception.ElementNotFoundException;
 import exception.ServiceException;
 
+import java.util.List;
+
 /**
  * Интерфейс Service определяет основные методы для работы с сущностями.
  *
@@ -21,6 +24,15 @@ public interface Service<T, C> {
      */
     T getById(Long id) throws ElementNotFoundException, ServiceException;
 
+    /**
+     * Возвращает сущности по набору идентификаторов за одно обращение к репозиторию.
+     *
+     * @param ids идентификаторы сущностей; повторы игнорируются
+     * @return найденные сущности в порядке идентификаторов и список ненайденных идентификаторов
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    BatchGetDto<T> getByIds(List<Long> ids) throws ServiceException;
+
     /**
      * Сохраняет новую сущность.
      *
@@ -30,6 +42,15 @@ public interface Service<T, C> {
      */
     T save(C dto) throws ServiceException;
 
+    /**
+     * Сохраняет несколько новых сущностей в одной транзакции.
+     *
+     * @param dtos объекты DTO для создания новых сущностей
+     * @return сохраненные сущности в порядке входного списка
+     * @throws ServiceException если произошла ошибка в сервисе; в этом случае не сохраняется ни одна сущность
+     */
+    List<T> saveAll(List<C> dtos) throws ServiceException;
+
     /**
      * Обновляет существующую сущность.
      *
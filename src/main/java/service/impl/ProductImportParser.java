@@ -0,0 +1,180 @@
+package service.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dto.ImportRejectDto;
+import dto.product.ProductCreateDto;
+import dto.product.ProductDto;
+import entity.Product;
+import mapper.Mapper;
+import mapper.impl.ProductMapperImpl;
+import repository.ImportRow;
+import repository.RowHandler;
+import service.ImportFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Построчный разбор входных данных импорта продуктов.
+ * Строка, которую не удалось разобрать или которая не проходит проверку, не прерывает импорт,
+ * а попадает в список отклоненных с номером строки и причиной.
+ */
+class ProductImportParser {
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final int MAX_DESCRIPTION_LENGTH = 255;
+
+    private final Gson gson = new Gson();
+    private final Mapper<ProductDto, ProductCreateDto, Product> mapper = new ProductMapperImpl();
+    private final ImportFormat format;
+    private final int maxRejects;
+    private final List<ImportRejectDto> rejects = new ArrayList<>();
+    private long received;
+    private long rejected;
+
+    /**
+     * @param format     формат входных данных
+     * @param maxRejects сколько отклоненных строк сохранять для отчета
+     */
+    ProductImportParser(ImportFormat format, int maxRejects) {
+        this.format = format;
+        this.maxRejects = maxRejects;
+    }
+
+    /**
+     * Читает входные данные и передает обработчику корректные продукты.
+     *
+     * @param reader  входные данные
+     * @param handler обработчик продуктов с номерами строк
+     * @throws IOException если не удалось прочитать данные или передать продукт
+     */
+    void parse(Reader reader, RowHandler<ImportRow<Product>> handler) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        long lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && isCsvHeader(line))) {
+                continue;
+            }
+            received++;
+            Product product;
+            try {
+                product = mapper.fromCreateDtoToEntity(validate(format == ImportFormat.CSV ? fromCsv(line) : fromJson(line)));
+            } catch (IllegalArgumentException | JsonParseException ex) {
+                reject(lineNumber, ex.getMessage());
+                continue;
+            }
+            handler.handle(new ImportRow<>(lineNumber, product));
+        }
+    }
+
+    /**
+     * Добавляет строку в отчет об отклоненных.
+     *
+     * @param line   номер строки
+     * @param reason причина
+     */
+    void reject(long line, String reason) {
+        rejected++;
+        if (rejects.size() < maxRejects) {
+            rejects.add(new ImportRejectDto(line, reason));
+        }
+    }
+
+    long getReceived() {
+        return received;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    List<ImportRejectDto> getRejects() {
+        return rejects;
+    }
+
+    private boolean isCsvHeader(String line) {
+        return format == ImportFormat.CSV && line.trim().toLowerCase(Locale.ROOT).startsWith("name,");
+    }
+
+    private ProductCreateDto fromJson(String line) {
+        ProductCreateDto dto = gson.fromJson(line, ProductCreateDto.class);
+        if (dto == null) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return dto;
+    }
+
+    private static ProductCreateDto fromCsv(String line) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected columns: name,price[,description]");
+        }
+        ProductCreateDto dto = new ProductCreateDto();
+        dto.setName(fields.get(0));
+        String price = fields.get(1).trim();
+        try {
+            dto.setPrice(price.isEmpty() ? null : Integer.valueOf(price));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Price must be an integer: " + price);
+        }
+        dto.setDescription(fields.size() == 3 && !fields.get(2).isEmpty() ? fields.get(2) : null);
+        return dto;
+    }
+
+    private static ProductCreateDto validate(ProductCreateDto dto) {
+        if (dto.getName() == null || dto.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (dto.getName().length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name is longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        if (dto.getDescription() != null && dto.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            throw new IllegalArgumentException("Description is longer than " + MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        return dto;
+    }
+
+    /**
+     * Разбивает строку CSV на поля. Поле в кавычках может содержать запятые, кавычка внутри удваивается.
+     *
+     * @param line строка CSV
+     * @return значения полей
+     * @throws IllegalArgumentException если кавычки не закрыты
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,6 +1,10 @@
 package service.impl;
 
 import config.ConfigUtil;
+import dto.ImportRejectDto;
+import dto.ImportReportDto;
+import dto.BatchGetDto;
+import dto.PageDto;
 import dto.product.ProductCreateDto;
 import dto.product.ProductDto;
 import entity.Product;
@@ -9,19 +13,32 @@ import exception.RepositoryException;
 import exception.ServiceException;
 import mapper.Mapper;
 import mapper.impl.ProductMapperImpl;
-import repository.CrudRepository;
-import repository.impl.ProductRepositoryImp;
+import repository.IdRange;
+import repository.ImportResult;
+import repository.ProductRepository;
+import repository.RowHandler;
+import repository.impl.BatchLoader;
+import service.ImportFormat;
 import service.ProductService;
 import service.Service;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Реализация интерфейса Service для работы с продуктами.
  */
 public class ProductServiceImpl implements ProductService {
-    private final CrudRepository<Product> repositoryImp;
+    private final ProductRepository repositoryImp;
+    private final BatchLoader<Product> batchLoader;
     private final Mapper<ProductDto, ProductCreateDto, Product> mapper = new ProductMapperImpl();
+    private final int maxImportRejects = ConfigUtil.getIntProperty("import_max_rejects", 1000);
     private final String ERROR_MESSAGE_NOT_FOUND = ConfigUtil.getProperty("ERROR_MESSAGE_NOT_FOUND");
 
     /**
@@ -29,8 +46,19 @@ public class ProductServiceImpl implements ProductService {
      *
      * @param repositoryImp репозиторий продуктов для взаимодействия с базой данных или другим источником данных
      */
-    public ProductServiceImpl(ProductRepositoryImp repositoryImp) {
+    public ProductServiceImpl(ProductRepository repositoryImp) {
+        this(repositoryImp, null);
+    }
+
+    /**
+     * Конструктор с объединением одновременных чтений по идентификатору в пачки.
+     *
+     * @param repositoryImp репозиторий продуктов
+     * @param batchLoader   объединение чтений по идентификатору или null, чтобы читать каждый продукт отдельно
+     */
+    public ProductServiceImpl(ProductRepository repositoryImp, BatchLoader<Product> batchLoader) {
         this.repositoryImp = repositoryImp;
+        this.batchLoader = batchLoader;
     }
 
     /**
@@ -44,7 +72,7 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public ProductDto getById(Long id) throws ElementNotFoundException, ServiceException {
         try {
-            Optional<Product> productOptional = repositoryImp.getById(id);
+            Optional<Product> productOptional = batchLoader != null ? batchLoader.getById(id) : repositoryImp.getById(id);
             Product product = productOptional.orElseThrow(() -> {
                 String msg = ERROR_MESSAGE_NOT_FOUND.formatted(id);
                 return new ElementNotFoundException(msg);
@@ -55,6 +83,33 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * Возвращает продукты по набору идентификаторов одним обращением к репозиторию.
+     *
+     * @param ids идентификаторы; повторы игнорируются
+     * @return найденные DTO в порядке идентификаторов и ненайденные идентификаторы
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public BatchGetDto<ProductDto> getByIds(List<Long> ids) throws ServiceException {
+        try {
+            Map<Long, Product> found = repositoryImp.getByIds(ids);
+            List<ProductDto> items = new ArrayList<>();
+            List<Long> missing = new ArrayList<>();
+            for (Long id : new LinkedHashSet<>(ids)) {
+                Product product = found.get(id);
+                if (product == null) {
+                    missing.add(id);
+                } else {
+                    items.add(mapper.fromEntityToResponseDto(product));
+                }
+            }
+            return new BatchGetDto<>(items, missing);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Сохраняет новый продукт.
      *
@@ -73,6 +128,42 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * Сохраняет несколько новых продуктов одним пакетом.
+     *
+     * @param dtos DTO для создания продуктов
+     * @return сохраненные DTO продуктов в порядке входного списка
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public List<ProductDto> saveAll(List<ProductCreateDto> dtos) throws ServiceException {
+        try {
+            List<Product> products = dtos.stream().map(mapper::fromCreateDtoToEntity).toList();
+            return repositoryImp.saveAll(products).stream().map(mapper::fromEntityToResponseDto).toList();
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Создает продукт с заданным именем или обновляет существующий без предварительного чтения.
+     *
+     * @param name имя продукта
+     * @param dto  цена и описание продукта
+     * @return сохраненный DTO продукта
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public ProductDto upsertByName(String name, ProductCreateDto dto) throws ServiceException {
+        try {
+            Product product = mapper.fromCreateDtoToEntity(dto);
+            product.setName(name);
+            return mapper.fromEntityToResponseDto(repositoryImp.upsert(product));
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Обновляет информацию о продукте по новому DTO.
      *
@@ -85,8 +176,9 @@ public class ProductServiceImpl implements ProductService {
     public ProductDto updateByEntity(ProductDto newEntity) throws ElementNotFoundException, ServiceException {
         try {
             Product newProduct = mapper.fromResponseDtoToEntity(newEntity);
-            getById(newEntity.getId()); // Проверяем, существует ли продукт с данным id
-            Product updatedProduct = repositoryImp.updateByEntity(newProduct);
+            // Отсутствие продукта определяется по пустому результату UPDATE ... RETURNING
+            Product updatedProduct = repositoryImp.updateByEntity(newProduct)
+                    .orElseThrow(() -> new ElementNotFoundException(ERROR_MESSAGE_NOT_FOUND.formatted(newEntity.getId())));
             return mapper.fromEntityToResponseDto(updatedProduct);
         } catch (RepositoryException ex) {
             throw new ServiceException(ex.getMessage(), ex);
@@ -104,11 +196,116 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public ProductDto deleteById(Long id) throws ElementNotFoundException, ServiceException {
         try {
-            ProductDto productDTO = getById(id); // Получаем продукт для возврата его DTO
-            repositoryImp.deleteById(id); // Удаляем продукт из репозитория
-            return productDTO;
+            // Удаленный продукт возвращается тем же запросом DELETE ... RETURNING
+            Product deleted = repositoryImp.deleteById(id)
+                    .orElseThrow(() -> new ElementNotFoundException(ERROR_MESSAGE_NOT_FOUND.formatted(id)));
+            return mapper.fromEntityToResponseDto(deleted);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Возвращает страницу продуктов после заданного курсора.
+     * Из репозитория запрашивается на один продукт больше, чтобы узнать, есть ли следующая страница.
+     *
+     * @param afterId идентификатор последнего продукта предыдущей страницы
+     * @param limit   размер страницы
+     * @return страница продуктов; nextCursor равен null на последней странице
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public PageDto<ProductDto> getPage(long afterId, int limit) throws ServiceException {
+        try {
+            List<Product> products = repositoryImp.getPage(afterId, limit + 1);
+            boolean hasMore = products.size() > limit;
+            List<ProductDto> items = products.stream()
+                    .limit(limit)
+                    .map(mapper::fromEntityToResponseDto)
+                    .toList();
+            Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+            return new PageDto<>(items, nextCursor);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Передает все продукты обработчику: каждая сущность преобразуется в DTO сразу после чтения.
+     *
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    @Override
+    public long export(RowHandler<ProductDto> handler) throws ServiceException, IOException {
+        try {
+            return repositoryImp.exportAll(entity -> handler.handle(mapper.fromEntityToResponseDto(entity)));
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Передает обработчику продукты из диапазона идентификаторов, преобразуя каждую сущность в DTO сразу после чтения.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<ProductDto> handler) throws ServiceException, IOException {
+        try {
+            return repositoryImp.exportRange(fromId, toId, entity -> handler.handle(mapper.fromEntityToResponseDto(entity)));
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов для разбиения выгрузки на части.
+     *
+     * @return диапазон идентификаторов или null, если записей нет
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public IdRange getIdRange() throws ServiceException {
+        try {
+            return repositoryImp.getIdRange();
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Импортирует продукты: строки разбираются по мере чтения и передаются в репозиторий одной операцией.
+     * Строки, вытесненные более поздней строкой с тем же именем, тоже попадают в отчет об отклоненных.
+     *
+     * @param reader входные данные
+     * @param format формат входных данных
+     * @return отчет об импорте
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     * @throws IOException      если не удалось прочитать входные данные
+     */
+    @Override
+    public ImportReportDto importProducts(Reader reader, ImportFormat format) throws ServiceException, IOException {
+        ProductImportParser parser = new ProductImportParser(format, maxImportRejects);
+        ImportResult result;
+        try {
+            result = repositoryImp.importAll(handler -> parser.parse(reader, handler), maxImportRejects);
         } catch (RepositoryException ex) {
             throw new ServiceException(ex.getMessage(), ex);
         }
+        List<ImportRejectDto> rejects = new ArrayList<>(parser.getRejects());
+        result.duplicateLines().forEach(line ->
+                rejects.add(new ImportRejectDto(line, "Superseded by a later line with the same name")));
+        rejects.sort(Comparator.comparingLong(ImportRejectDto::getLine));
+        return new ImportReportDto(parser.getReceived(), result.inserted(), result.updated(),
+                parser.getRejected() + result.duplicates(),
+                new ArrayList<>(rejects.subList(0, Math.min(rejects.size(), maxImportRejects))));
     }
 }
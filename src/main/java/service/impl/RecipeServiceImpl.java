@@ -1,26 +1,37 @@
 package service.impl;
 
 import config.ConfigUtil;
+import dto.BatchGetDto;
+import dto.PageDto;
 import dto.recipe.RecipeCreateDto;
 import dto.recipe.RecipeDto;
+import dto.recipe.RecipeUpdateDto;
 import entity.Recipe;
 import exception.ElementNotFoundException;
 import exception.RepositoryException;
 import exception.ServiceException;
 import mapper.Mapper;
 import mapper.impl.RecipeMapperImpl;
-import repository.RecipeRepositorySave;
-import repository.impl.RecipeRepositoryImp;
+import repository.IdRange;
+import repository.RecipeRepository;
+import repository.RowHandler;
+import repository.impl.BatchLoader;
 import service.RecipeService;
 
-import java.sql.SQLException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Реализация интерфейса Service для работы с рецептами.
  */
 public class RecipeServiceImpl implements RecipeService {
-    private final RecipeRepositorySave<Recipe> repository;
+    private final RecipeRepository repository;
+    private final BatchLoader<Recipe> batchLoader;
     private final String ERROR_MESSAGE_NOT_FOUND = ConfigUtil.getProperty("ERROR_MESSAGE_NOT_FOUND");
     private final Mapper<RecipeDto, RecipeCreateDto, Recipe> mapper = new RecipeMapperImpl();
 
@@ -29,8 +40,19 @@ public class RecipeServiceImpl implements RecipeService {
      *
      * @param repository репозиторий рецептов для взаимодействия с базой данных или другим источником данных
      */
-    public RecipeServiceImpl(RecipeRepositoryImp repository) {
+    public RecipeServiceImpl(RecipeRepository repository) {
+        this(repository, null);
+    }
+
+    /**
+     * Конструктор с объединением одновременных чтений по идентификатору в пачки.
+     *
+     * @param repository  репозиторий рецептов
+     * @param batchLoader объединение чтений по идентификатору или null, чтобы читать каждый рецепт отдельно
+     */
+    public RecipeServiceImpl(RecipeRepository repository, BatchLoader<Recipe> batchLoader) {
         this.repository = repository;
+        this.batchLoader = batchLoader;
     }
 
     /**
@@ -45,7 +67,7 @@ public class RecipeServiceImpl implements RecipeService {
     public RecipeDto getById(Long id) throws ElementNotFoundException, ServiceException {
         try {
             // Получаем Optional Рецептов
-            Optional<Recipe> recipeOptional = repository.getById(id);
+            Optional<Recipe> recipeOptional = batchLoader != null ? batchLoader.getById(id) : repository.getById(id);
             // Извлекаем значение
             // Если его нет выбраосить исключение
             Recipe recipe = recipeOptional.orElseThrow(() -> {
@@ -59,6 +81,33 @@ public class RecipeServiceImpl implements RecipeService {
         }
     }
 
+    /**
+     * Возвращает рецепты по набору идентификаторов одним обращением к репозиторию.
+     *
+     * @param ids идентификаторы; повторы игнорируются
+     * @return найденные DTO в порядке идентификаторов и ненайденные идентификаторы
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public BatchGetDto<RecipeDto> getByIds(List<Long> ids) throws ServiceException {
+        try {
+            Map<Long, Recipe> found = repository.getByIds(ids);
+            List<RecipeDto> items = new ArrayList<>();
+            List<Long> missing = new ArrayList<>();
+            for (Long id : new LinkedHashSet<>(ids)) {
+                Recipe recipe = found.get(id);
+                if (recipe == null) {
+                    missing.add(id);
+                } else {
+                    items.add(mapper.fromEntityToResponseDto(recipe));
+                }
+            }
+            return new BatchGetDto<>(items, missing);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
     /**
      * Сохраняет новый рецепт.
      *
@@ -71,17 +120,36 @@ public class RecipeServiceImpl implements RecipeService {
         try {
             // Маппим в сущность
             Recipe recipeToSave = mapper.fromCreateDtoToEntity(dto);
-            // Сохраняем и получаем результат
+            // Сохраняем и получаем рецепт со всеми продуктами тем же запросом
             Recipe recipe = repository.save(recipeToSave, dto.getProducts());
-            // Возращаем сохраненное значение со всеми продуктами
-            return getById(recipe.getId());
-        } catch (SQLException | RepositoryException ex) {
+            return mapper.fromEntityToResponseDto(recipe);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Сохраняет несколько новых рецептов вместе с их продуктами одним пакетом.
+     *
+     * @param dtos DTO для создания рецептов
+     * @return сохраненные DTO рецептов со всеми продуктами в порядке входного списка
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public List<RecipeDto> saveAll(List<RecipeCreateDto> dtos) throws ServiceException {
+        try {
+            List<Recipe> recipes = dtos.stream().map(mapper::fromCreateDtoToEntity).toList();
+            List<Set<Long>> productIds = dtos.stream().map(RecipeCreateDto::getProducts).toList();
+            // Репозиторий возвращает рецепты уже с продуктами, повторное чтение не нужно
+            return repository.saveAll(recipes, productIds).stream().map(mapper::fromEntityToResponseDto).toList();
+        } catch (RepositoryException ex) {
             throw new ServiceException(ex.getMessage(), ex);
         }
     }
 
     /**
      * Обновляет информацию о рецепте по новому DTO.
+     * Если передан RecipeUpdateDto с productIds, состав рецепта заменяется этим набором продуктов.
      *
      * @param newEntity новый DTO рецепта
      * @return обновленный DTO рецепта
@@ -91,18 +159,14 @@ public class RecipeServiceImpl implements RecipeService {
     @Override
     public RecipeDto updateByEntity(RecipeDto newEntity) throws ServiceException {
         try {
-            // Проверяем, существует ли рецепт с данным id
-            // Сохраним в переменную для возрата этого объекта
-            RecipeDto recipeToResponse = getById(newEntity.getId());
             // Маппип в сущность
             Recipe recipeToUpdate = mapper.fromResponseDtoToEntity(newEntity);
-            // Производим обновление
-            repository.updateByEntity(recipeToUpdate);
-            // Устанавливаем обновленные значение в нашу полученую сущность
-            recipeToResponse.setName(recipeToUpdate.getName());
-            recipeToResponse.setDescription(recipeToUpdate.getDescription());
-            // Возращаем
-            return recipeToResponse;
+            // Обновляем рецепт и, если передан новый состав, связи с продуктами по разнице с текущими;
+            // пустой результат - рецепт не найден
+            Set<Long> productIds = newEntity instanceof RecipeUpdateDto update ? update.getProductIds() : null;
+            Recipe updated = repository.updateByEntity(recipeToUpdate, productIds)
+                    .orElseThrow(() -> new ElementNotFoundException(ERROR_MESSAGE_NOT_FOUND.formatted(newEntity.getId())));
+            return mapper.fromEntityToResponseDto(updated);
         } catch (RepositoryException ex) {
             throw new ServiceException(ex.getMessage(), ex);
         }
@@ -119,9 +183,86 @@ public class RecipeServiceImpl implements RecipeService {
     @Override
     public RecipeDto deleteById(Long id) throws ServiceException {
         try {
-            RecipeDto recipe = getById(id); // Получаем рецепт для возврата его DTO
-            repository.deleteById(id); // Удаляем рецепт из репозитория
-            return recipe;
+            // Удаленный рецепт с продуктами возвращается тем же запросом
+            Recipe deleted = repository.deleteById(id)
+                    .orElseThrow(() -> new ElementNotFoundException(ERROR_MESSAGE_NOT_FOUND.formatted(id)));
+            return mapper.fromEntityToResponseDto(deleted);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Возвращает страницу рецептов с идентификатором больше afterId.
+     * Из репозитория запрашивается на один рецепт больше, чтобы определить наличие следующей страницы.
+     *
+     * @param afterId курсор - идентификатор последнего рецепта предыдущей страницы
+     * @param limit   размер страницы
+     * @return страница рецептов и курсор следующей страницы (null, если страница последняя)
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public PageDto<RecipeDto> getPage(long afterId, int limit) throws ServiceException {
+        try {
+            List<Recipe> recipes = repository.getPage(afterId, limit + 1);
+            boolean hasMore = recipes.size() > limit;
+            List<RecipeDto> items = recipes.stream()
+                    .limit(limit)
+                    .map(mapper::fromEntityToResponseDto)
+                    .toList();
+            Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+            return new PageDto<>(items, nextCursor);
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Передает все рецепты обработчику: каждая сущность преобразуется в DTO сразу после чтения.
+     *
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    @Override
+    public long export(RowHandler<RecipeDto> handler) throws ServiceException, IOException {
+        try {
+            return repository.exportAll(entity -> handler.handle(mapper.fromEntityToResponseDto(entity)));
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Передает обработчику рецепты из диапазона идентификаторов, преобразуя каждую сущность в DTO сразу после чтения.
+     *
+     * @param fromId  первый идентификатор диапазона
+     * @param toId    идентификатор, следующий за последним
+     * @param handler обработчик DTO
+     * @return количество переданных записей
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     * @throws IOException      если обработчик не смог передать запись
+     */
+    @Override
+    public long exportRange(long fromId, long toId, RowHandler<RecipeDto> handler) throws ServiceException, IOException {
+        try {
+            return repository.exportRange(fromId, toId, entity -> handler.handle(mapper.fromEntityToResponseDto(entity)));
+        } catch (RepositoryException ex) {
+            throw new ServiceException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Возвращает диапазон идентификаторов для разбиения выгрузки на части.
+     *
+     * @return диапазон идентификаторов или null, если записей нет
+     * @throws ServiceException если произошла ошибка на уровне сервиса
+     */
+    @Override
+    public IdRange getIdRange() throws ServiceException {
+        try {
+            return repository.getIdRange();
         } catch (RepositoryException ex) {
             throw new ServiceException(ex.getMessage(), ex);
         }
@@ -3,17 +3,30 @@ package servlet;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import config.ConfigUtil;
+import db.DbExecutor;
+import dto.ImportReportDto;
+import dto.PageDto;
+import exception.HttpBadRequestException;
 import exception.HttpMediaTypeException;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import service.ExportService;
 import service.Service;
+import servlet.util.ExportOutput;
+import servlet.util.PartitionedExport;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
 
 import static servlet.util.ApiUtils.isCorrectContentTypeForPost;
@@ -26,7 +39,17 @@ import static servlet.util.ApiUtils.splitPathInfo;
  * @param <C> тип DTO запроса
  */
 public abstract class BaseServlet<T, C> extends HttpServlet {
+    private static final String EXPORT_PATH = "/export";
+    private static final String IMPORT_PATH = "/import";
+    private static final String BULK_PATH = "/bulk";
+    private static final String BY_NAME_PATH = "/by-name/";
     private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final int defaultPageLimit = ConfigUtil.getIntProperty("page_default_limit", 50);
+    private final int maxPageLimit = ConfigUtil.getIntProperty("page_max_limit", 1000);
+    private final int exportFlushRows = ConfigUtil.getIntProperty("export_flush_rows", 500);
+    private final int maxExportPartitions = ConfigUtil.getIntProperty("export_max_partitions", 8);
+    private final int maxBulkItems = ConfigUtil.getIntProperty("bulk_max_items", 1000);
+    private PartitionedExport partitionedExport;
     protected Service<T, C> service;
 
     /**
@@ -43,6 +66,16 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
      */
     protected abstract Class<C> getTypeC();
 
+    /**
+     * Возвращает класс тела запроса PUT. По умолчанию совпадает с типом T;
+     * переопределяется, если запрос на обновление содержит поля, которых нет в ответе.
+     *
+     * @return класс тела запроса на обновление
+     */
+    protected Class<? extends T> getTypeUpdate() {
+        return getTypeT();
+    }
+
     /**
      * Инициализация сервлета.
      *
@@ -52,6 +85,11 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
+        // Исполнитель для параллельной выгрузки частями
+        DbExecutor executor = (DbExecutor) getServletContext().getAttribute("dbExecutor");
+        if (executor != null) {
+            partitionedExport = new PartitionedExport(executor);
+        }
     }
 
     /**
@@ -64,6 +102,26 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException {
         try {
+            // Выгрузка всей коллекции построчно в формате NDJSON
+            if (EXPORT_PATH.equals(request.getPathInfo())) {
+                sendExportResponse(request, response);
+                return;
+            }
+            // Запрос коллекции с параметрами after/limit возвращает страницу сущностей
+            if (isPageRequest(request)) {
+                long afterId = parseLongParameter(request, "after", 0);
+                long limit = parseLongParameter(request, "limit", defaultPageLimit);
+                if (afterId < 0 || limit < 1 || limit > maxPageLimit) {
+                    throw new HttpBadRequestException("Parameter 'after' must be >= 0 and 'limit' between 1 and " + maxPageLimit);
+                }
+                sendJsonResponse(response, getPage(afterId, (int) limit));
+                return;
+            }
+            // Запрос коллекции с параметром ids возвращает найденные сущности и ненайденные id
+            if (isCollectionPath(request) && request.getParameter("ids") != null) {
+                sendJsonResponse(response, service.getByIds(parseIds(request.getParameter("ids"))));
+                return;
+            }
             String path = splitPathInfo(request);
             Long id = Long.parseLong(path);
             T dto = service.getById(id);
@@ -83,10 +141,27 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
      */
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        // Массовый импорт принимает собственные форматы (CSV, NDJSON)
+        if (IMPORT_PATH.equals(request.getPathInfo())) {
+            try {
+                sendJsonResponse(response, importData(request));
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+            return;
+        }
         if (!isCorrectContentTypeForPost(request)) { // Проверка, поддерживается ли тип содержимого запроса
             String errorMessage = String.format("Content type: %s not supported for PUT method", request.getContentType());
             throw new ServletException(new HttpMediaTypeException(errorMessage));
         }
+        if (BULK_PATH.equals(request.getPathInfo())) {
+            try {
+                sendJsonResponse(response, service.saveAll(readBulk(request)));
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+            return;
+        }
         try {
             C dtoCreate = convertJsonToDTO(request, getTypeC()); // Преобразование JSON-запроса в DTO
             T dto = service.save(dtoCreate);
@@ -110,7 +185,17 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
             throw new ServletException(new HttpMediaTypeException(errorMessage));
         }
         try {
-            T dto = convertJsonToDTO(request, getTypeT()); // Преобразование JSON-запроса в DTO
+            // Вставка или обновление по имени одним запросом, без предварительного чтения
+            String pathInfo = request.getPathInfo();
+            if (pathInfo != null && pathInfo.startsWith(BY_NAME_PATH)) {
+                String name = pathInfo.substring(BY_NAME_PATH.length());
+                if (name.isBlank()) {
+                    throw new HttpBadRequestException("Name must not be empty");
+                }
+                sendJsonResponse(response, upsertByName(name, convertJsonToDTO(request, getTypeC())));
+                return;
+            }
+            T dto = convertJsonToDTO(request, getTypeUpdate()); // Преобразование JSON-запроса в DTO
             T updateDto = service.updateByEntity(dto);
             sendJsonResponse(response, updateDto); // Отправка JSON-ответа
         } catch (Exception e) {
@@ -137,6 +222,150 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
         }
     }
 
+    /**
+     * Возвращает страницу сущностей после заданного курсора.
+     * Ресурсы, поддерживающие постраничное чтение, переопределяют этот метод.
+     *
+     * @param afterId идентификатор последней сущности предыдущей страницы
+     * @param limit   размер страницы
+     * @return страница сущностей
+     * @throws Exception если произошла ошибка при получении страницы
+     */
+    protected PageDto<T> getPage(long afterId, int limit) throws Exception {
+        throw new HttpBadRequestException("Listing is not supported for this resource");
+    }
+
+    /**
+     * Создает сущность с заданным именем или обновляет существующую: PUT .../by-name/{name}.
+     * Ресурсы, поддерживающие вставку или обновление по имени, переопределяют этот метод.
+     *
+     * @param name имя сущности из пути запроса
+     * @param dto  данные сущности из тела запроса
+     * @return сохраненная сущность
+     * @throws Exception если произошла ошибка при сохранении
+     */
+    protected T upsertByName(String name, C dto) throws Exception {
+        throw new HttpBadRequestException("Upsert by name is not supported for this resource");
+    }
+
+    /**
+     * Импортирует коллекцию из тела запроса: POST .../import.
+     * Ресурсы, поддерживающие импорт, переопределяют этот метод.
+     *
+     * @param request HTTP-запрос с потоком входных данных
+     * @return отчет об импорте
+     * @throws Exception если произошла ошибка при импорте
+     */
+    protected ImportReportDto importData(HttpServletRequest request) throws Exception {
+        throw new HttpBadRequestException("Import is not supported for this resource");
+    }
+
+    /**
+     * Возвращает сервис выгрузки коллекции.
+     * Ресурсы, поддерживающие выгрузку, переопределяют этот метод.
+     *
+     * @return сервис выгрузки или null, если выгрузка не поддерживается
+     */
+    protected ExportService<T> getExportService() {
+        return null;
+    }
+
+    /**
+     * Выгружает коллекцию в формате NDJSON (один JSON-объект на строку) прямо в поток ответа.
+     * <p>
+     * По умолчанию коллекция читается одним курсором: первая строка и затем каждые export_flush_rows строк
+     * сбрасываются клиенту, чтобы он мог начать обработку сразу; если клиент отключился, выгрузка прерывается
+     * и курсор в БД закрывается. С параметром partitions=N (не больше export_max_partitions) коллекция
+     * читается N курсорами параллельно ({@link PartitionedExport}).
+     * </p>
+     *
+     * @param request  HTTP-запрос
+     * @param response HTTP-ответ
+     * @throws Exception если произошла ошибка при выгрузке
+     */
+    private void sendExportResponse(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        ExportService<T> exportService = getExportService();
+        if (exportService == null) {
+            throw new HttpBadRequestException("Export is not supported for this resource");
+        }
+        long partitions = parseLongParameter(request, "partitions", 1);
+        if (partitions < 1 || partitions > maxExportPartitions) {
+            throw new HttpBadRequestException("Parameter 'partitions' must be between 1 and " + maxExportPartitions);
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        if (partitions > 1 && partitionedExport != null) {
+            partitionedExport.export(exportService, (int) partitions, gson::toJson, writer);
+        } else {
+            long[] written = {0};
+            exportService.export(dto -> {
+                long rows = ++written[0];
+                ExportOutput.write(writer, out -> {
+                    out.write(gson.toJson(dto));
+                    out.write('\n');
+                }, rows == 1 || rows % exportFlushRows == 0, () -> rows + " строк");
+            });
+        }
+        writer.flush();
+    }
+
+    /**
+     * Проверяет, запрошена ли страница коллекции: путь без идентификатора и задан параметр after или limit.
+     */
+    private boolean isPageRequest(HttpServletRequest request) {
+        return isCollectionPath(request) && (request.getParameter("after") != null || request.getParameter("limit") != null);
+    }
+
+    /**
+     * Проверяет, что запрос адресован коллекции, а не отдельной сущности.
+     */
+    private boolean isCollectionPath(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return pathInfo == null || pathInfo.equals("/");
+    }
+
+    /**
+     * Разбирает список идентификаторов, перечисленных через запятую.
+     *
+     * @throws HttpBadRequestException если список пуст, длиннее page_max_limit или содержит не число
+     */
+    private List<Long> parseIds(String value) {
+        List<Long> ids = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            try {
+                ids.add(Long.parseLong(part.trim()));
+            } catch (NumberFormatException ex) {
+                throw new HttpBadRequestException("Parameter 'ids' must be a comma-separated list of numbers");
+            }
+        }
+        if (ids.isEmpty() || ids.size() > maxPageLimit) {
+            throw new HttpBadRequestException("Parameter 'ids' must contain between 1 and " + maxPageLimit + " ids");
+        }
+        return ids;
+    }
+
+    /**
+     * Читает числовой параметр запроса.
+     *
+     * @throws HttpBadRequestException если параметр не является числом
+     */
+    private long parseLongParameter(HttpServletRequest request, String name, long defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new HttpBadRequestException("Parameter '" + name + "' must be a number");
+        }
+    }
+
     /**
      * Устанавливает сервис для сервлета.
      *
@@ -153,7 +382,7 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
      * @param dto      объект DTO для отправки
      * @throws IOException если произошла ошибка ввода-вывода
      */
-    private void sendJsonResponse(HttpServletResponse response, T dto) throws IOException {
+    private void sendJsonResponse(HttpServletResponse response, Object dto) throws IOException {
         // Установка заголовка и типа ответа
         response.setStatus(HttpServletResponse.SC_OK);
         response.setContentType("application/json");
@@ -168,12 +397,12 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
      * Преобразует JSON-запрос в объект DTO.
      *
      * @param request   HTTP-запрос
-     * @param typeClass класс типа DTO
+     * @param typeClass тип DTO (класс или параметризованный тип)
      * @param <E>       тип DTO
      * @return объект DTO
      * @throws ServletException если произошла ошибка при преобразовании
      */
-    private <E> E convertJsonToDTO(HttpServletRequest request, Class<E> typeClass) throws ServletException {
+    private <E> E convertJsonToDTO(HttpServletRequest request, Type typeClass) throws ServletException {
         try (Scanner scanner = new Scanner(request.getInputStream(), StandardCharsets.UTF_8)) {
             String jsonData = scanner.useDelimiter("\\A").next(); // Чтение всего содержимого запроса в строку
             return gson.fromJson(jsonData, typeClass); // Преобразование строки JSON в объект DTO
@@ -182,4 +411,25 @@ public abstract class BaseServlet<T, C> extends HttpServlet {
         }
     }
 
+    /**
+     * Читает JSON-массив DTO для массового создания и проверяет его размер.
+     *
+     * @param request HTTP-запрос
+     * @return DTO в порядке массива
+     * @throws ServletException        если тело запроса не является JSON-массивом
+     * @throws HttpBadRequestException если массив пуст, содержит null или длиннее bulk_max_items
+     */
+    private List<C> readBulk(HttpServletRequest request) throws ServletException, HttpBadRequestException {
+        List<C> dtos = convertJsonToDTO(request, TypeToken.getParameterized(List.class, getTypeC()).getType());
+        if (dtos == null || dtos.isEmpty()) {
+            throw new HttpBadRequestException("Bulk request must contain a non-empty JSON array");
+        }
+        if (dtos.size() > maxBulkItems) {
+            throw new HttpBadRequestException("Bulk request must contain at most " + maxBulkItems + " items");
+        }
+        if (dtos.stream().anyMatch(Objects::isNull)) {
+            throw new HttpBadRequestException("Bulk request must not contain null items");
+        }
+        return dtos;
+    }
 }
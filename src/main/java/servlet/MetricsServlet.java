@@ -0,0 +1,52 @@
+package servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Сервлет, отдающий текущие метрики приложения в формате JSON.
+ */
+@WebServlet(urlPatterns = "/api/metrics")
+public class MetricsServlet extends HttpServlet {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private MetricsRegistry registry;
+
+    /**
+     * Инициализирует сервлет и получает реестр метрик из контекста сервлета.
+     *
+     * @param config конфигурация сервлета
+     * @throws ServletException если произошла ошибка при инициализации
+     */
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        registry = (MetricsRegistry) getServletContext().getAttribute("metricsRegistry");
+    }
+
+    /**
+     * Обработка GET-запросов: возвращает снимок всех метрик.
+     *
+     * @param request  HTTP-запрос
+     * @param response HTTP-ответ
+     * @throws IOException если произошла ошибка ввода-вывода
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        writer.print(gson.toJson(registry.snapshot()));
+        writer.flush();
+    }
+}
@@ -1,13 +1,25 @@
 package servlet;
 
+import dto.ImportReportDto;
+import dto.PageDto;
 import dto.product.ProductCreateDto;
 import dto.product.ProductDto;
+import exception.HttpMediaTypeException;
+import exception.ServiceException;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import service.ExportService;
+import service.ImportFormat;
+import service.ProductService;
 import service.Service;
 import service.impl.ProductServiceImpl;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Сервлет для обработки HTTP-запросов, связанных с продуктами.
  * Наследует базовые методы для работы с сущностями.
@@ -38,6 +50,60 @@ public class ProductServlet extends BaseServlet<ProductDto, ProductCreateDto> {
         return ProductCreateDto.class;
     }
 
+    /**
+     * Возвращает страницу продуктов: GET /api/products?after={id}&amp;limit={n}.
+     *
+     * @param afterId идентификатор последнего продукта предыдущей страницы
+     * @param limit   размер страницы
+     * @return страница продуктов
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    @Override
+    protected PageDto<ProductDto> getPage(long afterId, int limit) throws ServiceException {
+        return ((ProductService) service).getPage(afterId, limit);
+    }
+
+    /**
+     * Возвращает сервис выгрузки продуктов: GET /api/products/export.
+     *
+     * @return сервис продуктов
+     */
+    @Override
+    protected ExportService<ProductDto> getExportService() {
+        return (ProductService) service;
+    }
+
+    /**
+     * Импортирует продукты из потока CSV (text/csv) или NDJSON (application/x-ndjson): POST /api/products/import.
+     *
+     * @param request HTTP-запрос с потоком входных данных в UTF-8
+     * @return отчет об импорте
+     * @throws Exception если формат не поддерживается или произошла ошибка при импорте
+     */
+    @Override
+    protected ImportReportDto importData(HttpServletRequest request) throws Exception {
+        ImportFormat format = ImportFormat.fromContentType(request.getContentType());
+        if (format == null) {
+            throw new HttpMediaTypeException(String.format("Content type: %s not supported for import", request.getContentType()));
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return ((ProductService) service).importProducts(reader, format);
+        }
+    }
+
+    /**
+     * Создает продукт с заданным именем или обновляет его цену и описание: PUT /api/products/by-name/{name}.
+     *
+     * @param name имя продукта
+     * @param dto  цена и описание продукта
+     * @return сохраненный продукт
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    @Override
+    protected ProductDto upsertByName(String name, ProductCreateDto dto) throws ServiceException {
+        return ((ProductService) service).upsertByName(name, dto);
+    }
+
     /**
      * Инициализирует сервлет и устанавливает сервис для работы с продуктами.
      *
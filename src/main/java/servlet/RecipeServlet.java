@@ -1,10 +1,15 @@
 package servlet;
 
+import dto.PageDto;
 import dto.recipe.RecipeCreateDto;
 import dto.recipe.RecipeDto;
+import dto.recipe.RecipeUpdateDto;
+import exception.ServiceException;
 import jakarta.servlet.ServletConfig;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
+import service.ExportService;
+import service.RecipeService;
 import service.Service;
 import service.impl.RecipeServiceImpl;
 
@@ -38,6 +43,39 @@ public class RecipeServlet extends BaseServlet<RecipeDto, RecipeCreateDto> {
         return RecipeCreateDto.class;
     }
 
+    /**
+     * Возвращает класс тела запроса PUT (RecipeUpdateDto), в котором может быть передан новый состав рецепта.
+     *
+     * @return класс RecipeUpdateDto
+     */
+    @Override
+    protected Class<RecipeUpdateDto> getTypeUpdate() {
+        return RecipeUpdateDto.class;
+    }
+
+    /**
+     * Возвращает страницу рецептов с продуктами: GET /api/recipes?after={id}&amp;limit={n}.
+     *
+     * @param afterId курсор - идентификатор последнего рецепта предыдущей страницы
+     * @param limit   размер страницы
+     * @return страница рецептов
+     * @throws ServiceException если произошла ошибка в сервисе
+     */
+    @Override
+    protected PageDto<RecipeDto> getPage(long afterId, int limit) throws ServiceException {
+        return ((RecipeService) service).getPage(afterId, limit);
+    }
+
+    /**
+     * Возвращает сервис выгрузки рецептов: GET /api/recipes/export.
+     *
+     * @return сервис рецептов
+     */
+    @Override
+    protected ExportService<RecipeDto> getExportService() {
+        return (RecipeService) service;
+    }
+
     /**
      * Инициализирует сервлет и устанавливает сервис для работы с рецептами.
      *
@@ -0,0 +1,37 @@
+package servlet.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.function.Supplier;
+
+/**
+ * Вспомогательный класс для записи потокового ответа выгрузки.
+ */
+public class ExportOutput {
+
+    /**
+     * Запись фрагмента ответа.
+     */
+    @FunctionalInterface
+    public interface Chunk {
+        void writeTo(PrintWriter out) throws IOException;
+    }
+
+    /**
+     * Пишет фрагмент ответа и при необходимости проверяет, что клиент еще принимает данные.
+     * PrintWriter не бросает IOException: ошибка записи видна только через checkError, который к тому же
+     * сбрасывает буфер, поэтому проверка выполняется не после каждой записи, а там, где ее запросил вызывающий.
+     *
+     * @param out      поток ответа
+     * @param chunk    запись фрагмента
+     * @param check    проверить ли соединение с клиентом после записи
+     * @param progress описание выгруженной части для сообщения об ошибке
+     * @throws IOException если запись фрагмента не удалась или клиент прервал выгрузку
+     */
+    public static void write(PrintWriter out, Chunk chunk, boolean check, Supplier<String> progress) throws IOException {
+        chunk.writeTo(out);
+        if (check && out.checkError()) {
+            throw new IOException("Клиент прервал выгрузку после " + progress.get());
+        }
+    }
+}
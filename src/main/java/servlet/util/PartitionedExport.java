@@ -0,0 +1,119 @@
+package servlet.util;
+
+import db.DbExecutor;
+import repository.IdRange;
+import service.ExportService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Параллельная выгрузка коллекции, разбитой на диапазоны идентификаторов.
+ * <p>
+ * Диапазон [min(id), max(id)] делится на части равной ширины; каждая часть читается своим курсором
+ * на отдельном соединении из пула в задаче {@link DbExecutor} и записывается во временный файл.
+ * Файлы передаются клиенту по порядку, как только готова очередная часть, поэтому ответ упорядочен по id.
+ * Задачи не ждут клиента, поэтому медленный клиент не удерживает соединения с БД.
+ * </p>
+ */
+public class PartitionedExport {
+    private final DbExecutor executor;
+
+    /**
+     * @param executor исполнитель задач чтения частей
+     */
+    public PartitionedExport(DbExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Выгружает коллекцию частями и пишет строки в порядке возрастания id.
+     *
+     * @param service    сервис выгрузки
+     * @param partitions количество частей
+     * @param format     преобразование записи в строку ответа (без перевода строки)
+     * @param out        поток ответа
+     * @param <T>        тип DTO
+     * @return количество выгруженных записей
+     * @throws Exception если чтение части не удалось или клиент прервал выгрузку
+     */
+    public <T> long export(ExportService<T> service, int partitions, Function<T, String> format, PrintWriter out) throws Exception {
+        IdRange bounds = service.getIdRange();
+        if (bounds == null) {
+            return 0;
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Path> files = new ArrayList<>();
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try {
+            for (IdRange range : bounds.split(partitions)) {
+                Path file = Files.createTempFile("export-", ".ndjson");
+                files.add(file);
+                futures.add(executor.submit(() -> writePartition(service, range, format, file, cancelled)));
+            }
+            long total = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                total += await(futures.get(i));
+                int part = i + 1;
+                try (Reader reader = Files.newBufferedReader(files.get(i), StandardCharsets.UTF_8)) {
+                    ExportOutput.write(out, reader::transferTo, true, () -> "части " + part + " из " + futures.size());
+                }
+            }
+            return total;
+        } finally {
+            // При ошибке незавершенные части прерываются; файлы удаляются после завершения всех задач
+            cancelled.set(true);
+            for (CompletableFuture<Long> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException ignored) {
+                    // Ошибка части уже передана вызывающему или вызвана отменой
+                }
+            }
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Читает часть коллекции и записывает ее строки во временный файл.
+     */
+    private static <T> long writePartition(ExportService<T> service, IdRange range, Function<T, String> format,
+                                           Path file, AtomicBoolean cancelled) throws Exception {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return service.exportRange(range.fromId(), range.toId(), dto -> {
+                if (cancelled.get()) {
+                    throw new IOException("Выгрузка отменена");
+                }
+                writer.write(format.apply(dto));
+                writer.write('\n');
+            });
+        }
+    }
+
+    /**
+     * Ожидает завершения части и возвращает исходное исключение задачи.
+     */
+    private static long await(CompletableFuture<Long> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- Исходная схема; IF NOT EXISTS позволяет применить миграцию к базе, созданной вручную по readme
+CREATE TABLE IF NOT EXISTS product (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL UNIQUE,
+    description VARCHAR(255),
+    price INTEGER
+);
+
+CREATE TABLE IF NOT EXISTS recipe (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(100) NOT NULL UNIQUE,
+    description VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS recipe_product (
+    recipe_id INTEGER REFERENCES recipe(id) ON DELETE CASCADE,
+    product_id INTEGER REFERENCES product(id) ON DELETE CASCADE,
+    PRIMARY KEY (recipe_id, product_id)
+);
@@ -0,0 +1,5 @@
+-- no-transaction
+-- Первичный ключ (recipe_id, product_id) не помогает поиску по product_id: без этого индекса
+-- каскадное удаление продукта и обратный поиск рецептов по продукту читают всю таблицу связей.
+-- INCLUDE (recipe_id) позволяет обратному поиску обходиться только индексом.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS recipe_product_product_id_idx ON recipe_product (product_id) INCLUDE (recipe_id);
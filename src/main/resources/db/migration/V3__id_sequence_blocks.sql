@@ -0,0 +1,3 @@
+-- Шаг последовательностей равен размеру блока идентификаторов приложения (id_block_size, см. BlockIdAllocator)
+ALTER SEQUENCE product_id_seq INCREMENT BY 50;
+ALTER SEQUENCE recipe_id_seq INCREMENT BY 50;
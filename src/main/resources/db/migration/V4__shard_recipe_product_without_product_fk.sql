@@ -0,0 +1,4 @@
+-- database: shard
+-- Продукты рецепта могут лежать на других шардах, поэтому внешний ключ связи на product из V1
+-- на шардах не выполняется; существование продуктов проверяет ShardedRecipeRepositoryImp
+ALTER TABLE recipe_product DROP CONSTRAINT IF EXISTS recipe_product_product_id_fkey;
@@ -0,0 +1,10 @@
+-- На шардах идентификатор равен value * число шардов + номер шарда (см. BlockIdAllocator), поэтому
+-- ключи INTEGER переполняются задолго до исчерпания последовательности. Переводим ключи и связи на BIGINT;
+-- ALTER TYPE переписывает таблицы под исключительной блокировкой, поэтому выполняется в окно обслуживания.
+ALTER SEQUENCE product_id_seq AS BIGINT;
+ALTER SEQUENCE recipe_id_seq AS BIGINT;
+ALTER TABLE product ALTER COLUMN id TYPE BIGINT;
+ALTER TABLE recipe ALTER COLUMN id TYPE BIGINT;
+ALTER TABLE recipe_product
+    ALTER COLUMN recipe_id TYPE BIGINT,
+    ALTER COLUMN product_id TYPE BIGINT;
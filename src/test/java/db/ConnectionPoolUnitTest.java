@@ -0,0 +1,167 @@
+package db;
+
+import db.pool.ConnectionPool;
+import db.pool.PoolConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для ConnectionPool.
+ * Физические соединения подменяются mock-объектами, поэтому база данных не требуется.
+ */
+public class ConnectionPoolUnitTest {
+    private final List<Connection> opened = new ArrayList<>();
+    private ConnectionPool pool;
+
+    /**
+     * Создает пул, открывающий mock-соединения.
+     *
+     * @param maxSize              максимальный размер пула
+     * @param validationIntervalMs интервал, в течение которого соединение выдается без проверки
+     * @return пул соединений
+     */
+    private ConnectionPool createPool(int maxSize, long validationIntervalMs) {
+        PoolConfig config = new PoolConfig(0, maxSize, 100, 60000, 1, validationIntervalMs, 2);
+        pool = new ConnectionPool(() -> {
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString(), anyInt()))
+                    .thenAnswer(invocation -> mock(PreparedStatement.class));
+            opened.add(connection);
+            return connection;
+        }, config);
+        return pool;
+    }
+
+    @AfterEach
+    public void closePool() {
+        pool.closeConnection();
+    }
+
+    @Test
+    @DisplayName("Закрытое соединение возвращается в пул и выдается повторно")
+    public void shouldReuseReleasedConnection() throws SQLException {
+        createPool(2, 60000);
+
+        pool.createConnection().close();
+        pool.createConnection().close();
+
+        assertEquals(1, opened.size());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getActiveCount());
+        verify(opened.get(0), never()).close();
+    }
+
+    @Test
+    @DisplayName("Пул не выдает больше maxSize соединений и ограничивает время ожидания")
+    public void shouldThrowWhenPoolExhausted() throws SQLException {
+        createPool(2, 60000);
+        pool.createConnection();
+        pool.createConnection();
+
+        assertThrows(SQLTransientConnectionException.class, () -> pool.createConnection());
+        assertEquals(2, pool.getTotalCount());
+        assertEquals(2, opened.size());
+    }
+
+    @Test
+    @DisplayName("Повторное закрытие соединения не возвращает его в пул дважды")
+    public void shouldIgnoreDoubleClose() throws SQLException {
+        createPool(1, 60000);
+        Connection connection = pool.createConnection();
+
+        connection.close();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertEquals(1, pool.getIdleCount());
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    @DisplayName("Незавершенная транзакция откатывается при возврате соединения в пул")
+    public void shouldRollbackOnRelease() throws SQLException {
+        createPool(1, 60000);
+        Connection connection = pool.createConnection();
+        Connection physical = opened.get(0);
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+
+    @Test
+    @DisplayName("Невалидное соединение закрывается при выдаче и заменяется новым")
+    public void shouldReplaceInvalidConnection() throws SQLException {
+        createPool(1, 0);
+        pool.createConnection().close();
+        Connection stale = opened.get(0);
+        when(stale.isValid(anyInt())).thenReturn(false);
+
+        pool.createConnection();
+
+        verify(stale).close();
+        assertEquals(2, opened.size());
+        assertEquals(1, pool.getTotalCount());
+    }
+
+    @Test
+    @DisplayName("Подготовленный запрос переиспользуется после закрытия")
+    public void shouldReuseCachedStatement() throws SQLException {
+        createPool(1, 60000);
+        String sql = "SELECT * from product where id=?";
+
+        try (Connection connection = pool.createConnection()) {
+            connection.prepareStatement(sql).close();
+        }
+        try (Connection connection = pool.createConnection()) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            assertSame(connection, statement.getConnection());
+            statement.close();
+        }
+
+        verify(opened.get(0), times(1)).prepareStatement(sql, PreparedStatement.NO_GENERATED_KEYS);
+        assertEquals(1L, pool.getMetrics().get("statementCacheHits"));
+        assertEquals(1L, pool.getMetrics().get("statementCacheMisses"));
+    }
+
+    @Test
+    @DisplayName("При переполнении кэша закрывается давно не использованный запрос")
+    public void shouldEvictLeastRecentlyUsedStatement() throws SQLException {
+        createPool(1, 60000);
+
+        try (Connection connection = pool.createConnection()) {
+            for (String sql : List.of("SELECT 1", "SELECT 2", "SELECT 3")) {
+                connection.prepareStatement(sql).close();
+            }
+        }
+
+        assertEquals(1L, pool.getMetrics().get("statementCacheEvictions"));
+    }
+
+    @Test
+    @DisplayName("Соединение не выдается, если бюджет времени запроса исчерпан")
+    public void shouldFailFastWhenDeadlineExceeded() {
+        createPool(1, 60000);
+        Deadline.start(0);
+        try {
+            assertThrows(SQLTimeoutException.class, () -> pool.createConnection());
+            assertEquals(0, opened.size());
+        } finally {
+            Deadline.clear();
+        }
+    }
+}
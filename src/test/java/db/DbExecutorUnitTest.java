@@ -0,0 +1,85 @@
+package db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для DbExecutor: ограничение параллельности и передача состояния запроса в задачи.
+ */
+public class DbExecutorUnitTest {
+    private final DbExecutor executor = new DbExecutor(2);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+        Deadline.clear();
+        ReadConsistency.close();
+    }
+
+    @Test
+    @DisplayName("Одновременно выполняется не больше maxConcurrency задач")
+    public void limitsConcurrentTasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await();
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        while (running.get() < 2) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+
+        assertEquals(2, executor.getMetrics().get("running"));
+        release.countDown();
+        for (CompletableFuture<Integer> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    @DisplayName("Задача выполняется с крайним сроком и окном чтения с основного сервера текущего запроса")
+    public void propagatesDeadlineAndReadConsistency() throws Exception {
+        AtomicLong notifiedUntil = new AtomicLong();
+        Deadline.start(5000);
+        ReadConsistency.open(System.currentTimeMillis() + 60_000, notifiedUntil::set);
+
+        CompletableFuture<Long> remaining = executor.submit(Deadline::remainingMs);
+        CompletableFuture<Boolean> primaryRequired = executor.submit(ReadConsistency::isPrimaryRequired);
+        // Запись в задаче продлевает окно запроса и передается клиенту
+        executor.submit(() -> {
+            ReadConsistency.markWrite(1000);
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        assertTrue(remaining.get(5, TimeUnit.SECONDS) <= 5000);
+        assertTrue(remaining.get() > 0);
+        assertTrue(primaryRequired.get(5, TimeUnit.SECONDS));
+        assertTrue(notifiedUntil.get() > 0);
+    }
+
+    @Test
+    @DisplayName("Без области запроса задача не требует чтения с основного сервера и не ограничена сроком")
+    public void withoutRequestStateTaskIsUnbounded() throws Exception {
+        assertEquals(Long.MAX_VALUE, executor.submit(Deadline::remainingMs).get(5, TimeUnit.SECONDS));
+        assertFalse(executor.submit(ReadConsistency::isPrimaryRequired).get(5, TimeUnit.SECONDS));
+    }
+}
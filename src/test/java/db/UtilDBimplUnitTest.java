@@ -0,0 +1,145 @@
+package db;
+
+import db.pool.ConnectionPool;
+import filter.ReadYourWritesFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для распределения соединений UtilDBimpl между основным сервером и репликами.
+ * Пулы подменяются mock-объектами, поэтому база данных не требуется.
+ */
+public class UtilDBimplUnitTest {
+    private final ConnectionPool primary = pool();
+    private final ConnectionPool firstReplica = pool();
+    private final ConnectionPool secondReplica = pool();
+
+    @Test
+    @DisplayName("Чтение распределяется по репликам по кругу")
+    public void readsRoundRobinAcrossReplicas() throws SQLException {
+        UtilDBimpl db = new UtilDBimpl(primary, List.of(firstReplica, secondReplica));
+
+        for (int i = 0; i < 4; i++) {
+            db.createReadConnection();
+        }
+
+        verify(firstReplica, times(2)).createConnection();
+        verify(secondReplica, times(2)).createConnection();
+        verify(primary, never()).createConnection();
+        assertEquals(4L, db.getMetrics().get("replicaReads"));
+    }
+
+    @Test
+    @DisplayName("Недоступная реплика пропускается, чтение идет на следующую")
+    public void skipsFailedReplica() throws SQLException {
+        when(firstReplica.createConnection()).thenThrow(new SQLException("replica down"));
+        UtilDBimpl db = new UtilDBimpl(primary, List.of(firstReplica, secondReplica));
+
+        db.createReadConnection();
+        db.createReadConnection();
+
+        verify(secondReplica, times(2)).createConnection();
+        verify(primary, never()).createConnection();
+        assertEquals(1L, db.getMetrics().get("replicaFailures"));
+    }
+
+    @Test
+    @DisplayName("Если все реплики недоступны, чтение идет на основной сервер")
+    public void fallsBackToPrimary() throws SQLException {
+        when(firstReplica.createConnection()).thenThrow(new SQLException("replica down"));
+        when(secondReplica.createConnection()).thenThrow(new SQLException("replica down"));
+        UtilDBimpl db = new UtilDBimpl(primary, List.of(firstReplica, secondReplica));
+
+        Connection connection = db.createReadConnection();
+
+        verify(primary).createConnection();
+        verify(connection).setReadOnly(true);
+        assertEquals(1L, db.getMetrics().get("primaryReads"));
+        assertEquals(2L, db.getMetrics().get("replicaFailures"));
+    }
+
+    @Test
+    @DisplayName("После записи клиент получает cookie и в пределах окна читает с основного сервера")
+    public void readYourWritesWindowRoutesToPrimary() throws Exception {
+        UtilDBimpl db = new UtilDBimpl(primary, List.of(firstReplica));
+        HttpServletResponse writeResponse = mock(HttpServletResponse.class);
+
+        long before = System.currentTimeMillis();
+        filter(request(), writeResponse, () -> {
+            db.createConnection();
+            db.createReadConnection();
+        });
+
+        ArgumentCaptor<Cookie> cookie = ArgumentCaptor.forClass(Cookie.class);
+        verify(writeResponse).addCookie(cookie.capture());
+        long primaryUntil = Long.parseLong(cookie.getValue().getValue());
+        assertTrue(primaryUntil >= before + 2000, "Окно после записи: " + (primaryUntil - before));
+        // Чтение после записи в том же запросе и в следующем запросе с cookie идет на основной сервер
+        filter(request(cookie.getValue()), mock(HttpServletResponse.class), db::createReadConnection);
+        verify(primary, times(3)).createConnection();
+        verify(firstReplica, never()).createConnection();
+
+        // Истекшее окно не влияет на выбор сервера
+        filter(request(new Cookie(cookie.getValue().getName(), Long.toString(before - 1))),
+                mock(HttpServletResponse.class), db::createReadConnection);
+        verify(firstReplica).createConnection();
+    }
+
+    @Test
+    @DisplayName("Без реплик запись не открывает окно чтения с основного сервера и не выставляет cookie")
+    public void writeWithoutReplicasSetsNoCookie() throws Exception {
+        UtilDBimpl db = new UtilDBimpl(primary, List.of());
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        filter(request(), response, db::createConnection);
+
+        verify(response, never()).addCookie(any());
+    }
+
+    /**
+     * Выполняет обращения к базе данных внутри фильтра чтения собственных записей.
+     */
+    private static void filter(HttpServletRequest request, HttpServletResponse response, DbCalls calls) throws Exception {
+        FilterChain chain = (req, resp) -> {
+            try {
+                calls.run();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        };
+        new ReadYourWritesFilter().doFilter(request, response, chain);
+    }
+
+    private static HttpServletRequest request(Cookie... cookies) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getCookies()).thenReturn(cookies.length == 0 ? null : cookies);
+        return request;
+    }
+
+    private static ConnectionPool pool() {
+        ConnectionPool pool = mock(ConnectionPool.class);
+        try {
+            when(pool.createConnection()).thenAnswer(invocation -> mock(Connection.class));
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return pool;
+    }
+
+    @FunctionalInterface
+    private interface DbCalls {
+        void run() throws SQLException;
+    }
+}
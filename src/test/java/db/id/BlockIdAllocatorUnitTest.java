@@ -0,0 +1,160 @@
+package db.id;
+
+import db.UtilDB;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для BlockIdAllocator.
+ * Последовательность имитируется mock-соединением: nextval возвращает значения с шагом increment.
+ */
+public class BlockIdAllocatorUnitTest {
+    private final AtomicLong sequence = new AtomicLong(1);
+    private final AtomicInteger nextvalCalls = new AtomicInteger();
+
+    /**
+     * Создает источник соединений, имитирующий последовательность с заданным шагом.
+     */
+    private UtilDB sequenceSource(long increment) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement validation = mock(PreparedStatement.class);
+        ResultSet validationRs = mock(ResultSet.class);
+        when(validationRs.next()).thenReturn(true);
+        when(validationRs.getLong(1)).thenReturn(increment);
+        when(validation.executeQuery()).thenReturn(validationRs);
+        when(connection.prepareStatement(startsWith("SELECT increment_by"))).thenReturn(validation);
+
+        PreparedStatement nextval = mock(PreparedStatement.class);
+        when(nextval.executeQuery()).thenAnswer(invocation -> {
+            nextvalCalls.incrementAndGet();
+            ResultSet resultSet = mock(ResultSet.class);
+            when(resultSet.next()).thenReturn(true);
+            when(resultSet.getLong(1)).thenReturn(sequence.getAndAdd(increment));
+            return resultSet;
+        });
+        when(connection.prepareStatement(startsWith("SELECT nextval"))).thenReturn(nextval);
+
+        UtilDB source = mock(UtilDB.class);
+        when(source.createConnection()).thenReturn(connection);
+        return source;
+    }
+
+    @Test
+    @DisplayName("Идентификаторы выдаются из блока в памяти, к БД обращение одно на блок")
+    public void shouldHandOutIdsFromBlock() throws SQLException {
+        BlockIdAllocator allocator = new BlockIdAllocator(sequenceSource(3), "product_id_seq", 3);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            ids.add(allocator.nextId());
+        }
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), ids);
+        assertEquals(3, nextvalCalls.get());
+    }
+
+    @Test
+    @DisplayName("Для шарда идентификатор преобразуется как value * stride + offset")
+    public void shouldApplyShardStrideAndOffset() throws SQLException {
+        BlockIdAllocator allocator = new BlockIdAllocator(sequenceSource(2), "product_id_seq", 2, 3, 1);
+
+        assertEquals(4L, allocator.nextId());
+        assertEquals(7L, allocator.nextId());
+        assertEquals(10L, allocator.nextId());
+    }
+
+    @Test
+    @DisplayName("Шаг последовательности меньше размера блока приводит к ошибке, а не к повторяющимся id")
+    public void shouldRejectSequenceWithSmallIncrement() throws SQLException {
+        BlockIdAllocator allocator = new BlockIdAllocator(sequenceSource(1), "product_id_seq", 50);
+
+        assertThrows(SQLException.class, allocator::nextId);
+        assertEquals(0, nextvalCalls.get());
+    }
+
+    @Test
+    @DisplayName("Параллельные потоки получают уникальные идентификаторы")
+    public void shouldHandOutUniqueIdsConcurrently() throws Exception {
+        BlockIdAllocator allocator = new BlockIdAllocator(sequenceSource(10), "product_id_seq", 10);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        ids.add(allocator.nextId());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2000, ids.size());
+        assertEquals(200, nextvalCalls.get());
+    }
+
+    @Test
+    @DisplayName("Уменьшение шага сдвигает последовательность за последний выданный блок")
+    public void shouldAlignIncrementAndSkipIssuedBlock() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement state = mock(PreparedStatement.class);
+        ResultSet stateRs = mock(ResultSet.class);
+        when(stateRs.next()).thenReturn(true);
+        when(stateRs.getLong(1)).thenReturn(50L);
+        when(stateRs.getLong(2)).thenReturn(101L);
+        when(state.executeQuery()).thenReturn(stateRs);
+        when(connection.prepareStatement(startsWith("SELECT increment_by"))).thenReturn(state);
+        PreparedStatement alter = mock(PreparedStatement.class);
+        when(connection.prepareStatement("ALTER SEQUENCE product_id_seq INCREMENT BY 1")).thenReturn(alter);
+        PreparedStatement setval = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("SELECT setval"))).thenReturn(setval);
+        UtilDB source = mock(UtilDB.class);
+        when(source.createConnection()).thenReturn(connection);
+
+        assertTrue(BlockIdAllocator.alignIncrement(source, "product_id_seq", 1));
+
+        verify(alter).execute();
+        // Блок [101, 151) мог быть выдан, следующее значение - 151
+        verify(setval).setLong(2, 150L);
+        verify(connection).close();
+    }
+
+    @Test
+    @DisplayName("Совпадающий шаг последовательности не изменяется")
+    public void shouldKeepMatchingIncrement() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement state = mock(PreparedStatement.class);
+        ResultSet stateRs = mock(ResultSet.class);
+        when(stateRs.next()).thenReturn(true);
+        when(stateRs.getLong(1)).thenReturn(50L);
+        when(state.executeQuery()).thenReturn(stateRs);
+        when(connection.prepareStatement(startsWith("SELECT increment_by"))).thenReturn(state);
+        UtilDB source = mock(UtilDB.class);
+        when(source.createConnection()).thenReturn(connection);
+
+        assertFalse(BlockIdAllocator.alignIncrement(source, "product_id_seq", 50));
+
+        verify(connection, never()).prepareStatement(startsWith("ALTER SEQUENCE"));
+    }
+}
@@ -0,0 +1,157 @@
+package db.migration;
+
+import db.UtilDB;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для разбора скриптов миграций и MigrationRunner.
+ */
+public class MigrationUnitTest {
+
+    @Test
+    @DisplayName("Скрипт разбивается на команды, комментарии пропускаются, версия берется из имени файла")
+    public void shouldParseScript() {
+        Migration migration = Migration.parse("V2__add_index.sql", """
+                -- комментарий
+                CREATE TABLE a (
+                    id INTEGER
+                );
+                INSERT INTO a VALUES (1);
+                """);
+
+        assertEquals(2, migration.version());
+        assertEquals("add index", migration.description());
+        assertTrue(migration.transactional());
+        assertEquals(List.of("CREATE TABLE a (\n    id INTEGER\n)", "INSERT INTO a VALUES (1)"), migration.statements());
+    }
+
+    @Test
+    @DisplayName("Скрипт с маркером no-transaction выполняется вне транзакции")
+    public void shouldDetectNoTransactionMarker() {
+        Migration migration = Migration.parse("V3__index.sql", "-- no-transaction\nCREATE INDEX CONCURRENTLY i ON a (id);\n");
+
+        assertFalse(migration.transactional());
+        assertEquals(List.of("CREATE INDEX CONCURRENTLY i ON a (id)"), migration.statements());
+    }
+
+    @Test
+    @DisplayName("Контрольная сумма не зависит от переводов строк и меняется при изменении скрипта")
+    public void shouldComputeStableChecksum() {
+        String unix = Migration.parse("V1__a.sql", "SELECT 1;\n").checksum();
+
+        assertEquals(unix, Migration.parse("V1__a.sql", "SELECT 1;\r\n").checksum());
+        assertNotEquals(unix, Migration.parse("V1__a.sql", "SELECT 2;\n").checksum());
+    }
+
+    @Test
+    @DisplayName("Скрипты из ресурсов приложения загружаются в порядке версий")
+    public void shouldLoadShippedMigrations() {
+        assertDoesNotThrow(() -> new MigrationRunner(mock(UtilDB.class), DatabaseKind.SINGLE));
+    }
+
+    @Test
+    @DisplayName("Измененная после применения миграция останавливает запуск")
+    public void shouldFailOnChecksumMismatch() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet history = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(history);
+        when(history.next()).thenReturn(true, false);
+        when(history.getInt(1)).thenReturn(1);
+        when(history.getString(2)).thenReturn("0".repeat(64));
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+        MigrationRunner runner = new MigrationRunner(db, DatabaseKind.SINGLE, List.of(Migration.parse("V1__a.sql", "SELECT 1;\n")));
+
+        assertThrows(SQLException.class, runner::migrate);
+        verify(statement).execute(contains("pg_advisory_unlock"));
+        verify(connection).close();
+    }
+
+    @Test
+    @DisplayName("Скрипт для шардов применяется только к шардам и не записывается в историю единственной базы")
+    public void shouldApplyShardOnlyMigrationToShards() throws SQLException {
+        Migration shardOnly = Migration.parse("V5__shard.sql", "-- database: shard\nALTER TABLE a DROP CONSTRAINT b;\n");
+        assertEquals(DatabaseKind.SHARD, shardOnly.target());
+        assertTrue(shardOnly.transactional());
+
+        Connection single = emptyHistoryConnection();
+        assertEquals(0, new MigrationRunner(database(single), DatabaseKind.SINGLE, List.of(shardOnly)).migrate());
+        verify(single, never()).prepareStatement(contains("INSERT INTO schema_migrations"));
+
+        Connection shard = emptyHistoryConnection();
+        assertEquals(1, new MigrationRunner(database(shard), DatabaseKind.SHARD, List.of(shardOnly)).migrate());
+        verify(shard.createStatement()).execute("ALTER TABLE a DROP CONSTRAINT b");
+    }
+
+    @Test
+    @DisplayName("Невалидный индекс после прерванного построения удаляется и строится заново до записи в историю")
+    public void shouldRebuildInvalidConcurrentIndex() throws SQLException {
+        Connection connection = emptyHistoryConnection();
+        PreparedStatement validity = mock(PreparedStatement.class);
+        ResultSet validityRs = mock(ResultSet.class);
+        when(validityRs.next()).thenReturn(true);
+        when(validityRs.getBoolean(1)).thenReturn(false, true);
+        when(validity.executeQuery()).thenReturn(validityRs);
+        when(connection.prepareStatement(contains("indisvalid"))).thenReturn(validity);
+        PreparedStatement history = mock(PreparedStatement.class);
+        when(connection.prepareStatement(contains("INSERT INTO schema_migrations"))).thenReturn(history);
+        Migration index = Migration.parse("V2__index.sql",
+                "-- no-transaction\nCREATE INDEX CONCURRENTLY IF NOT EXISTS a_idx ON a (id);\n");
+
+        assertEquals(1, new MigrationRunner(database(connection), DatabaseKind.SINGLE, List.of(index)).migrate());
+
+        Statement statement = connection.createStatement();
+        InOrder order = inOrder(statement, history);
+        order.verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS a_idx");
+        order.verify(statement).execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS a_idx ON a (id)");
+        order.verify(history).executeUpdate();
+    }
+
+    @Test
+    @DisplayName("Миграция с индексом, оставшимся невалидным, не записывается в историю")
+    public void shouldNotRecordInvalidConcurrentIndex() throws SQLException {
+        Connection connection = emptyHistoryConnection();
+        PreparedStatement validity = mock(PreparedStatement.class);
+        ResultSet validityRs = mock(ResultSet.class);
+        when(validityRs.next()).thenReturn(true);
+        when(validityRs.getBoolean(1)).thenReturn(false);
+        when(validity.executeQuery()).thenReturn(validityRs);
+        when(connection.prepareStatement(contains("indisvalid"))).thenReturn(validity);
+        Migration index = Migration.parse("V2__index.sql",
+                "-- no-transaction\nCREATE INDEX CONCURRENTLY IF NOT EXISTS a_idx ON a (id);\n");
+
+        assertThrows(SQLException.class,
+                () -> new MigrationRunner(database(connection), DatabaseKind.SINGLE, List.of(index)).migrate());
+        verify(connection, never()).prepareStatement(contains("INSERT INTO schema_migrations"));
+    }
+
+    /**
+     * Соединение с пустой историей миграций.
+     */
+    private static Connection emptyHistoryConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(mock(ResultSet.class));
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        return connection;
+    }
+
+    private static UtilDB database(Connection connection) throws SQLException {
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+        return db;
+    }
+}
@@ -0,0 +1,154 @@
+package db.resilience;
+
+import db.Deadline;
+import db.pool.ConnectionPool;
+import db.pool.PoolConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit-тесты для CircuitBreaker и DbResilience.
+ */
+public class DbResilienceUnitTest {
+
+    /**
+     * Создает выключатель: окно 4 обращения, порог ошибок 50%, размыкание на openDurationMs, 1 пробное обращение.
+     */
+    private CircuitBreaker createBreaker(long openDurationMs) {
+        return new CircuitBreaker(4, 4, 50, 100, 60000, openDurationMs, 1);
+    }
+
+    private static SqlCall<Integer> failing(AtomicInteger calls, String sqlState) {
+        return () -> {
+            calls.incrementAndGet();
+            throw new SQLException("failure", sqlState);
+        };
+    }
+
+    @Test
+    @DisplayName("Выключатель размыкается при превышении доли ошибок и отклоняет обращения без вызова БД")
+    public void shouldOpenAndFailFast() throws SQLException {
+        CircuitBreaker breaker = createBreaker(60000);
+        DbResilience resilience = new DbResilience(breaker, RetryPolicy.NONE);
+        AtomicInteger calls = new AtomicInteger();
+
+        resilience.write(() -> 1);
+        resilience.write(() -> 1);
+        assertThrows(SQLException.class, () -> resilience.write(failing(calls, "08006")));
+        assertThrows(SQLException.class, () -> resilience.write(failing(calls, "08006")));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(SQLTransientConnectionException.class, () -> resilience.write(failing(calls, "08006")));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("После паузы успешное пробное обращение замыкает выключатель, неудачное - размыкает снова")
+    public void shouldProbeInHalfOpenState() throws Exception {
+        CircuitBreaker breaker = createBreaker(20);
+        DbResilience resilience = new DbResilience(breaker, RetryPolicy.NONE);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            assertThrows(SQLException.class, () -> resilience.write(failing(calls, "08006")));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(40);
+        assertThrows(SQLException.class, () -> resilience.write(failing(calls, "57P01")));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(40);
+        assertEquals(1, resilience.write(() -> 1));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Ошибки нарушения ограничений не размыкают выключатель")
+    public void shouldIgnoreDataErrors() {
+        CircuitBreaker breaker = createBreaker(60000);
+        DbResilience resilience = new DbResilience(breaker, RetryPolicy.NONE);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            assertThrows(SQLException.class, () -> resilience.write(failing(calls, "23505")));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    @DisplayName("Исчерпанный бюджет запроса не размыкает выключатель")
+    public void shouldIgnoreSpentDeadline() {
+        CircuitBreaker breaker = createBreaker(60000);
+        DbResilience resilience = new DbResilience(breaker, RetryPolicy.NONE);
+
+        // Клиент может прислать X-Request-Timeout: 0 - бюджет исчерпан еще до обращения к драйверу
+        Deadline.start(0);
+        try {
+            for (int i = 0; i < 6; i++) {
+                assertThrows(SQLTimeoutException.class, () -> resilience.read(Deadline::checkRemaining));
+            }
+        } finally {
+            Deadline.clear();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getMetrics().get("calls"));
+    }
+
+    @Test
+    @DisplayName("Нехватка соединений в пуле приложения не размыкает выключатель")
+    public void shouldIgnorePoolExhaustion() throws SQLException {
+        CircuitBreaker breaker = createBreaker(60000);
+        DbResilience resilience = new DbResilience(breaker, RetryPolicy.NONE);
+        ConnectionPool pool = new ConnectionPool(() -> mock(Connection.class), new PoolConfig(0, 1, 10, 60000, 1, 60000, 2));
+        try (Connection busy = pool.createConnection()) {
+            for (int i = 0; i < 6; i++) {
+                assertThrows(SQLTransientConnectionException.class, () -> resilience.write(pool::createConnection));
+            }
+        } finally {
+            pool.closeConnection();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getMetrics().get("calls"));
+    }
+
+    @Test
+    @DisplayName("Чтение повторяется при временной ошибке, запись - нет")
+    public void shouldRetryOnlyReads() throws SQLException {
+        DbResilience resilience = new DbResilience(null, new RetryPolicy(3, 1, 2));
+        AtomicInteger readCalls = new AtomicInteger();
+
+        Integer result = resilience.read(() -> {
+            if (readCalls.incrementAndGet() < 3) {
+                throw new SQLException("serialization failure", "40001");
+            }
+            return 42;
+        });
+        AtomicInteger writeCalls = new AtomicInteger();
+        assertThrows(SQLException.class, () -> resilience.write(failing(writeCalls, "40001")));
+
+        assertEquals(42, result);
+        assertEquals(3, readCalls.get());
+        assertEquals(1, writeCalls.get());
+    }
+
+    @Test
+    @DisplayName("Неповторяемая ошибка чтения возвращается сразу")
+    public void shouldNotRetryPermanentErrors() {
+        DbResilience resilience = new DbResilience(null, new RetryPolicy(3, 1, 2));
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(SQLException.class, () -> resilience.read(failing(calls, "42P01")));
+        assertEquals(1, calls.get());
+    }
+}
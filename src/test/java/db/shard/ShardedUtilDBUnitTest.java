@@ -0,0 +1,82 @@
+package db.shard;
+
+import db.TransactionContext;
+import db.TransactionalUtilDB;
+import db.UtilDB;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для ShardedUtilDB.
+ * Шарды подменяются mock-объектами UtilDB.
+ */
+public class ShardedUtilDBUnitTest {
+    private final UtilDB shard0 = mock(UtilDB.class);
+    private final UtilDB shard1 = mock(UtilDB.class);
+    private final Connection connection0 = mock(Connection.class);
+    private final Connection connection1 = mock(Connection.class);
+
+    @Test
+    @DisplayName("Соединение выдается шардом, определенным по идентификатору записи")
+    public void shouldRouteByIdModuloShardCount() throws SQLException {
+        when(shard1.createReadConnection()).thenReturn(connection1);
+        ShardedUtilDB db = new ShardedUtilDB(List.of(shard0, shard1));
+
+        Connection connection = db.onShard(db.shardOf(7), db::createReadConnection);
+
+        assertSame(connection1, connection);
+        assertEquals(0, db.shardOf(10));
+        verifyNoInteractions(shard0);
+    }
+
+    @Test
+    @DisplayName("Без выбранного шарда соединение не выдается, после вызова выбор сбрасывается")
+    public void shouldRequireSelectedShard() throws SQLException {
+        when(shard0.createConnection()).thenReturn(connection0);
+        ShardedUtilDB db = new ShardedUtilDB(List.of(shard0, shard1));
+
+        assertThrows(SQLException.class, db::createConnection);
+        db.onShard(0, db::createConnection);
+        assertThrows(SQLException.class, db::createConnection);
+    }
+
+    @Test
+    @DisplayName("Новые записи распределяются по шардам по кругу")
+    public void shouldDistributeInsertsRoundRobin() {
+        ShardedUtilDB db = new ShardedUtilDB(List.of(shard0, shard1));
+
+        assertEquals(List.of(0, 1, 0, 1), List.of(db.nextShard(), db.nextShard(), db.nextShard(), db.nextShard()));
+    }
+
+    @Test
+    @DisplayName("Транзакция запроса держит отдельное соединение на каждый шард и фиксирует оба")
+    public void shouldBindConnectionPerShardInTransaction() throws SQLException {
+        when(shard0.createConnection()).thenReturn(connection0);
+        when(shard1.createConnection()).thenReturn(connection1);
+        ShardedUtilDB db = new ShardedUtilDB(List.of(
+                new TransactionalUtilDB(shard0, "shard-0"), new TransactionalUtilDB(shard1, "shard-1")));
+
+        TransactionContext.begin();
+        try {
+            db.onShard(0, db::createConnection).close();
+            db.onShard(1, db::createConnection).close();
+            db.onShard(0, db::createConnection).close();
+        } finally {
+            TransactionContext.commit();
+        }
+
+        verify(shard0, times(1)).createConnection();
+        verify(shard1, times(1)).createConnection();
+        verify(connection0).commit();
+        verify(connection1).commit();
+        verify(connection0).close();
+        verify(connection1).close();
+    }
+}
@@ -0,0 +1,85 @@
+package filter;
+
+import exception.HttpServiceUnavailableException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для фильтра BulkheadFilter.
+ * Проверяет, что лимит одновременных запросов действует отдельно для каждого ресурса.
+ */
+@ExtendWith(MockitoExtension.class)
+public class BulkheadFilterUnitTest {
+    @Mock
+    private HttpServletRequest productRequest;
+    @Mock
+    private HttpServletRequest recipeRequest;
+    @Mock
+    private HttpServletResponse mockHttpResponse;
+    @Mock
+    private FilterChain mockFilterChain;
+    @Mock
+    private FilterConfig filterConfig;
+    @Mock
+    private ServletContext servletContext;
+
+    private final Bulkhead products = new Bulkhead(1, 0);
+    private final Bulkhead recipes = new Bulkhead(1, 0);
+    private final BulkheadFilter filter = new BulkheadFilter();
+
+    @BeforeEach
+    public void init() throws ServletException {
+        when(filterConfig.getServletContext()).thenReturn(servletContext);
+        when(servletContext.getAttribute(BulkheadFilter.BULKHEADS_ATTRIBUTE))
+                .thenReturn(Map.of("products", products, "recipes", recipes));
+        filter.init(filterConfig);
+        lenient().when(productRequest.getRequestURI()).thenReturn("/app/api/products/1");
+        lenient().when(recipeRequest.getRequestURI()).thenReturn("/app/api/recipes/1");
+    }
+
+    @Test
+    @DisplayName("Запрос сверх лимита ресурса отклоняется, другой ресурс продолжает обслуживаться")
+    public void shouldRejectOnlySaturatedResource() throws IOException, ServletException {
+        doAnswer(invocation -> {
+            // Пока занят единственный слот рецептов, второй запрос к рецептам отклоняется, а к продуктам - нет
+            ServletException rejected = assertThrows(ServletException.class,
+                    () -> filter.doFilter(recipeRequest, mockHttpResponse, mock(FilterChain.class)));
+            assertInstanceOf(HttpServiceUnavailableException.class, rejected.getCause());
+            filter.doFilter(productRequest, mockHttpResponse, mock(FilterChain.class));
+            return null;
+        }).when(mockFilterChain).doFilter(recipeRequest, mockHttpResponse);
+
+        filter.doFilter(recipeRequest, mockHttpResponse, mockFilterChain);
+
+        assertEquals(1L, recipes.getMetrics().get("rejected"));
+        assertEquals(1L, products.getMetrics().get("accepted"));
+        assertEquals(0L, products.getMetrics().get("rejected"));
+    }
+
+    @Test
+    @DisplayName("Место освобождается и после ошибки обработки запроса")
+    public void shouldReleaseAfterFailure() throws IOException, ServletException {
+        doThrow(new ServletException("failure")).when(mockFilterChain).doFilter(productRequest, mockHttpResponse);
+
+        assertThrows(ServletException.class, () -> filter.doFilter(productRequest, mockHttpResponse, mockFilterChain));
+
+        assertEquals(0, products.getMetrics().get("inFlight"));
+        assertTrue(products.tryEnter());
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.JsonSyntaxException;
 import exception.ElementNotFoundException;
 import exception.HttpBadRequestException;
 import exception.HttpMediaTypeException;
+import exception.RepositoryException;
 import exception.ServiceException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -23,6 +24,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -58,7 +61,11 @@ public class ErrorFilterUnitTest {
                 Arguments.of(new HttpMediaTypeException(""), HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE),
                 Arguments.of(new ServiceException(""), HttpServletResponse.SC_INTERNAL_SERVER_ERROR),
                 Arguments.of(new JsonSyntaxException(""), HttpServletResponse.SC_BAD_REQUEST),
-                Arguments.of(new HttpBadRequestException(""), HttpServletResponse.SC_BAD_REQUEST)
+                Arguments.of(new HttpBadRequestException(""), HttpServletResponse.SC_BAD_REQUEST),
+                Arguments.of(new ServiceException("", new RepositoryException("", new SQLTimeoutException(""))),
+                        HttpServletResponse.SC_GATEWAY_TIMEOUT),
+                Arguments.of(new ServiceException("", new RepositoryException("", new SQLTransientConnectionException(""))),
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE)
         );
     }
 
@@ -0,0 +1,108 @@
+package filter;
+
+import db.TransactionContext;
+import db.TransactionalUtilDB;
+import db.UtilDB;
+import exception.ElementNotFoundException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для фильтра TransactionFilter.
+ * Проверяет, что изменяющий запрос использует одно соединение и фиксируется или откатывается один раз.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TransactionFilterUnitTest {
+    @Mock
+    private HttpServletRequest mockHttpRequest;
+    @Mock
+    private HttpServletResponse mockHttpResponse;
+    @Mock
+    private FilterChain mockFilterChain;
+    @Mock
+    private UtilDB pool;
+    @Mock
+    private Connection physical;
+
+    private final TransactionFilter filter = new TransactionFilter();
+    private TransactionalUtilDB db;
+
+    @BeforeEach
+    public void init() {
+        db = new TransactionalUtilDB(pool);
+    }
+
+    @Test
+    @DisplayName("Несколько обращений к БД в запросе используют одно соединение и одну фиксацию")
+    public void shouldCommitOnceForSeveralRepositoryCalls() throws IOException, ServletException, SQLException {
+        when(mockHttpRequest.getMethod()).thenReturn("PUT");
+        when(mockHttpResponse.getStatus()).thenReturn(HttpServletResponse.SC_OK);
+        when(mockHttpResponse.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+        when(pool.createConnection()).thenReturn(physical);
+        doAnswer(invocation -> {
+            // Имитация репозиториев: каждый берет и закрывает соединение
+            try (Connection first = db.createConnection()) {
+                first.commit();
+            }
+            try (Connection second = db.createConnection()) {
+                second.commit();
+            }
+            return null;
+        }).when(mockFilterChain).doFilter(any(), any());
+
+        filter.doFilter(mockHttpRequest, mockHttpResponse, mockFilterChain);
+
+        verify(pool, times(1)).createConnection();
+        verify(physical).setAutoCommit(false);
+        verify(physical, times(1)).commit();
+        verify(physical, times(1)).close();
+        assertFalse(TransactionContext.isActive());
+    }
+
+    @Test
+    @DisplayName("Ошибка при обработке запроса откатывает транзакцию")
+    public void shouldRollbackWhenChainFails() throws IOException, ServletException, SQLException {
+        when(mockHttpRequest.getMethod()).thenReturn("POST");
+        when(pool.createConnection()).thenReturn(physical);
+        doAnswer(invocation -> {
+            db.createConnection().close();
+            throw new ServletException(new ElementNotFoundException(""));
+        }).when(mockFilterChain).doFilter(any(), any());
+
+        assertThrows(ServletException.class,
+                () -> filter.doFilter(mockHttpRequest, mockHttpResponse, mockFilterChain));
+
+        verify(physical).rollback();
+        verify(physical, never()).commit();
+        verify(physical).close();
+        assertFalse(TransactionContext.isActive());
+    }
+
+    @Test
+    @DisplayName("GET-запрос выполняется без транзакции")
+    public void shouldSkipTransactionForGet() throws IOException, ServletException {
+        when(mockHttpRequest.getMethod()).thenReturn("GET");
+
+        filter.doFilter(mockHttpRequest, mockHttpResponse, mockFilterChain);
+
+        verify(mockFilterChain).doFilter(mockHttpRequest, mockHttpResponse);
+        verifyNoInteractions(pool);
+    }
+}
@@ -0,0 +1,92 @@
+package mapper.impl;
+
+import entity.Product;
+import mapper.RowReader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для позиционного чтения строк в PositionalRowMapper и ProductMapperImpl.
+ */
+public class PositionalRowMapperUnitTest {
+
+    @Test
+    @DisplayName("Продукт читается по номерам столбцов независимо от их порядка в запросе")
+    public void readsProductByResolvedIndices() throws SQLException {
+        ResultSet explicit = resultSet("id", "name", "description", "price");
+        when(explicit.next()).thenReturn(true, true, false);
+        when(explicit.getLong(1)).thenReturn(1L, 2L);
+        when(explicit.getString(2)).thenReturn("Огурец", "Квас");
+        when(explicit.getInt(4)).thenReturn(500, 0);
+        ResultSet reordered = resultSet("price", "description", "name", "id");
+        when(reordered.getLong(4)).thenReturn(1L);
+        when(reordered.getString(3)).thenReturn("Огурец");
+        when(reordered.getInt(1)).thenReturn(500);
+        ProductMapperImpl mapper = new ProductMapperImpl();
+
+        RowReader<Product> reader = mapper.queryReader();
+        explicit.next();
+        Product first = reader.read(explicit);
+        explicit.next();
+        Product second = reader.read(explicit);
+        Product fromReordered = mapper.fromResultSetToEntity(reordered);
+
+        assertEquals(1L, first.getId());
+        assertEquals(500, first.getPrice());
+        assertEquals("Квас", second.getName());
+        assertEquals(first, fromReordered);
+        assertEquals(first.getPrice(), fromReordered.getPrice());
+        // Строки читаются только по номеру столбца
+        verify(explicit, never()).getString(anyString());
+        verify(explicit, never()).getInt(anyString());
+        verify(explicit, never()).findColumn(anyString());
+    }
+
+    @Test
+    @DisplayName("Номера столбцов запроса находятся один раз для всех его результатов")
+    public void resolvesColumnsOncePerQuery() throws SQLException {
+        ResultSet first = resultSet("id", "name", "description", "price");
+        ResultSet second = resultSet("id", "name", "description", "price");
+        when(first.getLong(1)).thenReturn(1L);
+        when(second.getLong(1)).thenReturn(2L);
+        RowReader<Product> reader = new ProductMapperImpl().queryReader();
+
+        reader.read(first);
+        reader.read(first);
+        Product fromSecond = reader.read(second);
+
+        assertEquals(2L, fromSecond.getId());
+        verify(first, times(1)).getMetaData();
+        verify(second, never()).getMetaData();
+    }
+
+    @Test
+    @DisplayName("Отсутствующий столбец сущности обнаруживается при чтении первой строки запроса")
+    public void missingColumnFailsOnFirstRead() throws SQLException {
+        PositionalRowMapper<Product> mapper = new PositionalRowMapper<>(Product::new)
+                .column("id", (product, rs, i) -> product.setId(rs.getLong(i)))
+                .column("price", (product, rs, i) -> product.setPrice(rs.getInt(i)));
+
+        SQLException ex = assertThrows(SQLException.class, () -> mapper.forQuery().read(resultSet("id", "name")));
+        assertTrue(ex.getMessage().contains("price"));
+    }
+
+    private static ResultSet resultSet(String... labels) throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        return resultSet;
+    }
+}
@@ -0,0 +1,61 @@
+package mapper.impl;
+
+import entity.Product;
+import entity.Recipe;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для чтения рецептов в RecipeMapperImpl.
+ */
+public class RecipeMapperImplUnitTest {
+
+    @Test
+    @DisplayName("Цена NULL читается как 0 и из JSON-массива, и из строк соединения")
+    public void nullPriceIsZeroOnBothPaths() throws SQLException {
+        ResultSet jsonRow = resultSet("recipe_id", "recipe_name", "recipe_description", "products");
+        when(jsonRow.next()).thenReturn(true, false);
+        when(jsonRow.getLong(1)).thenReturn(3L);
+        when(jsonRow.getCharacterStream(4)).thenReturn(new StringReader("""
+                [{"id": 11, "name": "Соль", "description": null, "price": null}]"""));
+        // getInt возвращает 0 для NULL
+        ResultSet joinedRows = resultSet("recipe_id", "recipe_name", "recipe_description",
+                "product_id", "product_name", "product_description", "product_price");
+        when(joinedRows.next()).thenReturn(true, false);
+        when(joinedRows.getLong(1)).thenReturn(3L);
+        when(joinedRows.getLong(4)).thenReturn(11L);
+        when(joinedRows.getString(5)).thenReturn("Соль");
+        RecipeMapperImpl mapper = new RecipeMapperImpl();
+
+        Product fromJson = onlyProduct(mapper.fromJsonRowToEntity(jsonRow));
+        Product fromRows = onlyProduct(mapper.fromResultSetToEntity(joinedRows));
+
+        assertEquals(0, fromJson.getPrice());
+        assertEquals(fromRows.getPrice(), fromJson.getPrice());
+        assertEquals(fromRows, fromJson);
+    }
+
+    private static Product onlyProduct(Recipe recipe) {
+        assertEquals(1, recipe.getProducts().size());
+        return recipe.getProducts().iterator().next();
+    }
+
+    private static ResultSet resultSet(String... labels) throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        return resultSet;
+    }
+}
@@ -0,0 +1,68 @@
+package repository.impl;
+
+import db.DbExecutor;
+import db.TransactionContext;
+import entity.Product;
+import exception.RepositoryException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import repository.RepositoryWithoutSave;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для AsyncRepositoryImp.
+ */
+@SuppressWarnings("unchecked")
+public class AsyncRepositoryImpUnitTest {
+    private final RepositoryWithoutSave<Product> repository = mock(RepositoryWithoutSave.class);
+    private final DbExecutor executor = mock(DbExecutor.class);
+
+    @Test
+    @DisplayName("Внутри транзакции вызов выполняется синхронно в текущем потоке, минуя исполнитель")
+    public void transactionRunsSynchronously() throws Exception {
+        Thread caller = Thread.currentThread();
+        when(repository.getById(5L)).thenAnswer(invocation -> {
+            assertSame(caller, Thread.currentThread());
+            return Optional.of(new Product());
+        });
+        when(repository.deleteById(6L)).thenThrow(new RepositoryException("failed"));
+        AsyncRepositoryImp<Product> async = new AsyncRepositoryImp<>(repository, executor);
+
+        TransactionContext.begin();
+        CompletableFuture<Optional<Product>> found;
+        CompletableFuture<Optional<Product>> failed;
+        try {
+            found = async.getByIdAsync(5L);
+            failed = async.deleteByIdAsync(6L);
+        } finally {
+            TransactionContext.rollback();
+        }
+
+        assertTrue(found.isDone());
+        assertTrue(found.get().isPresent());
+        assertTrue(failed.isCompletedExceptionally());
+        verify(executor, never()).submit(any());
+    }
+
+    @Test
+    @DisplayName("Вне транзакции вызов передается исполнителю")
+    public void outsideTransactionUsesExecutor() throws Exception {
+        when(repository.getById(5L)).thenReturn(Optional.of(new Product()));
+        DbExecutor realExecutor = spy(new DbExecutor(1));
+        try {
+            AsyncRepositoryImp<Product> async = new AsyncRepositoryImp<>(repository, realExecutor);
+
+            assertTrue(async.getByIdAsync(5L).get(5, TimeUnit.SECONDS).isPresent());
+            verify(realExecutor).submit(any());
+        } finally {
+            realExecutor.shutdown();
+        }
+    }
+}
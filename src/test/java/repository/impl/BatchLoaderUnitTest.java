@@ -0,0 +1,161 @@
+package repository.impl;
+
+import db.Deadline;
+import db.TransactionContext;
+import entity.Product;
+import exception.RepositoryException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import repository.RepositoryWithoutSave;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для BatchLoader.
+ * Репозиторий подменяется mock-объектом, возвращающим продукты с запрошенными идентификаторами, кроме 404.
+ */
+@SuppressWarnings("unchecked")
+public class BatchLoaderUnitTest {
+    private final RepositoryWithoutSave<Product> repository = mock(RepositoryWithoutSave.class);
+
+    @Test
+    @DisplayName("Одновременные чтения по id выполняются одним запросом пачки")
+    public void concurrentLookupsShareOneQuery() throws Exception {
+        when(repository.getByIds(anyCollection())).thenAnswer(invocation -> found(invocation.getArgument(0)));
+        // Окно большое, поэтому пачка выполняется только после заполнения всеми вызовами
+        BatchLoader<Product> loader = new BatchLoader<>(repository, 10_000_000, 4);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Optional<Product>>> results = new ArrayList<>();
+            for (long id : new long[]{1, 2, 404, 2}) {
+                results.add(pool.submit(() -> loader.getById(id)));
+            }
+
+            assertEquals(1L, results.get(0).get().orElseThrow().getId());
+            assertEquals(2L, results.get(1).get().orElseThrow().getId());
+            assertTrue(results.get(2).get().isEmpty());
+            assertEquals(2L, results.get(3).get().orElseThrow().getId());
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(repository, times(1)).getByIds(anyCollection());
+        verify(repository, never()).getById(any());
+        assertEquals(1L, loader.getMetrics().get("batches"));
+    }
+
+    @Test
+    @DisplayName("Одиночное чтение выполняется после окна без ожидания других вызовов")
+    public void singleLookupRunsAfterWindow() throws RepositoryException {
+        when(repository.getByIds(anyCollection())).thenAnswer(invocation -> found(invocation.getArgument(0)));
+        BatchLoader<Product> loader = new BatchLoader<>(repository, 100, 100);
+
+        assertEquals(7L, loader.getById(7L).orElseThrow().getId());
+        verify(repository).getByIds(List.of(7L));
+    }
+
+    @Test
+    @DisplayName("Внутри транзакции чтение идет напрямую, минуя пачку")
+    public void transactionBypassesBatch() throws RepositoryException, SQLException {
+        when(repository.getById(5L)).thenReturn(Optional.of(product(5L)));
+        BatchLoader<Product> loader = new BatchLoader<>(repository, 100, 100);
+
+        TransactionContext.begin();
+        try {
+            assertEquals(5L, loader.getById(5L).orElseThrow().getId());
+        } finally {
+            TransactionContext.rollback();
+        }
+        verify(repository, never()).getByIds(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Запрос пачки выполняется с самым длинным бюджетом участников, а не с бюджетом первого вызова")
+    public void batchRunsWithLongestParticipantDeadline() throws Exception {
+        AtomicLong queryBudget = new AtomicLong();
+        when(repository.getByIds(anyCollection())).thenAnswer(invocation -> {
+            queryBudget.set(Deadline.remainingMs());
+            return found(invocation.getArgument(0));
+        });
+        BatchLoader<Product> loader = new BatchLoader<>(repository, 10_000_000, 2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Product>> shortBudget = pool.submit(() -> withDeadline(500, () -> loader.getById(1L)));
+            Future<Optional<Product>> longBudget = pool.submit(() -> withDeadline(60_000, () -> loader.getById(2L)));
+
+            assertEquals(1L, shortBudget.get().orElseThrow().getId());
+            assertEquals(2L, longBudget.get().orElseThrow().getId());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(queryBudget.get() > 10_000, "Бюджет запроса пачки: " + queryBudget.get());
+    }
+
+    @Test
+    @DisplayName("Участник пачки ждет результат не дольше своего бюджета")
+    public void followerWaitsWithinOwnDeadline() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.getByIds(anyCollection())).thenAnswer(invocation -> {
+            release.await();
+            return found(invocation.getArgument(0));
+        });
+        BatchLoader<Product> loader = new BatchLoader<>(repository, 10_000_000, 2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            // Первый вызов без бюджета открывает пачку и выполняет медленный запрос
+            Future<Optional<Product>> leader = pool.submit(() -> loader.getById(1L));
+            while (!Long.valueOf(1L).equals(loader.getMetrics().get("batchedLookups"))) {
+                Thread.sleep(1);
+            }
+            Future<Optional<Product>> follower = pool.submit(() -> withDeadline(50, () -> loader.getById(2L)));
+
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RepositoryException.class, ex.getCause());
+            assertInstanceOf(SQLTimeoutException.class, ex.getCause().getCause());
+            release.countDown();
+            assertEquals(1L, leader.get(5, TimeUnit.SECONDS).orElseThrow().getId());
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T withDeadline(long timeoutMs, Callable<T> task) throws Exception {
+        Deadline.start(timeoutMs);
+        try {
+            return task.call();
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    private static Map<Long, Product> found(Collection<Long> ids) {
+        Map<Long, Product> products = new HashMap<>();
+        ids.stream().filter(id -> id != 404L).forEach(id -> products.put(id, product(id)));
+        return products;
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,109 @@
+package repository.impl;
+
+import db.UtilDB;
+import db.id.BlockIdAllocator;
+import db.resilience.DbResilience;
+import entity.Product;
+import exception.RepositoryException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import repository.ImportResult;
+import repository.ImportRow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для импорта продуктов в ProductRepositoryImp.
+ * Соединение и COPY имитируются, строки, переданные в COPY, собираются в буфер.
+ */
+public class ProductRepositoryImpUnitTest {
+
+    @Test
+    @DisplayName("Импорт выдает строкам идущие подряд идентификаторы из блока и вставляет id явно")
+    public void importAssignsConsecutiveIdsFromAllocator() throws SQLException, IOException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        CopyIn copyIn = mock(CopyIn.class);
+        doAnswer(invocation -> {
+            copied.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+        CopyManager copyManager = mock(CopyManager.class);
+        when(copyManager.copyIn(startsWith("COPY product_import (line_no, id,"))).thenReturn(copyIn);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+
+        PreparedStatement mergeStm = mock(PreparedStatement.class);
+        ResultSet mergeRs = mock(ResultSet.class);
+        when(mergeRs.next()).thenReturn(true);
+        when(mergeRs.getLong(1)).thenReturn(3L);
+        when(mergeStm.executeQuery()).thenReturn(mergeRs);
+        when(connection.prepareStatement(contains("INSERT INTO product (id, name, price, description)"))).thenReturn(mergeStm);
+        PreparedStatement duplicatesStm = mock(PreparedStatement.class);
+        when(duplicatesStm.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(connection.prepareStatement(contains("row_number()"))).thenReturn(duplicatesStm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+
+        // Шаг последовательности 50 равен блоку: строки импорта получают 101, 102, 103, а не по блоку на строку
+        BlockIdAllocator allocator = new BlockIdAllocator(sequence(101, 50), "product_id_seq", 50);
+        ProductRepositoryImp repository = new ProductRepositoryImp(db, DbResilience.NONE, allocator);
+
+        ImportResult result = repository.importAll(handler -> {
+            for (int i = 1; i <= 3; i++) {
+                Product product = new Product();
+                product.setName("Продукт " + i);
+                product.setPrice(i);
+                handler.handle(new ImportRow<>(i, product));
+            }
+        }, 10);
+
+        List<String> ids = Arrays.stream(copied.toString(StandardCharsets.UTF_8).split("\n"))
+                .map(line -> line.split(",")[1])
+                .toList();
+        assertEquals(List.of("101", "102", "103"), ids);
+        assertEquals(104, allocator.nextId());
+        assertEquals(3, result.inserted());
+        verify(connection).commit();
+    }
+
+    /**
+     * Источник соединений, имитирующий последовательность с первым значением first и шагом increment.
+     */
+    private static UtilDB sequence(long first, long increment) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement validation = mock(PreparedStatement.class);
+        ResultSet validationRs = mock(ResultSet.class);
+        when(validationRs.next()).thenReturn(true);
+        when(validationRs.getLong(1)).thenReturn(increment);
+        when(validation.executeQuery()).thenReturn(validationRs);
+        when(connection.prepareStatement(startsWith("SELECT increment_by"))).thenReturn(validation);
+        PreparedStatement nextval = mock(PreparedStatement.class);
+        ResultSet nextvalRs = mock(ResultSet.class);
+        when(nextvalRs.next()).thenReturn(true);
+        when(nextvalRs.getLong(1)).thenReturn(first, first + increment);
+        when(nextval.executeQuery()).thenReturn(nextvalRs);
+        when(connection.prepareStatement(startsWith("SELECT nextval"))).thenReturn(nextval);
+        UtilDB source = mock(UtilDB.class);
+        when(source.createConnection()).thenReturn(connection);
+        return source;
+    }
+}
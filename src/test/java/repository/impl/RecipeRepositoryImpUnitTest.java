@@ -0,0 +1,313 @@
+package repository.impl;
+
+import db.UtilDB;
+import entity.Product;
+import entity.Recipe;
+import exception.RepositoryException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit-тесты для постраничного чтения и выгрузки рецептов в RecipeRepositoryImp.
+ * Соединение имитируется: страница рецептов и продукты этих рецептов возвращаются двумя запросами.
+ */
+public class RecipeRepositoryImpUnitTest {
+
+    @Test
+    @DisplayName("Страница рецептов собирается из двух запросов, общий продукт создается один раз")
+    public void getPageStitchesProductsInMemory() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+
+        PreparedStatement recipeStm = mock(PreparedStatement.class);
+        ResultSet recipeRs = mock(ResultSet.class);
+        withColumns(recipeRs, "id", "name", "description");
+        when(recipeRs.next()).thenReturn(true, true, false);
+        when(recipeRs.getLong(1)).thenReturn(1L, 2L);
+        when(recipeRs.getString(2)).thenReturn("Окрошка", "Рассольник");
+        when(recipeStm.executeQuery()).thenReturn(recipeRs);
+        when(connection.prepareStatement(startsWith("SELECT id, name, description FROM recipe"))).thenReturn(recipeStm);
+
+        // Огурец (10) входит в оба рецепта, квас (11) - только в первый
+        PreparedStatement productStm = mock(PreparedStatement.class);
+        ResultSet productRs = mock(ResultSet.class);
+        withColumns(productRs, "recipe_id", "id", "name", "description", "price");
+        when(productRs.next()).thenReturn(true, true, true, false);
+        when(productRs.getLong(1)).thenReturn(1L, 1L, 2L);
+        // Идентификатор продукта читается для связи и, для нового продукта, еще раз маппером
+        when(productRs.getLong(2)).thenReturn(10L, 10L, 11L, 11L, 10L);
+        when(productRs.getString(3)).thenReturn("Огурец", "Квас");
+        when(productStm.executeQuery()).thenReturn(productRs);
+        when(connection.prepareStatement(contains("ANY(?)"))).thenReturn(productStm);
+        when(connection.createArrayOf(eq("bigint"), any())).thenReturn(mock(Array.class));
+
+        UtilDB db = mock(UtilDB.class);
+        when(db.createReadConnection()).thenReturn(connection);
+
+        List<Recipe> page = new RecipeRepositoryImp(db).getPage(0, 2);
+
+        assertEquals(List.of(1L, 2L), page.stream().map(Recipe::getId).toList());
+        assertEquals(Set.of(10L, 11L), idsOf(page.get(0)));
+        assertEquals(Set.of(10L), idsOf(page.get(1)));
+        verify(connection).createArrayOf("bigint", new Object[]{1L, 2L});
+        assertSame(productOf(page.get(0), 10L), productOf(page.get(1), 10L));
+        verify(db, times(1)).createReadConnection();
+    }
+
+    @Test
+    @DisplayName("Пустая страница не запрашивает продукты")
+    public void getPageEmptySkipsProductQuery() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement recipeStm = mock(PreparedStatement.class);
+        ResultSet recipeRs = mock(ResultSet.class);
+        when(recipeStm.executeQuery()).thenReturn(recipeRs);
+        when(connection.prepareStatement(startsWith("SELECT id, name, description FROM recipe"))).thenReturn(recipeStm);
+        PreparedStatement productStm = mock(PreparedStatement.class);
+        when(connection.prepareStatement(contains("ANY(?)"))).thenReturn(productStm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createReadConnection()).thenReturn(connection);
+
+        assertTrue(new RecipeRepositoryImp(db).getPage(100, 10).isEmpty());
+        verify(productStm, never()).executeQuery();
+    }
+
+    @Test
+    @DisplayName("Выгрузка собирает рецепт из соседних строк курсора, рецепт без продуктов не теряется")
+    public void exportAllGroupsRowsByRecipe() throws SQLException, RepositoryException, IOException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stm = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        // Рецепт 1 с двумя продуктами, рецепт 2 без продуктов
+        withColumns(resultSet, "recipe_id", "recipe_name", "recipe_description", "product_id", "product_name", "product_description", "product_price");
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getLong(1)).thenReturn(1L, 1L, 2L);
+        when(resultSet.getLong(4)).thenReturn(10L, 11L, 0L);
+        when(resultSet.wasNull()).thenReturn(false, false, true);
+        when(stm.executeQuery()).thenReturn(resultSet);
+        when(connection.prepareStatement(contains("ORDER BY r.id"))).thenReturn(stm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createReadConnection()).thenReturn(connection);
+        List<Recipe> exported = new ArrayList<>();
+
+        long count = new RecipeRepositoryImp(db).exportAll(exported::add);
+
+        assertEquals(2, count);
+        assertEquals(Set.of(10L, 11L), idsOf(exported.get(0)));
+        assertTrue(exported.get(1).getProducts().isEmpty());
+        // Курсор на сервере: транзакция и размер порции
+        verify(connection).setAutoCommit(false);
+        verify(stm).setFetchSize(anyInt());
+        verify(connection).commit();
+    }
+
+    @Test
+    @DisplayName("Пачка рецептов сохраняется двумя пакетами в одной транзакции, id возвращаются в порядке входа")
+    public void saveAllBatchesRecipesAndLinks() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement recipeStm = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+        when(keys.next()).thenReturn(true, true, false);
+        when(keys.getLong(1)).thenReturn(7L, 8L);
+        when(recipeStm.getGeneratedKeys()).thenReturn(keys);
+        when(connection.prepareStatement(startsWith("INSERT INTO recipe "), eq(Statement.RETURN_GENERATED_KEYS))).thenReturn(recipeStm);
+        PreparedStatement linkStm = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("INSERT INTO recipe_product"))).thenReturn(linkStm);
+        PreparedStatement productStm = mock(PreparedStatement.class);
+        ResultSet productRs = mock(ResultSet.class);
+        withColumns(productRs, "id", "name", "description", "price");
+        when(productRs.next()).thenReturn(true, true, false);
+        when(productRs.getLong(1)).thenReturn(10L, 11L);
+        when(productStm.executeQuery()).thenReturn(productRs);
+        when(connection.prepareStatement(contains("ANY(?)"))).thenReturn(productStm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+
+        List<Recipe> saved = new RecipeRepositoryImp(db).saveAll(
+                List.of(new Recipe(), new Recipe()), List.of(Set.of(10L, 11L), Set.of(10L)));
+
+        assertEquals(List.of(7L, 8L), saved.stream().map(Recipe::getId).toList());
+        assertEquals(Set.of(10L, 11L), idsOf(saved.get(0)));
+        assertEquals(Set.of(10L), idsOf(saved.get(1)));
+        verify(recipeStm, times(2)).addBatch();
+        verify(recipeStm).executeBatch();
+        verify(linkStm, times(3)).addBatch();
+        verify(linkStm).executeBatch();
+        verify(connection).commit();
+        verify(db, times(1)).createConnection();
+    }
+
+    @Test
+    @DisplayName("Рецепт создается одним запросом вместе со связями, продукты берутся из результата запроса")
+    public void saveCreatesRecipeAndLinksInOneStatement() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stm = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        withColumns(resultSet, "recipe_id", "recipe_name", "recipe_description", "product_id", "product_name", "product_description", "product_price");
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong(1)).thenReturn(5L);
+        when(resultSet.getLong(4)).thenReturn(10L, 11L);
+        when(stm.executeQuery()).thenReturn(resultSet);
+        when(connection.prepareStatement(startsWith("WITH r AS (INSERT INTO recipe"))).thenReturn(stm);
+        Array ids = mock(Array.class);
+        when(connection.createArrayOf(eq("bigint"), any())).thenReturn(ids);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+
+        Recipe saved = new RecipeRepositoryImp(db).save(new Recipe(), Set.of(10L, 11L));
+
+        assertEquals(5L, saved.getId());
+        assertEquals(Set.of(10L, 11L), idsOf(saved));
+        verify(stm).setArray(3, ids);
+        verify(connection, times(1)).prepareStatement(anyString());
+    }
+
+    @Test
+    @DisplayName("Изменение состава рецепта выполняется двумя запросами по разнице в одной транзакции")
+    public void updateWithProductsAppliesDiffInOneTransaction() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement recipeStm = mock(PreparedStatement.class);
+        ResultSet recipeRs = mock(ResultSet.class);
+        withColumns(recipeRs, "id", "name", "description");
+        when(recipeRs.next()).thenReturn(true);
+        when(recipeRs.getLong(1)).thenReturn(3L);
+        when(recipeStm.executeQuery()).thenReturn(recipeRs);
+        when(connection.prepareStatement(startsWith("UPDATE recipe"))).thenReturn(recipeStm);
+        PreparedStatement removeStm = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("DELETE FROM recipe_product"))).thenReturn(removeStm);
+        PreparedStatement addStm = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("INSERT INTO recipe_product"))).thenReturn(addStm);
+        PreparedStatement productStm = mock(PreparedStatement.class);
+        ResultSet productRs = mock(ResultSet.class);
+        withColumns(productRs, "id", "name", "description", "price");
+        when(productRs.next()).thenReturn(true, true, false);
+        when(productRs.getLong(1)).thenReturn(10L, 12L);
+        when(productStm.executeQuery()).thenReturn(productRs);
+        when(connection.prepareStatement(contains("ANY(?)"))).thenReturn(productStm);
+        Array ids = mock(Array.class);
+        when(connection.createArrayOf(eq("bigint"), any())).thenReturn(ids);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+        Recipe update = new Recipe();
+        update.setId(3L);
+
+        Recipe updated = new RecipeRepositoryImp(db).updateByEntity(update, Set.of(10L, 12L)).orElseThrow();
+
+        assertEquals(Set.of(10L, 12L), idsOf(updated));
+        verify(removeStm).setArray(2, ids);
+        verify(removeStm).executeUpdate();
+        verify(addStm).setArray(2, ids);
+        verify(addStm).executeUpdate();
+        verify(connection).setAutoCommit(false);
+        verify(connection).commit();
+    }
+
+    @Test
+    @DisplayName("Изменение состава несуществующего рецепта откатывается без записи связей")
+    public void updateWithProductsOfMissingRecipeRollsBack() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement recipeStm = mock(PreparedStatement.class);
+        ResultSet recipeRs = mock(ResultSet.class);
+        when(recipeStm.executeQuery()).thenReturn(recipeRs);
+        when(connection.prepareStatement(startsWith("UPDATE recipe"))).thenReturn(recipeStm);
+        PreparedStatement linkStm = mock(PreparedStatement.class);
+        when(connection.prepareStatement(contains("recipe_product"))).thenReturn(linkStm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+        Recipe update = new Recipe();
+        update.setId(4L);
+
+        assertTrue(new RecipeRepositoryImp(db).updateByEntity(update, Set.of(10L)).isEmpty());
+        verify(linkStm, never()).executeUpdate();
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+    }
+
+    @Test
+    @DisplayName("Рецепт по id читается одной строкой, продукты разбираются из JSON-массива")
+    public void getByIdReadsProductsFromJsonAggregate() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stm = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        withColumns(resultSet, "recipe_id", "recipe_name", "recipe_description", "products");
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getLong(1)).thenReturn(3L);
+        when(resultSet.getString(2)).thenReturn("Салат");
+        when(resultSet.getCharacterStream(4)).thenReturn(new StringReader("""
+                [{"id": 10, "name": "Огурец", "description": "Свежий", "price": 500},
+                 {"id": 11, "name": "Соль", "description": null, "price": null}]"""));
+        when(stm.executeQuery()).thenReturn(resultSet);
+        when(connection.prepareStatement(contains("json_agg"))).thenReturn(stm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createReadConnection()).thenReturn(connection);
+
+        Recipe recipe = new RecipeRepositoryImp(db).getByIdJsonAgg(3L).orElseThrow();
+
+        assertEquals("Салат", recipe.getName());
+        assertEquals(Set.of(10L, 11L), idsOf(recipe));
+        assertEquals(500, productOf(recipe, 10).getPrice());
+        // Цена NULL читается как 0, как и при построчном чтении через getInt
+        assertEquals(0, productOf(recipe, 11).getPrice());
+        verify(resultSet, times(1)).next();
+    }
+
+    @Test
+    @DisplayName("Удаление возвращает рецепт с продуктами одним запросом, без строк - пустой результат")
+    public void deleteByIdReturnsDeletedRecipeInOneStatement() throws SQLException, RepositoryException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement stm = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        withColumns(resultSet, "recipe_id", "recipe_name", "recipe_description", "product_id", "product_name", "product_description", "product_price");
+        when(resultSet.next()).thenReturn(true, true, false, false);
+        when(resultSet.getLong(1)).thenReturn(3L);
+        when(resultSet.getLong(4)).thenReturn(10L, 11L);
+        when(stm.executeQuery()).thenReturn(resultSet);
+        when(connection.prepareStatement(startsWith("WITH r AS (DELETE FROM recipe"))).thenReturn(stm);
+        UtilDB db = mock(UtilDB.class);
+        when(db.createConnection()).thenReturn(connection);
+        RecipeRepositoryImp repository = new RecipeRepositoryImp(db);
+
+        Recipe deleted = repository.deleteById(3L).orElseThrow();
+
+        assertEquals(3L, deleted.getId());
+        assertEquals(Set.of(10L, 11L), idsOf(deleted));
+        assertTrue(repository.deleteById(4L).isEmpty());
+        verify(connection, times(2)).prepareStatement(anyString());
+    }
+
+    /**
+     * Задает метки столбцов результата: мапперы читают столбцы по номеру, найденному по метке.
+     */
+    private static void withColumns(ResultSet resultSet, String... labels) throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        when(resultSet.getMetaData()).thenReturn(metaData);
+    }
+
+    private static Product productOf(Recipe recipe, long id) {
+        return recipe.getProducts().stream().filter(product -> product.getId() == id).findFirst().orElseThrow();
+    }
+
+    private static Set<Long> idsOf(Recipe recipe) {
+        return recipe.getProducts().stream().map(Product::getId).collect(Collectors.toSet());
+    }
+}
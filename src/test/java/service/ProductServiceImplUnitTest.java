@@ -2,6 +2,9 @@ package service;
 
 import db.UtilDB;
 import db.UtilDBimpl;
+import dto.BatchGetDto;
+import dto.ImportReportDto;
+import dto.PageDto;
 import dto.product.ProductDto;
 import entity.Product;
 import exception.ElementNotFoundException;
@@ -16,15 +19,27 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import repository.ImportResult;
+import repository.ImportRow;
+import repository.RowHandler;
+import repository.RowSource;
 import repository.impl.ProductRepositoryImp;
 import service.impl.ProductServiceImpl;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import static config.MockProps.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 /**
@@ -163,19 +178,17 @@ public class ProductServiceImplUnitTest {
     public void shouldUpdateProductIfExist() throws RepositoryException {
         Long id = MOCK_PRODUCT.getId();
 
-        // Мокирование репозитория для возврата MOCK_PRODUCT при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
-                .thenReturn(Optional.of(MOCK_PRODUCT));
-
         // Мокирование репозитория для возврата обновленного продукта
         when(repositoryImp.updateByEntity(MOCK_PRODUCT))
-                .thenReturn(MOCK_PRODUCT);
+                .thenReturn(Optional.of(MOCK_PRODUCT));
 
         // Вызов метода и получение актуального результата
         ProductDto actual = service.updateByEntity(PRODUCT_DTO_RESPONSE);
 
         // Проверка, что обновленный продукт соответствует ожидаемому результату
+        // и существование не проверялось отдельным запросом
         assertEquals(PRODUCT_DTO_RESPONSE, actual);
+        verify(repositoryImp, never()).getById(id);
     }
 
     /**
@@ -187,8 +200,8 @@ public class ProductServiceImplUnitTest {
     public void shouldThrowExceptionIfProductNotExistWhenUpdate() throws RepositoryException {
         Long id = MOCK_PRODUCT.getId();
 
-        // Мокирование репозитория для возврата пустого Optional при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
+        // Мокирование репозитория: UPDATE не затронул ни одной строки
+        when(repositoryImp.updateByEntity(MOCK_PRODUCT))
                 .thenReturn(Optional.empty());
 
         // Ожидание выброса исключения и проверка его сообщения
@@ -205,12 +218,6 @@ public class ProductServiceImplUnitTest {
     @Test
     @DisplayName("Обновление продукта, когда возникает ошибка базы данных")
     public void shouldThrowExceptionIfDBErrorOccurWhenUpdate() throws RepositoryException {
-        Long id = MOCK_PRODUCT.getId();
-
-        // Мокирование репозитория для возврата MOCK_PRODUCT при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
-                .thenReturn(Optional.of(MOCK_PRODUCT));
-
         // Мокирование репозитория для выброса исключения при вызове updateByEntity
         when(repositoryImp.updateByEntity(MOCK_PRODUCT))
                 .thenThrow(new RepositoryException(ERROR_MESSAGE_DATA_BASE));
@@ -230,18 +237,17 @@ public class ProductServiceImplUnitTest {
     public void shouldDeleteProduct() throws RepositoryException {
         Long id = MOCK_PRODUCT.getId();
 
-        // Мокирование репозитория для возврата MOCK_PRODUCT при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
+        // Мокирование репозитория: DELETE ... RETURNING возвращает удаленный продукт
+        when(repositoryImp.deleteById(id))
                 .thenReturn(Optional.of(MOCK_PRODUCT));
 
-        // Мокирование репозитория для выполнения deleteById без выброса исключений
-        doNothing().when(repositoryImp).deleteById(id);
-
         // Вызов метода и получение актуального результата
         ProductDto actual = service.deleteById(id);
 
         // Проверка, что удаленный продукт соответствует ожидаемому результату
+        // и продукт не читался отдельным запросом
         assertEquals(PRODUCT_DTO_RESPONSE, actual);
+        verify(repositoryImp, never()).getById(id);
     }
 
     /**
@@ -253,8 +259,8 @@ public class ProductServiceImplUnitTest {
     public void shouldThrowExceptionIfProductNotExistWhenDelete() throws RepositoryException {
         Long id = MOCK_PRODUCT.getId();
 
-        // Мокирование репозитория для возврата пустого Optional при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
+        // Мокирование репозитория: DELETE не затронул ни одной строки
+        when(repositoryImp.deleteById(id))
                 .thenReturn(Optional.empty());
 
         // Подготовка ожидаемого текста ошибки
@@ -275,17 +281,152 @@ public class ProductServiceImplUnitTest {
     public void shouldThrowExceptionIfDBErrorOccurWhenDelete() throws RepositoryException {
         Long id = MOCK_PRODUCT.getId();
 
-        // Мокирование репозитория для возврата MOCK_PRODUCT при вызове getById с заданным ID
-        when(repositoryImp.getById(id))
-                .thenReturn(Optional.of(MOCK_PRODUCT));
-
         // Мокирование репозитория для выброса исключения при вызове deleteById
-        doThrow(new RepositoryException(ERROR_MESSAGE_DATA_BASE))
-                .when(repositoryImp).deleteById(id);
+        when(repositoryImp.deleteById(id))
+                .thenThrow(new RepositoryException(ERROR_MESSAGE_DATA_BASE));
 
         // Ожидание выброса исключения и проверка его сообщения
         ServiceException thrown = assertThrows(ServiceException.class,
                 () -> service.deleteById(id));
         assertEquals(ERROR_MESSAGE_DATA_BASE, thrown.getMessage());
     }
+
+    /**
+     * Тестирует метод getPage: из репозитория запрашивается на один продукт больше,
+     * лишний продукт отбрасывается, а курсор указывает на последний продукт страницы.
+     */
+    @Test
+    @DisplayName("Получение страницы продуктов, когда есть следующая страница")
+    public void shouldReturnPageWithNextCursor() throws RepositoryException {
+        Product second = new Product();
+        second.setId(2L);
+        second.setName("Помидор");
+        Product third = new Product();
+        third.setId(3L);
+        third.setName("Лук");
+        when(repositoryImp.getPage(0L, 3)).thenReturn(List.of(MOCK_PRODUCT, second, third));
+
+        PageDto<ProductDto> page = service.getPage(0L, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(2L, page.getNextCursor());
+    }
+
+    /**
+     * Тестирует метод getPage на последней странице: курсор следующей страницы отсутствует.
+     */
+    @Test
+    @DisplayName("Получение последней страницы продуктов")
+    public void shouldReturnLastPageWithoutCursor() throws RepositoryException {
+        when(repositoryImp.getPage(1L, 3)).thenReturn(List.of(MOCK_PRODUCT));
+
+        PageDto<ProductDto> page = service.getPage(1L, 2);
+
+        assertEquals(List.of(PRODUCT_DTO_RESPONSE), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    /**
+     * Тестирует метод export: каждая сущность из репозитория сразу преобразуется в DTO и передается обработчику.
+     */
+    @Test
+    @DisplayName("Выгрузка продуктов передает DTO обработчику")
+    @SuppressWarnings("unchecked")
+    public void shouldExportProductsAsDto() throws RepositoryException, IOException {
+        when(repositoryImp.exportAll(any())).thenAnswer(invocation -> {
+            RowHandler<Product> handler = invocation.getArgument(0);
+            handler.handle(MOCK_PRODUCT);
+            return 1L;
+        });
+        List<ProductDto> exported = new ArrayList<>();
+
+        long count = service.export(exported::add);
+
+        assertEquals(1L, count);
+        assertEquals(List.of(PRODUCT_DTO_RESPONSE), exported);
+    }
+
+    /**
+     * Тестирует метод importProducts: в отчет попадают строки с ошибками разбора и строки,
+     * вытесненные более поздней строкой с тем же именем, в порядке номеров строк.
+     */
+    @Test
+    @DisplayName("Импорт продуктов формирует отчет об отклоненных строках")
+    @SuppressWarnings("unchecked")
+    public void shouldReportImportRejects() throws RepositoryException, IOException {
+        List<Long> importedLines = new ArrayList<>();
+        when(repositoryImp.importAll(any(), anyInt())).thenAnswer(invocation -> {
+            RowSource<ImportRow<Product>> source = invocation.getArgument(0);
+            source.forEach(row -> importedLines.add(row.line()));
+            return new ImportResult(1, 1, 1, List.of(1L));
+        });
+        String csv = "Огурец,500\nОгурец,abc\nОгурец,600\nКвас,100\n";
+
+        ImportReportDto report = service.importProducts(new StringReader(csv), ImportFormat.CSV);
+
+        assertEquals(List.of(1L, 3L, 4L), importedLines);
+        assertEquals(4, report.getReceived());
+        assertEquals(2, report.getRejected());
+        assertEquals(List.of(1L, 2L), report.getRejects().stream().map(reject -> reject.getLine()).toList());
+    }
+
+    /**
+     * Тестирует метод saveAll, чтобы убедиться, что продукты передаются в репозиторий одним списком
+     * и возвращаются в порядке входа.
+     */
+    @Test
+    @DisplayName("Массовое сохранение продуктов одним вызовом репозитория")
+    public void saveAllKeepsInputOrder() throws RepositoryException {
+        when(repositoryImp.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            for (int i = 0; i < products.size(); i++) {
+                products.get(i).setId(100L + i);
+            }
+            return products;
+        });
+
+        List<ProductDto> saved = service.saveAll(List.of(PRODUCT_DTO_CREATE, PRODUCT_DTO_CREATE));
+
+        assertEquals(List.of(100L, 101L), saved.stream().map(ProductDto::getId).toList());
+        verify(repositoryImp, times(1)).saveAll(anyList());
+        verify(repositoryImp, never()).save(any());
+    }
+
+    /**
+     * Тестирует метод getByIds, чтобы убедиться, что найденные продукты возвращаются в порядке запроса,
+     * а ненайденные идентификаторы перечисляются отдельно.
+     */
+    @Test
+    @DisplayName("Чтение продуктов по списку идентификаторов")
+    public void getByIdsSplitsFoundAndMissing() throws RepositoryException {
+        Product other = new Product();
+        other.setId(2L);
+        when(repositoryImp.getByIds(List.of(2L, 5L, 1L, 2L))).thenReturn(Map.of(1L, MOCK_PRODUCT, 2L, other));
+
+        BatchGetDto<ProductDto> result = service.getByIds(List.of(2L, 5L, 1L, 2L));
+
+        assertEquals(List.of(2L, 1L), result.getItems().stream().map(ProductDto::getId).toList());
+        assertEquals(List.of(5L), result.getMissing());
+        verify(repositoryImp, times(1)).getByIds(anyCollection());
+    }
+
+    /**
+     * Тестирует метод upsertByName, чтобы убедиться, что имя берется из параметра
+     * и запись выполняется одним вызовом репозитория без предварительного чтения.
+     */
+    @Test
+    @DisplayName("Вставка или обновление продукта по имени без предварительного чтения")
+    public void upsertByNameUsesSingleRepositoryCall() throws RepositoryException {
+        when(repositoryImp.upsert(any(Product.class))).thenAnswer(invocation -> {
+            Product product = invocation.getArgument(0);
+            product.setId(42L);
+            return product;
+        });
+
+        ProductDto saved = service.upsertByName("Квас", PRODUCT_DTO_CREATE);
+
+        assertEquals(42L, saved.getId());
+        assertEquals("Квас", saved.getName());
+        verify(repositoryImp, never()).getById(any());
+    }
 }
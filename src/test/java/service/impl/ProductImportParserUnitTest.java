@@ -0,0 +1,68 @@
+package service.impl;
+
+import entity.Product;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import repository.ImportRow;
+import service.ImportFormat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для ProductImportParser.
+ */
+public class ProductImportParserUnitTest {
+
+    @Test
+    @DisplayName("Разбор CSV: заголовок пропускается, поле в кавычках может содержать запятые и кавычки")
+    public void shouldParseCsv() throws IOException {
+        String csv = "name,price,description\n"
+                + "Огурец,500,\"Соленый, \"\"бочковой\"\"\"\n"
+                + "Квас,100\n";
+        ProductImportParser parser = new ProductImportParser(ImportFormat.CSV, 10);
+        List<ImportRow<Product>> rows = new ArrayList<>();
+
+        parser.parse(new StringReader(csv), rows::add);
+
+        assertEquals(2, parser.getReceived());
+        assertEquals(0, parser.getRejected());
+        assertEquals(2, rows.get(0).line());
+        assertEquals("Соленый, \"бочковой\"", rows.get(0).entity().getDescription());
+        assertEquals(100, rows.get(1).entity().getPrice());
+        assertNull(rows.get(1).entity().getDescription());
+    }
+
+    @Test
+    @DisplayName("Некорректные строки NDJSON отклоняются с номером строки, импорт продолжается")
+    public void shouldRejectInvalidNdjsonLines() throws IOException {
+        String ndjson = """
+                {"name": "Молоко", "price": 35}
+                {"name": "Сыр", "price": "дорого"}
+                {"price": 10}
+                не json
+                {"name": "Хлеб"}
+                """;
+        ProductImportParser parser = new ProductImportParser(ImportFormat.NDJSON, 2);
+        List<ImportRow<Product>> rows = new ArrayList<>();
+
+        parser.parse(new StringReader(ndjson), rows::add);
+
+        assertEquals(List.of(1L, 5L), rows.stream().map(ImportRow::line).toList());
+        assertEquals(5, parser.getReceived());
+        assertEquals(3, parser.getRejected());
+        // В отчет попадает не больше maxRejects строк
+        assertEquals(List.of(2L, 3L), parser.getRejects().stream().map(reject -> reject.getLine()).toList());
+        assertEquals("Name is required", parser.getRejects().get(1).getReason());
+    }
+
+    @Test
+    @DisplayName("Незакрытая кавычка в CSV - ошибка строки")
+    public void shouldFailOnUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> ProductImportParser.splitCsvLine("\"Огурец,500"));
+    }
+}
@@ -2,8 +2,12 @@ package servlet;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import dto.BatchGetDto;
+import dto.PageDto;
 import dto.product.ProductCreateDto;
+import dto.product.ProductDto;
 import exception.ElementNotFoundException;
+import exception.HttpBadRequestException;
 import jakarta.servlet.ReadListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.ServletInputStream;
@@ -18,12 +22,15 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import repository.RowHandler;
 import service.impl.ProductServiceImpl;
 
 import java.io.*;
+import java.util.List;
 
 import static config.MockProps.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -145,6 +152,83 @@ public class ProductServletUnitTest {
         assertEquals(ERROR_MESSAGE_NOT_FOUND.formatted(1L), thrown.getCause().getMessage());
     }
 
+    /**
+     * Позитивный тест для метода doGet, проверяет получение страницы продуктов по параметрам after и limit.
+     */
+    @Test
+    @DisplayName("Запрос страницы продуктов")
+    public void doGetPageOfProducts() throws ServletException, IOException {
+        PageDto<ProductDto> page = new PageDto<>(List.of(PRODUCT_DTO_RESPONSE), 1L);
+        when(mockHttpRequest.getParameter("after")).thenReturn("0");
+        when(mockHttpRequest.getParameter("limit")).thenReturn("1");
+        when(service.getPage(0L, 1)).thenReturn(page);
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+
+        servlet.doGet(mockHttpRequest, mockHttpResponse);
+
+        verifyResponse(new Gson().toJson(page));
+    }
+
+    /**
+     * Тест для метода doGet, проверяет выгрузку продуктов в формате NDJSON: один объект на строку.
+     */
+    @Test
+    @DisplayName("Выгрузка всех продуктов")
+    public void doGetExportProducts() throws Exception {
+        setupMockRequestPath("/export");
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+        when(service.export(any())).thenAnswer(invocation -> {
+            RowHandler<ProductDto> handler = invocation.getArgument(0);
+            handler.handle(PRODUCT_DTO_RESPONSE);
+            handler.handle(PRODUCT_DTO_RESPONSE);
+            return 2L;
+        });
+
+        servlet.doGet(mockHttpRequest, mockHttpResponse);
+
+        String line = new Gson().toJson(PRODUCT_DTO_RESPONSE);
+        assertEquals(line + "\n" + line + "\n", STRING_WRITER.toString());
+        verify(mockHttpResponse).setContentType("application/x-ndjson");
+        verify(service, never()).getById(anyLong());
+    }
+
+    /**
+     * Позитивный тест для метода doGet, проверяет получение продуктов по списку идентификаторов.
+     */
+    @Test
+    @DisplayName("Запрос продуктов по списку идентификаторов")
+    public void doGetProductsByIds() throws ServletException, IOException {
+        BatchGetDto<ProductDto> result = new BatchGetDto<>(List.of(PRODUCT_DTO_RESPONSE), List.of(3L));
+        lenient().when(mockHttpRequest.getParameter(anyString())).thenReturn(null);
+        when(mockHttpRequest.getParameter("ids")).thenReturn("1, 3");
+        when(service.getByIds(List.of(1L, 3L))).thenReturn(result);
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+
+        servlet.doGet(mockHttpRequest, mockHttpResponse);
+
+        verifyResponse(new Gson().toJson(result));
+        verify(service, never()).getById(anyLong());
+    }
+
+    /**
+     * Негативный тест для метода doGet, проверяет отказ при некорректном размере страницы.
+     *
+     * @param limit некорректное значение параметра limit
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "abc", "100000"})
+    @DisplayName("Запрос страницы продуктов с некорректным limit")
+    public void doGetPageWithIncorrectLimit(String limit) {
+        when(mockHttpRequest.getParameter("after")).thenReturn(null);
+        when(mockHttpRequest.getParameter("limit")).thenReturn(limit);
+
+        ServletException thrown = assertThrows(ServletException.class,
+                () -> servlet.doGet(mockHttpRequest, mockHttpResponse));
+
+        assertInstanceOf(HttpBadRequestException.class, thrown.getCause());
+        verifyNoInteractions(service);
+    }
+
     /**
      * Негативный тест для метода doGet, проверяет обработку запроса с некорректным ID продукта.
      * Ожидается ServletException без изменения HTTP статуса и контента.
@@ -187,6 +271,40 @@ public class ProductServletUnitTest {
         verifyResponse(expected);
     }
 
+    /**
+     * Позитивный тест для метода doPost, проверяет массовое создание продуктов из JSON-массива.
+     */
+    @Test
+    @DisplayName("Запрос на массовое создание продуктов")
+    public void doPostBulkProducts() throws IOException, ServletException {
+        setupMockRequestPath("/bulk");
+        setupMockRequestInputStream("[" + PRODUCT_AS_STRING + "," + PRODUCT_AS_STRING + "]");
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+        when(service.saveAll(anyList())).thenReturn(List.of(PRODUCT_DTO_RESPONSE, PRODUCT_DTO_RESPONSE));
+
+        servlet.doPost(mockHttpRequest, mockHttpResponse);
+
+        verify(service).saveAll(argThat(dtos -> dtos.size() == 2));
+        verify(service, never()).save(any());
+        verifyResponse(new Gson().toJson(List.of(PRODUCT_DTO_RESPONSE, PRODUCT_DTO_RESPONSE)));
+    }
+
+    /**
+     * Негативный тест для метода doPost, проверяет отказ при пустом массиве массового создания.
+     */
+    @Test
+    @DisplayName("Запрос на массовое создание с пустым массивом")
+    public void doPostBulkWithEmptyArray() throws IOException {
+        setupMockRequestPath("/bulk");
+        setupMockRequestInputStream("[]");
+
+        ServletException thrown = assertThrows(ServletException.class,
+                () -> servlet.doPost(mockHttpRequest, mockHttpResponse));
+
+        assertTrue(thrown.getCause() instanceof HttpBadRequestException);
+        verify(service, never()).saveAll(any());
+    }
+
     /**
      * Негативный тест для метода doPost, проверяет что выбрасывается исключение при создании нового продукта с некорректным JSON.
      * Проверяет, что возвращается ServletException с типом JsonSyntaxException.
@@ -228,6 +346,24 @@ public class ProductServletUnitTest {
         verifyResponse(expected);
     }
 
+    /**
+     * Позитивный тест для метода doPut, проверяет вставку или обновление продукта по имени из пути.
+     */
+    @Test
+    @DisplayName("Запрос на вставку или обновление продукта по имени")
+    public void doPutByName() throws IOException, ServletException {
+        setupMockRequestPath("/by-name/Огурец");
+        setupMockRequestInputStream(PRODUCT_AS_STRING);
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+        when(service.upsertByName(eq("Огурец"), any(ProductCreateDto.class))).thenReturn(PRODUCT_DTO_RESPONSE);
+
+        servlet.doPut(mockHttpRequest, mockHttpResponse);
+
+        verifyResponse(new Gson().toJson(PRODUCT_DTO_RESPONSE));
+        verify(service, never()).updateByEntity(any());
+        verify(service, never()).getById(anyLong());
+    }
+
     /**
      * Негативный тест для метода doPut, проверяет обновление несуществующего продукта.
      * Выбрасывает исключение ServletException с типом ElementNotFoundException.
@@ -306,6 +442,29 @@ public class ProductServletUnitTest {
         assertEquals(ERROR_MESSAGE_NOT_FOUND.formatted(1L), thrown.getCause().getMessage());
     }
 
+    /**
+     * Негативный тест для метода doDelete: параметр ids поддерживается только чтением,
+     * поэтому DELETE коллекции со списком идентификаторов отклоняется и ничего не удаляет.
+     */
+    @Test
+    @DisplayName("Запрос на удаление продуктов по списку идентификаторов отклоняется")
+    public void doDeleteWithIdsIsRejected() {
+        // Настройка моков
+        setupMockRequestPath("/");
+        lenient().when(mockHttpRequest.getParameter("ids")).thenReturn("1,2");
+
+        // Вызов тестируемого метода и проверка выброса исключения
+        assertThrows(ServletException.class,
+                () -> servlet.doDelete(mockHttpRequest, mockHttpResponse));
+
+        // Проверка, что сервис не вызывался и ответ не отправлен
+        assertAll(
+                () -> verify(service, never()).deleteById(anyLong()),
+                () -> verify(service, never()).getByIds(any()),
+                () -> verify(mockHttpResponse, never()).setStatus(HttpServletResponse.SC_OK)
+        );
+    }
+
     /**
      * Мок класс для имитации ServletInputStream, используемый в тестах для передачи данных запроса.
      */
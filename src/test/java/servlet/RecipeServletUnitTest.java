@@ -0,0 +1,121 @@
+package servlet;
+
+import dto.recipe.RecipeDto;
+import dto.recipe.RecipeUpdateDto;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import service.impl.RecipeServiceImpl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static config.MockProps.MOCK_PRODUCT;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестирование сервлета для обработки запросов к рецептам.
+ */
+@ExtendWith(MockitoExtension.class)
+public class RecipeServletUnitTest {
+    private StringWriter STRING_WRITER;
+    private PrintWriter PRINT_WRITER;
+
+    @Mock
+    private HttpServletRequest mockHttpRequest;
+    @Mock
+    private HttpServletResponse mockHttpResponse;
+    @Mock
+    private RecipeServiceImpl service;
+    @InjectMocks
+    private RecipeServlet servlet;
+
+    @BeforeEach
+    public void init() {
+        STRING_WRITER = new StringWriter();
+        PRINT_WRITER = new PrintWriter(STRING_WRITER);
+        servlet.setService(service);
+    }
+
+    @Test
+    @DisplayName("Ответ на получение рецепта не содержит поле запроса productIds")
+    public void doGetResponseHasNoProductIds() throws ServletException, IOException {
+        RecipeDto recipe = new RecipeDto();
+        recipe.setId(1L);
+        recipe.setName("Салат");
+        recipe.setProducts(Set.of(MOCK_PRODUCT));
+        when(service.getById(1L)).thenReturn(recipe);
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+        when(mockHttpRequest.getPathInfo()).thenReturn("/1");
+
+        servlet.doGet(mockHttpRequest, mockHttpResponse);
+
+        PRINT_WRITER.flush();
+        String body = STRING_WRITER.toString();
+        assertTrue(body.contains("\"products\""));
+        assertFalse(body.contains("productIds"));
+    }
+
+    @Test
+    @DisplayName("Тело запроса PUT с новым составом читается в RecipeUpdateDto")
+    public void doPutReadsProductIds() throws ServletException, IOException {
+        byte[] json = "{\"id\": 1, \"name\": \"Салат\", \"productIds\": [10, 11]}".getBytes(StandardCharsets.UTF_8);
+        when(mockHttpRequest.getInputStream()).thenReturn(new MockServletInputStream(new ByteArrayInputStream(json)));
+        when(mockHttpRequest.getContentType()).thenReturn("application/json");
+        when(service.updateByEntity(any())).thenReturn(new RecipeDto());
+        when(mockHttpResponse.getWriter()).thenReturn(PRINT_WRITER);
+
+        servlet.doPut(mockHttpRequest, mockHttpResponse);
+
+        ArgumentCaptor<RecipeDto> captor = ArgumentCaptor.forClass(RecipeDto.class);
+        verify(service).updateByEntity(captor.capture());
+        RecipeUpdateDto update = assertInstanceOf(RecipeUpdateDto.class, captor.getValue());
+        assertEquals(Set.of(10L, 11L), update.getProductIds());
+    }
+
+    private static class MockServletInputStream extends ServletInputStream {
+        private final InputStream inputStream;
+
+        public MockServletInputStream(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public boolean isFinished() {
+            try {
+                return inputStream.available() == 0;
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inputStream.read();
+        }
+    }
+}
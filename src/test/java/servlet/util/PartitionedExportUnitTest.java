@@ -0,0 +1,96 @@
+package servlet.util;
+
+import db.DbExecutor;
+import exception.ServiceException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import repository.IdRange;
+import repository.RowHandler;
+import service.ExportService;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit-тесты для PartitionedExport.
+ * Сервис выгрузки имитирует коллекцию с идентификаторами из заданного диапазона.
+ */
+public class PartitionedExportUnitTest {
+    private final DbExecutor executor = new DbExecutor(4);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Сервис, выгружающий идентификаторы диапазона как записи; диапазон failFrom завершается ошибкой.
+     */
+    private static class RangeService implements ExportService<Long> {
+        private final IdRange bounds;
+        private final long failFrom;
+        private final List<IdRange> requested = new CopyOnWriteArrayList<>();
+
+        RangeService(IdRange bounds, long failFrom) {
+            this.bounds = bounds;
+            this.failFrom = failFrom;
+        }
+
+        @Override
+        public long export(RowHandler<Long> handler) throws IOException {
+            return exportRange(bounds.fromId(), bounds.toId(), handler);
+        }
+
+        @Override
+        public long exportRange(long fromId, long toId, RowHandler<Long> handler) throws IOException {
+            requested.add(new IdRange(fromId, toId));
+            if (fromId == failFrom) {
+                throw new ServiceException("Ошибка чтения части");
+            }
+            for (long id = fromId; id < toId; id++) {
+                handler.handle(id);
+            }
+            return toId - fromId;
+        }
+
+        @Override
+        public IdRange getIdRange() {
+            return bounds;
+        }
+    }
+
+    @Test
+    @DisplayName("Части читаются параллельно, а строки ответа идут в порядке id")
+    public void shouldWritePartitionsInIdOrder() throws Exception {
+        RangeService service = new RangeService(new IdRange(1, 11), -1);
+        StringWriter out = new StringWriter();
+
+        long total = new PartitionedExport(executor).export(service, 3, String::valueOf, new PrintWriter(out));
+
+        assertEquals(10, total);
+        assertEquals("1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n", out.toString());
+        assertEquals(3, service.requested.size());
+    }
+
+    @Test
+    @DisplayName("Ошибка чтения части передается вызывающему")
+    public void shouldPropagatePartitionFailure() {
+        RangeService service = new RangeService(new IdRange(1, 11), 5);
+
+        assertThrows(ServiceException.class, () ->
+                new PartitionedExport(executor).export(service, 3, String::valueOf, new PrintWriter(new StringWriter())));
+    }
+
+    @Test
+    @DisplayName("Диапазон делится на смежные части, узкий диапазон - не больше чем на его ширину")
+    public void shouldSplitRange() {
+        assertEquals(List.of(new IdRange(1, 5), new IdRange(5, 9), new IdRange(9, 11)), new IdRange(1, 11).split(3));
+        assertEquals(List.of(new IdRange(7, 8), new IdRange(8, 9)), new IdRange(7, 9).split(4));
+    }
+}